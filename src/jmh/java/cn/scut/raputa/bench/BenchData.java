@@ -0,0 +1,96 @@
+package cn.scut.raputa.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * 基准测试共用的数据：与设备上报一致的帧与 JSON 载荷、与采集日志读出格式一致的 CSV 行
+ *
+ * @author RAPUTA Team
+ */
+public final class BenchData {
+
+    /** 设备 2kHz IMU 与 100Hz GAS 的帧数比 */
+    public static final int IMU_PER_GAS = 20;
+    /** 接收线程每次 read 的缓冲区大小（RealtimeDataService.receiveDataLoop） */
+    public static final int READ_SIZE = 1024;
+    /** CSV 定时器每次写出的行数 */
+    public static final int WRITE_BATCH = 400;
+
+    private BenchData() {
+    }
+
+    public static String imuJson(long tsMicros, int x, int y, int z) {
+        return "{\"timestamp\":" + tsMicros / 1_000_000 + ",\"timestampus\":" + tsMicros % 1_000_000
+                + ",\"acc\":{\"x\":" + x + ",\"y\":" + y + ",\"z\":" + z + "}}";
+    }
+
+    public static String gasJson(long tsMicros, int flow) {
+        return "{\"timestamp\":" + tsMicros / 1_000_000 + ",\"timestampus\":" + tsMicros % 1_000_000
+                + ",\"flow\":" + flow + "}";
+    }
+
+    /**
+     * 000055aa | fx | 类型 | 长度(载荷+8) | 载荷 | CRC32 | 0000aa55
+     */
+    public static byte[] frame(int type, String json) {
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(payload.length + 24);
+        buf.putInt(0x000055aa).putInt(0).putInt(type).putInt(payload.length + 8).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue()).putInt(0x0000aa55);
+        return buf.array();
+    }
+
+    /**
+     * 一段连续的数据帧（IMU 与 GAS 按 20:1 交织，数值随机），模拟 TCP 流
+     */
+    public static byte[] stream(int frames, long seed) {
+        Random rnd = new Random(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frames * 100);
+        long ts = 1_760_000_000_000_000L;
+        for (int i = 0; i < frames; i++) {
+            String json = i % (IMU_PER_GAS + 1) == IMU_PER_GAS
+                    ? gasJson(ts, 300 + rnd.nextInt(500))
+                    : imuJson(ts, rnd.nextInt(2000) - 1000, rnd.nextInt(2000) - 1000, 16000 + rnd.nextInt(800));
+            out.writeBytes(frame(2, json));
+            ts += 500;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 把流切成 receiveDataLoop 每次 read 得到的块
+     */
+    public static byte[][] chunks(byte[] stream, int size) {
+        byte[][] out = new byte[(stream.length + size - 1) / size][];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Arrays.copyOfRange(stream, i * size, Math.min(stream.length, (i + 1) * size));
+        }
+        return out;
+    }
+
+    /**
+     * IMU 行 [时间戳(ms), x, y, z]，与 SampleJournal.read 的输出一致
+     */
+    public static List<String[]> imuRows(int n, long startMs, long seed) {
+        Random rnd = new Random(seed);
+        List<String[]> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rows.add(new String[]{
+                    String.valueOf(startMs + i / 2),
+                    String.valueOf(rnd.nextInt(2000) - 1000),
+                    String.valueOf(rnd.nextInt(2000) - 1000),
+                    String.valueOf(16000 + rnd.nextInt(800))
+            });
+        }
+        return rows;
+    }
+}
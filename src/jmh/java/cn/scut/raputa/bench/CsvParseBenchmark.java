@@ -0,0 +1,64 @@
+package cn.scut.raputa.bench;
+
+import cn.scut.raputa.utils.ParallelCsvParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线分析的 CSV 并行解析：同一份约 64MB 的 IMU 会话 CSV（opencsv 格式，字段全带引号），
+ * 按解析线程数对比，衡量 ParallelCsvParser 的并行加速比
+ *
+ * @author RAPUTA Team
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvParseBenchmark {
+
+    private static final int ROWS = 2_000_000;
+    private static final int[] COLUMNS = {0, 1, 2, 3};
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private Path file;
+    private ForkJoinPool pool;
+    private ParallelCsvParser parser;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("bench-imu-", ".csv");
+        Random rnd = new Random(3);
+        long ts = 1_760_000_000_000L;
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            w.write("\"time\",\"X\",\"Y\",\"Z\"\n");
+            for (int k = 0; k < ROWS; k++) {
+                w.write("\"" + (ts + k / 2) + "\",\"" + (rnd.nextInt(2000) - 1000) + "\",\""
+                        + (rnd.nextInt(2000) - 1000) + "\",\"" + (16000 + rnd.nextInt(800)) + "\"\n");
+            }
+        }
+        pool = new ForkJoinPool(threads);
+        parser = new ParallelCsvParser(pool);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ParallelCsvParser.Result parseImuSession() throws IOException {
+        return parser.parse(file, ',', true, COLUMNS);
+    }
+}
@@ -0,0 +1,118 @@
+package cn.scut.raputa.bench;
+
+import cn.scut.raputa.utils.SocketTools;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 6667 接收链路的帧解析：SocketTools 的各个工具方法，以及 processReceivedData 的整段拆帧循环
+ * （按 1024 字节一次 read 拼接缓冲、校验帧头、anlyBufData、移除已处理字节）
+ *
+ * @author RAPUTA Team
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameParsingBenchmark {
+
+    private byte[] imuFrame;
+    private byte[] gasFrame;
+    private byte[] header;
+    private String imuJson;
+    private byte[] pending;
+    private byte[] chunk;
+    private byte[] buffer;
+    private byte[][] chunks;
+
+    @Setup
+    public void setup() {
+        imuJson = BenchData.imuJson(1_760_000_000_123_456L, -812, 305, 16390);
+        imuFrame = BenchData.frame(2, imuJson);
+        gasFrame = BenchData.frame(2, BenchData.gasJson(1_760_000_000_123_456L, 512));
+        header = SocketTools.subArray(imuFrame, 0, 4);
+        // 一次 read 前缓冲区里通常剩下不足一帧的尾巴
+        pending = SocketTools.subArray(imuFrame, 0, imuFrame.length / 2);
+        byte[] stream = BenchData.stream(2100, 42);
+        chunk = SocketTools.subArray(stream, 0, BenchData.READ_SIZE);
+        buffer = SocketTools.byteArrAdd(pending, chunk);
+        chunks = BenchData.chunks(stream, BenchData.READ_SIZE);
+    }
+
+    @Benchmark
+    public List<byte[]> anlyBufDataImu() {
+        return SocketTools.anlyBufData(imuFrame);
+    }
+
+    @Benchmark
+    public List<byte[]> anlyBufDataGas() {
+        return SocketTools.anlyBufData(gasFrame);
+    }
+
+    @Benchmark
+    public String encodeHexStringHeader() {
+        return SocketTools.encodeHexString(header);
+    }
+
+    @Benchmark
+    public byte[] byteArrAddRead() {
+        return SocketTools.byteArrAdd(pending, chunk);
+    }
+
+    @Benchmark
+    public byte[] getNewArrayFrame() {
+        return SocketTools.getNewArray(buffer, imuFrame.length);
+    }
+
+    @Benchmark
+    public JsonNode getJsonObjectImu() {
+        return SocketTools.getJsonObject(imuJson);
+    }
+
+    @Benchmark
+    public boolean isJsonStringImu() {
+        return SocketTools.isJsonString(imuJson);
+    }
+
+    /**
+     * 约 1 秒设备数据（2000 IMU + 100 GAS 帧）按 read 块送入拆帧循环；结果按帧数归一
+     */
+    @Benchmark
+    @OperationsPerInvocation(2100)
+    public int decodeStream(Blackhole bh) {
+        byte[] buf = new byte[0];
+        int frames = 0;
+        for (byte[] data : chunks) {
+            buf = SocketTools.byteArrAdd(buf, data);
+            while (buf.length >= 16) {
+                if (!SocketTools.encodeHexString(SocketTools.subArray(buf, 0, 4)).equals("000055aa")) {
+                    buf = SocketTools.getNewArray(buf, 1);
+                    continue;
+                }
+                int len = SocketTools.bytesToInt(SocketTools.subArray(buf, 12, 16));
+                if (len > 4 * 1024) {
+                    buf = SocketTools.getNewArray(buf, 1);
+                    continue;
+                }
+                if (buf.length < len + 16) {
+                    break;
+                }
+                List<byte[]> rlt = SocketTools.anlyBufData(buf);
+                if (rlt != null) {
+                    bh.consume(new String(rlt.get(3), 0, rlt.get(3).length));
+                    frames++;
+                    buf = SocketTools.getNewArray(buf, 16 + len);
+                } else {
+                    buf = SocketTools.getNewArray(buf, 1);
+                }
+            }
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,122 @@
+package cn.scut.raputa.bench;
+
+import cn.scut.raputa.repository.CheckRecordRepository;
+import cn.scut.raputa.repository.PatientRepository;
+import cn.scut.raputa.service.CsvDataService;
+import cn.scut.raputa.service.ModelPredictionService;
+import cn.scut.raputa.service.RealtimeDataService;
+import cn.scut.raputa.service.SessionSegmentService;
+import cn.scut.raputa.service.WebSocketService;
+import cn.scut.raputa.utils.ReplayClock;
+import cn.scut.raputa.utils.SampleJournal;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * 接收线程对每个 JSON 载荷的处理：直接调用 RealtimeDataService.processSensorData（JSON 校验与解析、时间戳换算、
+ * 写入内存映射采集日志、抽样推送）。设备通过 startReplay 以回放模式登记，不需要 TCP 连接；
+ * 采集日志与 WebSocket 推送为真实实现（消息序列化后丢弃），其余依赖为不记录调用的桩对象
+ * 每次调用注入一个定时器批次（400 条，IMU 与 GAS 按 20:1 交织），随后按 CSV 定时器的方式读出并提交日志，
+ * 使环形区保持稳定水位；结果按样本归一
+ *
+ * @author RAPUTA Team
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessSensorDataBenchmark {
+
+    private static final int BATCH = BenchData.WRITE_BATCH;
+    private static final int N = 4096;
+    private static final String DEVICE = "bench-device";
+
+    private Path dir;
+    private RealtimeDataService service;
+    private volatile SampleJournal imuJournal;
+    private volatile SampleJournal gasJournal;
+    private final String[] payloads = new String[N];
+    private int i;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("bench-ingest-");
+        CsvDataService csv = stub(CsvDataService.class);
+        when(csv.openJournal(anyString(), anyString(), anyInt())).thenAnswer(inv -> {
+            String stream = inv.getArgument(1);
+            SampleJournal journal = SampleJournal.open(SampleJournal.journalPathFor(dir, stream),
+                    inv.getArgument(2), 16L * 1024 * 1024);
+            if (SessionSegmentService.IMU.equals(stream)) {
+                imuJournal = journal;
+            } else {
+                gasJournal = journal;
+            }
+            return journal;
+        });
+        when(csv.writeImuData(anyString(), anyList())).thenReturn(true);
+        when(csv.writeGasData(anyString(), anyList())).thenReturn(true);
+
+        // 推送走真实的消息转换（JSON 序列化），消息由通道直接丢弃
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        service = new RealtimeDataService(csv, new WebSocketService(template), stub(ModelPredictionService.class),
+                stub(SessionSegmentService.class), stub(CheckRecordRepository.class), stub(PatientRepository.class));
+        service.startReplay(DEVICE, "bench", "bench", "bench", null, new ReplayClock(0));
+
+        Random rnd = new Random(7);
+        long ts = 1_760_000_000_000_000L;
+        for (int k = 0; k < N; k++) {
+            payloads[k] = k % (BenchData.IMU_PER_GAS + 1) == BenchData.IMU_PER_GAS
+                    ? BenchData.gasJson(ts, 300 + rnd.nextInt(500))
+                    : BenchData.imuJson(ts, rnd.nextInt(2000) - 1000, rnd.nextInt(2000) - 1000, 16000 + rnd.nextInt(800));
+            ts += 500;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        service.stopDataReceiving(DEVICE).join();
+        service.shutdown();
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void processBatch() {
+        for (int k = 0; k < BATCH; k++) {
+            service.processSensorData(payloads[i++ & (N - 1)], DEVICE);
+        }
+        drain(imuJournal);
+        drain(gasJournal);
+    }
+
+    private static void drain(SampleJournal journal) {
+        if (journal != null) {
+            journal.read(BATCH);
+            journal.commit();
+        }
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+}
@@ -0,0 +1,62 @@
+package cn.scut.raputa.bench;
+
+import cn.scut.raputa.utils.SampleJournal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接收线程与 CSV 定时器之间的样本缓冲：内存映射采集日志（接收线程 append 整数样本，定时器 read + commit）。
+ * 每次调用处理一个定时器批次（400 条），结果按样本归一
+ *
+ * @author RAPUTA Team
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SampleBufferBenchmark {
+
+    private static final int BATCH = BenchData.WRITE_BATCH;
+
+    private SampleJournal journal;
+    private Path journalFile;
+    private int[][] values;
+    private long ts = 1_760_000_000_000L;
+
+    @Setup
+    public void setup() throws IOException {
+        journalFile = Files.createTempFile("bench-", "." + SampleJournal.EXT);
+        Files.delete(journalFile);
+        journal = SampleJournal.open(journalFile, 3, 16L * 1024 * 1024);
+        List<String[]> rows = BenchData.imuRows(BATCH, ts, 11);
+        values = new int[BATCH][3];
+        for (int k = 0; k < BATCH; k++) {
+            for (int c = 0; c < 3; c++) {
+                values[k][c] = Integer.parseInt(rows.get(k)[c + 1]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        journal.closeAndDelete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void journalAppendDrain(Blackhole bh) {
+        for (int[] v : values) {
+            journal.append(ts++, v[0], v[1], v[2]);
+        }
+        bh.consume(journal.read(BATCH));
+        journal.commit();
+    }
+}
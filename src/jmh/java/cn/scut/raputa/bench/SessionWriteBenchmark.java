@@ -0,0 +1,83 @@
+package cn.scut.raputa.bench;
+
+import cn.scut.raputa.utils.ColumnarBlockFile;
+import cn.scut.raputa.utils.IndexedCsvWriter;
+import cn.scut.raputa.utils.SessionStreamWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话文件写入：CsvDataService.writeImuData 每批调用的分段写入器（csv 为 opencsv + 稀疏索引，binary 为列式块文件）
+ * 每次调用写一个定时器批次（400 行），结果按行归一；写满约 200 批后关闭并新开分段，与按时长滚动相当，也避免文件无限增长
+ *
+ * @author RAPUTA Team
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionWriteBenchmark {
+
+    private static final int BATCH = BenchData.WRITE_BATCH;
+    private static final int BATCHES_PER_SEGMENT = 200;
+    private static final String[] HEADER = {"time", "X", "Y", "Z"};
+
+    @Param({"csv", "binary"})
+    public String format;
+
+    private Path dir;
+    private SessionStreamWriter writer;
+    private List<String[]> rows;
+    private int written;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("bench-session-");
+        rows = BenchData.imuRows(BATCH, 1_760_000_000_000L, 5);
+        open();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+        clear();
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void writeImuBatch() throws IOException {
+        if (written++ == BATCHES_PER_SEGMENT) {
+            writer.close();
+            open();
+            written = 1;
+        }
+        writer.writeRows(rows);
+    }
+
+    // 每个分段从空文件开始（csv 的 .idx 索引文件一并清掉）
+    private void open() throws IOException {
+        clear();
+        if ("binary".equals(format)) {
+            writer = new ColumnarBlockFile.Writer(dir.resolve("imu_000." + ColumnarBlockFile.EXT), HEADER.length - 1, true);
+        } else {
+            writer = new IndexedCsvWriter(dir.resolve("imu_000.csv"), 1000);
+        }
+        writer.writeHeader(HEADER);
+    }
+
+    private void clear() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -5,7 +5,15 @@ import cn.scut.raputa.entity.AudioData;
 import cn.scut.raputa.entity.GasData;
 import cn.scut.raputa.entity.ImuData;
 import cn.scut.raputa.response.ApiResponse;
+import cn.scut.raputa.service.DataDeleteJobService;
 import cn.scut.raputa.service.DataTransferService;
+import cn.scut.raputa.service.SensorExportService;
+import cn.scut.raputa.service.SensorPartitionService;
+import cn.scut.raputa.utils.TsMicros;
+import cn.scut.raputa.utils.VoMappers;
+import cn.scut.raputa.vo.AudioChunkVO;
+import cn.scut.raputa.vo.DeleteJobVO;
+import cn.scut.raputa.vo.SensorColumnsVO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -13,10 +21,14 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -32,6 +44,9 @@ import java.util.concurrent.CompletableFuture;
 public class DataTransferController {
 
     private final DataTransferService dataTransferService;
+    private final DataDeleteJobService dataDeleteJobService;
+    private final SensorExportService sensorExportService;
+    private final SensorPartitionService sensorPartitionService;
 
     // ========== 数据传输控制 ==========
 
@@ -115,16 +130,25 @@ public class DataTransferController {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取IMU数据成功"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
     })
-    public ResponseEntity<ApiResponse<List<ImuData>>> getImuData(
+    public ResponseEntity<ApiResponse<?>> getImuData(
             @Parameter(description = "设备ID", required = true)
             @PathVariable String deviceId,
             @Parameter(description = "开始时间戳")
             @RequestParam(required = false) Long startTime,
             @Parameter(description = "结束时间戳")
-            @RequestParam(required = false) Long endTime) {
+            @RequestParam(required = false) Long endTime,
+            @Parameter(description = "响应格式：columnar 为列式载荷（也可通过 Accept 协商）")
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         
         try {
             List<ImuData> data = dataTransferService.getImuDataByDevice(deviceId, startTime, endTime);
+            if (SensorColumnsVO.requested(format, accept)) {
+                SensorColumnsVO columns = VoMappers.toImuColumns(deviceId, data);
+                return ResponseEntity.ok()
+                        .contentType(SensorColumnsVO.contentType(accept))
+                        .body(ApiResponse.ok(columns, "获取IMU数据成功"));
+            }
             return ResponseEntity.ok(ApiResponse.ok(data, "获取IMU数据成功"));
         } catch (Exception e) {
             log.error("获取IMU数据失败", e);
@@ -132,6 +156,34 @@ public class DataTransferController {
         }
     }
 
+    @GetMapping(value = "/imu/{deviceId}/export")
+    @Operation(summary = "流式导出设备IMU数据", description = "按时间升序逐行输出 NDJSON 或 CSV，内存占用恒定，适合大范围导出")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "开始输出数据"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "请求参数错误")
+    })
+    public ResponseEntity<StreamingResponseBody> exportImuData(
+            @Parameter(description = "设备ID", required = true)
+            @PathVariable String deviceId,
+            @Parameter(description = "开始时间戳(秒)")
+            @RequestParam(required = false) Long startTime,
+            @Parameter(description = "结束时间戳(秒)")
+            @RequestParam(required = false) Long endTime,
+            @Parameter(description = "输出格式 (ndjson / csv)", example = "ndjson")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        
+        SensorExportService.Format fmt = SensorExportService.Format.of(format);
+        long startMicros = startTime != null ? TsMicros.secondsRangeStart(startTime) : Long.MIN_VALUE;
+        long endMicros = endTime != null ? TsMicros.secondsRangeEnd(endTime) : Long.MAX_VALUE;
+        
+        StreamingResponseBody body = out -> sensorExportService.writeImu(deviceId, startMicros, endMicros, fmt, out);
+        String filename = deviceId + "_imu." + fmt.name().toLowerCase();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType(fmt.getContentType()))
+                .body(body);
+    }
+
     // ========== 气体传感器数据传输 ==========
 
 //    @PostMapping("/gas")
@@ -184,16 +236,25 @@ public class DataTransferController {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取气体数据成功"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
     })
-    public ResponseEntity<ApiResponse<List<GasData>>> getGasData(
+    public ResponseEntity<ApiResponse<?>> getGasData(
             @Parameter(description = "设备ID", required = true)
             @PathVariable String deviceId,
             @Parameter(description = "开始时间戳")
             @RequestParam(required = false) Long startTime,
             @Parameter(description = "结束时间戳")
-            @RequestParam(required = false) Long endTime) {
+            @RequestParam(required = false) Long endTime,
+            @Parameter(description = "响应格式：columnar 为列式载荷（也可通过 Accept 协商）")
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         
         try {
             List<GasData> data = dataTransferService.getGasDataByDevice(deviceId, startTime, endTime);
+            if (SensorColumnsVO.requested(format, accept)) {
+                SensorColumnsVO columns = VoMappers.toGasColumns(deviceId, data);
+                return ResponseEntity.ok()
+                        .contentType(SensorColumnsVO.contentType(accept))
+                        .body(ApiResponse.ok(columns, "获取气体数据成功"));
+            }
             return ResponseEntity.ok(ApiResponse.ok(data, "获取气体数据成功"));
         } catch (Exception e) {
             log.error("获取气体数据失败", e);
@@ -201,6 +262,34 @@ public class DataTransferController {
         }
     }
 
+    @GetMapping(value = "/gas/{deviceId}/export")
+    @Operation(summary = "流式导出设备气体数据", description = "按时间升序逐行输出 NDJSON 或 CSV，内存占用恒定，适合大范围导出")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "开始输出数据"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "请求参数错误")
+    })
+    public ResponseEntity<StreamingResponseBody> exportGasData(
+            @Parameter(description = "设备ID", required = true)
+            @PathVariable String deviceId,
+            @Parameter(description = "开始时间戳(秒)")
+            @RequestParam(required = false) Long startTime,
+            @Parameter(description = "结束时间戳(秒)")
+            @RequestParam(required = false) Long endTime,
+            @Parameter(description = "输出格式 (ndjson / csv)", example = "ndjson")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        
+        SensorExportService.Format fmt = SensorExportService.Format.of(format);
+        long startMicros = startTime != null ? TsMicros.secondsRangeStart(startTime) : Long.MIN_VALUE;
+        long endMicros = endTime != null ? TsMicros.secondsRangeEnd(endTime) : Long.MAX_VALUE;
+        
+        StreamingResponseBody body = out -> sensorExportService.writeGas(deviceId, startMicros, endMicros, fmt, out);
+        String filename = deviceId + "_gas." + fmt.name().toLowerCase();
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType(fmt.getContentType()))
+                .body(body);
+    }
+
     // ========== 音频数据传输 ==========
 
     @PostMapping("/audio")
@@ -224,12 +313,12 @@ public class DataTransferController {
     }
 
     @GetMapping("/audio/{deviceId}")
-    @Operation(summary = "获取设备音频数据", description = "根据设备ID获取音频数据")
+    @Operation(summary = "获取设备音频数据", description = "根据设备ID获取音频分段元数据，不含样本字节")
     @ApiResponses(value = {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取音频数据成功"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
     })
-    public ResponseEntity<ApiResponse<List<AudioData>>> getAudioData(
+    public ResponseEntity<ApiResponse<List<AudioChunkVO>>> getAudioData(
             @Parameter(description = "设备ID", required = true)
             @PathVariable String deviceId,
             @Parameter(description = "开始时间戳")
@@ -238,36 +327,101 @@ public class DataTransferController {
             @RequestParam(required = false) Long endTime) {
         
         try {
-            List<AudioData> data = dataTransferService.getAudioDataByDevice(deviceId, startTime, endTime);
+            List<AudioChunkVO> data = dataTransferService.getAudioDataByDevice(deviceId, startTime, endTime);
             return ResponseEntity.ok(ApiResponse.ok(data, "获取音频数据成功"));
         } catch (Exception e) {
             log.error("获取音频数据失败", e);
-            return ResponseEntity.ok(ApiResponse.<List<AudioData>>error(500, "获取音频数据失败: " + e.getMessage()));
+            return ResponseEntity.ok(ApiResponse.<List<AudioChunkVO>>error(500, "获取音频数据失败: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/audio/chunk/{id}/payload")
+    @Operation(summary = "获取音频分段样本", description = "以 application/octet-stream 流式返回音频分段的原始字节，采样率与声道数见响应头")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "音频分段不存在")
+    })
+    public ResponseEntity<StreamingResponseBody> getAudioPayload(
+            @Parameter(description = "音频分段ID", required = true)
+            @PathVariable Long id) {
+
+        AudioData chunk = dataTransferService.getAudioChunk(id);
+        dataTransferService.checkAudioPayload(chunk);
+        StreamingResponseBody body = out -> dataTransferService.writeAudioPayload(chunk, out);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header("X-Sample-Rate", String.valueOf(chunk.getSampleRate()))
+                .header("X-Channels", String.valueOf(chunk.getChannels()))
+                .contentType(MediaType.APPLICATION_OCTET_STREAM);
+        if (chunk.getByteLength() != null) {
+            builder.contentLength(chunk.getByteLength());
         }
+        return builder.body(body);
     }
 
     // ========== 数据管理 ==========
 
     @DeleteMapping("/{deviceId}")
-    @Operation(summary = "删除设备数据", description = "删除指定设备的数据")
+    @Operation(summary = "删除设备数据", description = "提交后台分块删除任务，立即返回任务ID，可通过 /delete-jobs/{jobId} 查询进度")
     @ApiResponses(value = {
-            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "数据删除成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "删除任务已提交"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "请求参数错误"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
     })
-    public ResponseEntity<ApiResponse<String>> deleteDeviceData(
+    public ResponseEntity<ApiResponse<DeleteJobVO>> deleteDeviceData(
             @Parameter(description = "设备ID", required = true)
             @PathVariable String deviceId,
             @Parameter(description = "数据类型", example = "ALL")
             @RequestParam(defaultValue = "ALL") String dataType) {
         
-        try {
-            dataTransferService.deleteDeviceData(deviceId, dataType);
-            return ResponseEntity.ok(ApiResponse.ok("数据删除成功"));
-        } catch (Exception e) {
-            log.error("删除设备数据失败", e);
-            return ResponseEntity.ok(ApiResponse.<String>error(500, "删除设备数据失败: " + e.getMessage()));
-        }
+        DeleteJobVO job = dataDeleteJobService.submit(deviceId, dataType);
+        return ResponseEntity.ok(ApiResponse.ok(job, "删除任务已提交"));
+    }
+
+    @GetMapping("/delete-jobs/{jobId}")
+    @Operation(summary = "查询删除任务进度", description = "返回删除任务的状态、已删除行数与预估总数")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "任务不存在")
+    })
+    public ResponseEntity<ApiResponse<DeleteJobVO>> getDeleteJob(
+            @Parameter(description = "任务ID", required = true)
+            @PathVariable String jobId) {
+        
+        return ResponseEntity.ok(ApiResponse.ok(dataDeleteJobService.get(jobId), "查询成功"));
+    }
+
+    @GetMapping("/partitions/{table}")
+    @Operation(summary = "查询传感器表分区", description = "返回按月分区的名称、上界（ts_micros）与估算行数；未分区时为空列表")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "不支持的数据表")
+    })
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> listPartitions(
+            @Parameter(description = "数据表", example = "imu_data", required = true)
+            @PathVariable String table) {
+
+        return ResponseEntity.ok(ApiResponse.ok(sensorPartitionService.listPartitions(table), "查询成功"));
+    }
+
+    @GetMapping("/partitions/{table}/explain")
+    @Operation(summary = "查看区间查询执行计划", description = "对设备时间区间查询执行 EXPLAIN，partitions 列用于确认分区裁剪")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "不支持的数据表")
+    })
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> explainPartitions(
+            @Parameter(description = "数据表", example = "imu_data", required = true)
+            @PathVariable String table,
+            @Parameter(description = "设备ID", required = true)
+            @RequestParam String deviceId,
+            @Parameter(description = "开始时间（秒）", required = true)
+            @RequestParam Long startTime,
+            @Parameter(description = "结束时间（秒）", required = true)
+            @RequestParam Long endTime) {
+
+        List<Map<String, Object>> plan = sensorPartitionService.explainRange(table, deviceId,
+                TsMicros.secondsRangeStart(startTime), TsMicros.secondsRangeEnd(endTime));
+        return ResponseEntity.ok(ApiResponse.ok(plan, "查询成功"));
     }
 
     @GetMapping("/stats/{deviceId}")
@@ -289,9 +443,3 @@ public class DataTransferController {
         }
     }
 }
-
-
-
-
-
-
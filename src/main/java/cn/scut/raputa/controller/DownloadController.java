@@ -2,26 +2,30 @@
 package cn.scut.raputa.controller;
 
 import cn.scut.raputa.entity.PatientFile;
+import cn.scut.raputa.response.ApiResponse;
 import cn.scut.raputa.service.PatientFileService;
+import cn.scut.raputa.service.SessionSegmentService;
+import cn.scut.raputa.service.ZipExportService;
+import cn.scut.raputa.vo.ZipExportVO;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.util.StreamUtils;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @RestController
 @RequestMapping("/api/download")
@@ -30,12 +34,21 @@ import java.util.zip.ZipOutputStream;
 public class DownloadController {
 
     private final PatientFileService patientFileService;
+    private final SessionSegmentService sessionSegmentService;
+    private final ZipExportService zipExportService;
 
-    /** 1) 单个文件下载（前端传绝对路径 path） */
+    /**
+     * 1) 单个文件下载（前端传绝对路径 path；分段会话的逻辑文件按分段顺序拼接为一个文件）
+     * 支持 Range（206，单区间）、ETag/Last-Modified 条件请求（304）；单个物理文件时交给容器 sendfile 输出
+     */
     @GetMapping("/file")
-    public void downloadSingle(@RequestParam("path") String path, HttpServletResponse resp) throws IOException {
+    public void downloadSingle(@RequestParam("path") String path,
+                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                               @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                               HttpServletRequest req,
+                               HttpServletResponse resp) throws IOException {
         Path p = Paths.get(path).normalize();
-        if (!Files.exists(p) || Files.isDirectory(p)) {
+        if (Files.isDirectory(p) || !sessionSegmentService.exists(p)) {
             resp.setStatus(404);
             resp.setContentType("application/json;charset=UTF-8");
             resp.getWriter().write("{\"message\":\"file not found\"}");
@@ -43,62 +56,201 @@ public class DownloadController {
         }
         String filename = p.getFileName().toString();
         resp.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + urlEncode(filename));
-        resp.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
-        try (InputStream in = Files.newInputStream(p)) {
-            StreamUtils.copy(in, resp.getOutputStream());
+        resp.setContentType(MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        SessionSegmentService.ByteLayout layout = sessionSegmentService.byteLayout(p);
+        if (layout == null) {
+            // 不能按字节寻址（已压缩 / 二进制列式）：整体输出
+            Path gz = sessionSegmentService.compressedPath(p);
+            if (gz != null && acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+                // 已压缩且客户端接受 gzip：直接输出压缩字节，不解压也不重新压缩
+                if (notModified(req, resp, etag(Files.size(gz), Files.getLastModifiedTime(gz).toMillis()),
+                        Files.getLastModifiedTime(gz).toMillis())) {
+                    return;
+                }
+                resp.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                resp.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                resp.setContentLengthLong(Files.size(gz));
+                Files.copy(gz, resp.getOutputStream());
+                return;
+            }
+            sessionSegmentService.transferLogical(p, resp.getOutputStream());
+            return;
+        }
+
+        long length = layout.length();
+        String etag = etag(length, layout.lastModified());
+        if (notModified(req, resp, etag, layout.lastModified())) {
+            return;
+        }
+        resp.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        if (range != null && ifRangeMatches(req, etag, layout.lastModified())) {
+            long[] r = parseRange(range, length);
+            if (r == null) {
+                resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            if (r.length == 2) {
+                start = r[0];
+                end = r[1];
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        long count = end - start + 1;
+        resp.setContentLengthLong(count);
+        if ("HEAD".equals(req.getMethod()) || count <= 0) {
+            return;
         }
+
+        SessionSegmentService.Part single = layout.singleFile();
+        if (single != null && Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORTED))) {
+            // 容器在请求结束后以 sendfile 直接把文件区间写入 socket，不经过 JVM 堆
+            req.setAttribute(SENDFILE_FILENAME, single.file().toFile().getCanonicalPath());
+            req.setAttribute(SENDFILE_START, single.offset() + start);
+            req.setAttribute(SENDFILE_END, single.offset() + start + count);
+            return;
+        }
+        layout.transfer(start, count, resp.getOutputStream());
     }
 
     /** 2) 批量下载（指定某个患者，结合筛选条件） */
     @PostMapping("/patient-zip")
-    public void downloadPatientZip(@RequestBody PatientZipReq req, HttpServletResponse resp) throws IOException {
+    public ResponseEntity<StreamingResponseBody> downloadPatientZip(@RequestBody PatientZipReq req) {
         List<String> patientIds = Collections.singletonList(req.getPatientId());
         List<PatientFile> files = patientFileService.listFiles(req.getDate(), patientIds, req.getTypes(), req.getFilenameLike());
         String zipName = String.format("patient_%s_%s.zip",
                 req.getPatientId(),
                 Optional.ofNullable(req.getDate()).map(LocalDate::toString).orElse("all"));
 
-        streamZip(files, zipName, resp);
+        return streamZip(files, zipName);
     }
 
     /** 3) 批量下载（全局，支持多患者 + 条件） */
     @PostMapping("/all-zip")
-    public void downloadAllZip(@RequestBody AllZipReq req, HttpServletResponse resp) throws IOException {
+    public ResponseEntity<StreamingResponseBody> downloadAllZip(@RequestBody AllZipReq req) {
         List<PatientFile> files = patientFileService.listFiles(req.getDate(), req.getPatientIds(), req.getTypes(), req.getFilenameLike());
         String zipName = String.format("export_%s_%dfiles.zip",
                 Optional.ofNullable(req.getDate()).map(LocalDate::toString).orElse("all"),
                 files.size());
-        streamZip(files, zipName, resp);
+        return streamZip(files, zipName);
+    }
+
+    /** 4) ZIP 导出进度（exportId 取自批量下载响应头 X-Export-Id） */
+    @GetMapping("/zip-progress/{exportId}")
+    public ApiResponse<ZipExportVO> zipProgress(@PathVariable String exportId) {
+        return ApiResponse.ok(zipExportService.get(exportId), "查询成功");
     }
 
     // ---------- 内部工具 ----------
 
-    private void streamZip(List<PatientFile> files, String zipName, HttpServletResponse resp) throws IOException {
-        resp.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + urlEncode(zipName));
-        resp.setContentType("application/zip");
+    // 批量下载响应头：导出任务ID，用于查询进度（已在 CorsConfig 中暴露给前端）
+    static final String EXPORT_ID_HEADER = "X-Export-Id";
+
+    // 条目在导出线程池中并行压缩、按顺序写出；响应体在 MVC 异步线程上输出，不占用 Tomcat 请求线程
+    private ResponseEntity<StreamingResponseBody> streamZip(List<PatientFile> files, String zipName) {
+        ZipExportVO job = zipExportService.submit(files, zipName);
+        StreamingResponseBody body = out -> zipExportService.write(job.getExportId(), out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + urlEncode(zipName))
+                .header(EXPORT_ID_HEADER, job.getExportId())
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    // Tomcat sendfile 请求属性（NIO/NIO2 连接器默认开启）
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
-        // ZIP 内的目录结构：patientId/yyyy-MM-dd/HH-mm-ss/文件名
-        DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH-mm-ss");
+    private static String etag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
 
-        try (ZipOutputStream zos = new ZipOutputStream(resp.getOutputStream())) {
-            int added = 0;
-            for (PatientFile pf : files) {
-                Path real = Paths.get(pf.getFilePath()).normalize();
-                if (!Files.exists(real) || Files.isDirectory(real)) continue;
+    // 写出 ETag / Last-Modified；命中 If-None-Match（优先）或 If-Modified-Since 时返回 304
+    private static boolean notModified(HttpServletRequest req, HttpServletResponse resp, String etag, long lastModified) {
+        resp.setHeader(HttpHeaders.ETAG, etag);
+        resp.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        String ifNoneMatch = req.getHeader(HttpHeaders.IF_NONE_MATCH);
+        boolean hit;
+        if (ifNoneMatch != null) {
+            hit = ifNoneMatch.trim().equals("*") || Arrays.stream(ifNoneMatch.split(","))
+                    .map(String::trim)
+                    .map(t -> t.startsWith("W/") ? t.substring(2) : t)
+                    .anyMatch(etag::equals);
+        } else {
+            long since = dateHeader(req, HttpHeaders.IF_MODIFIED_SINCE);
+            hit = since >= 0 && lastModified / 1000 <= since / 1000;
+        }
+        if (hit) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return hit;
+    }
 
-                String date = pf.getSavedAt().toLocalDate().format(DATE);
-                String time = pf.getSavedAt().toLocalTime().format(TIME);
-                String baseName = real.getFileName().toString(); // imu.csv / gas.csv / audio.wav
+    // If-Range 与当前版本不一致时忽略 Range，返回完整内容
+    private static boolean ifRangeMatches(HttpServletRequest req, String etag, long lastModified) {
+        String ifRange = req.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"")) {
+            return ifRange.trim().equals(etag);
+        }
+        long date = dateHeader(req, HttpHeaders.IF_RANGE);
+        return date >= 0 && lastModified / 1000 <= date / 1000;
+    }
 
-                String entryName = pf.getPatientId() + "/" + date + "/" + time + "/" + baseName;
+    private static long dateHeader(HttpServletRequest req, String name) {
+        try {
+            return req.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
 
-                zos.putNextEntry(new ZipEntry(entryName));
-                Files.copy(real, zos);
-                zos.closeEntry();
-                added++;
+    /**
+     * 解析单区间 Range：返回 {start, end}（含端点）；无法满足返回 null；
+     * 多区间或格式不认识时返回空数组，按完整内容响应
+     */
+    private static long[] parseRange(String header, long length) {
+        String h = header.trim();
+        if (!h.startsWith("bytes=") || h.contains(",")) {
+            return new long[0];
+        }
+        String spec = h.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (from.isEmpty()) {
+                // bytes=-N：最后 N 个字节
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(from);
+                end = to.isEmpty() ? length - 1 : Math.min(Long.parseLong(to), length - 1);
+            }
+            if (start < 0 || start >= length || end < start) {
+                return null;
             }
-            log.info("ZIP 打包完成，共 {} 个文件", added);
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
         }
     }
 
@@ -5,6 +5,7 @@ import cn.scut.raputa.response.ApiResponse;
 import cn.scut.raputa.service.PatientFileService;
 import cn.scut.raputa.vo.PatientFilesOverviewVO;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,9 +20,11 @@ public class PatientFileController {
 
     private final PatientFileService patientFileService;
 
-    // 概览接口：把所有患者都返回（没记录的 dates 为空）
+    // 概览接口：按患者分页返回（没记录的 dates 为空）
     @GetMapping("/overview")
-    public ApiResponse<List<PatientFilesOverviewVO>> overview(
+    public ApiResponse<PageWrap<PatientFilesOverviewVO>> overview(
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false)
             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
             LocalDate date, // 前端“按天筛选”（可空）
@@ -32,9 +35,8 @@ public class PatientFileController {
     ) {
         List<String> idList = split(patientIds);
         List<String> typeList = split(types);
-        return ApiResponse.ok(
-                patientFileService.overview(date, idList, typeList, filename)
-        );
+        Page<PatientFilesOverviewVO> pg = patientFileService.overview(page, size, date, idList, typeList, filename);
+        return ApiResponse.ok(new PageWrap<>(pg.getContent(), pg.getTotalElements()));
     }
 
     private List<String> split(String s) {
@@ -42,4 +44,7 @@ public class PatientFileController {
         return Arrays.stream(s.split(","))
                 .map(String::trim).filter(t -> !t.isEmpty()).toList();
     }
+
+    public record PageWrap<T>(java.util.List<T> items, long total) {
+    }
 }
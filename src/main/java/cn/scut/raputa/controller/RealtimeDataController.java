@@ -1,18 +1,26 @@
 package cn.scut.raputa.controller;
 
-import cn.scut.raputa.entity.AudioData;
 import cn.scut.raputa.entity.GasData;
 import cn.scut.raputa.entity.ImuData;
+import cn.scut.raputa.exception.BizException;
 import cn.scut.raputa.response.ApiResponse;
 import cn.scut.raputa.service.CsvDataService;
 import cn.scut.raputa.service.DataQueryService;
 import cn.scut.raputa.service.RealtimeDataService;
+import cn.scut.raputa.service.SessionReplayService;
+import cn.scut.raputa.utils.VoMappers;
+import cn.scut.raputa.vo.AudioChunkVO;
+import cn.scut.raputa.vo.ReplayJobVO;
+import cn.scut.raputa.vo.SensorAggregateVO;
+import cn.scut.raputa.vo.SensorColumnsVO;
+import cn.scut.raputa.vo.SessionSummaryVO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -36,6 +44,7 @@ public class RealtimeDataController {
     private final RealtimeDataService realtimeDataService;
     private final DataQueryService dataQueryService;
     private final CsvDataService csvDataService;
+    private final SessionReplayService sessionReplayService;
 
     // ========== 设备连接管理 ==========
 
@@ -176,7 +185,7 @@ public class RealtimeDataController {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
     })
-    public ResponseEntity<ApiResponse<List<ImuData>>> getImuData(
+    public ResponseEntity<ApiResponse<?>> getImuData(
             @Parameter(description = "设备ID", required = true)
             @PathVariable String deviceId,
             @Parameter(description = "开始时间戳")
@@ -184,10 +193,19 @@ public class RealtimeDataController {
             @Parameter(description = "结束时间戳")
             @RequestParam(required = false) Long endTime,
             @Parameter(description = "数据条数限制")
-            @RequestParam(defaultValue = "1000") int limit) {
+            @RequestParam(defaultValue = "1000") int limit,
+            @Parameter(description = "响应格式：columnar 为列式载荷（也可通过 Accept 协商）")
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         
         try {
             List<ImuData> data = dataQueryService.getImuDataByDevice(deviceId, startTime, endTime, limit);
+            if (SensorColumnsVO.requested(format, accept)) {
+                SensorColumnsVO columns = VoMappers.toImuColumns(deviceId, data);
+                return ResponseEntity.ok()
+                        .contentType(SensorColumnsVO.contentType(accept))
+                        .body(ApiResponse.ok(columns, "获取IMU数据成功"));
+            }
             return ResponseEntity.ok(ApiResponse.ok(data, "获取IMU数据成功"));
             
         } catch (Exception e) {
@@ -202,7 +220,7 @@ public class RealtimeDataController {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
     })
-    public ResponseEntity<ApiResponse<List<GasData>>> getGasData(
+    public ResponseEntity<ApiResponse<?>> getGasData(
             @Parameter(description = "设备ID", required = true)
             @PathVariable String deviceId,
             @Parameter(description = "开始时间戳")
@@ -210,10 +228,19 @@ public class RealtimeDataController {
             @Parameter(description = "结束时间戳")
             @RequestParam(required = false) Long endTime,
             @Parameter(description = "数据条数限制")
-            @RequestParam(defaultValue = "1000") int limit) {
+            @RequestParam(defaultValue = "1000") int limit,
+            @Parameter(description = "响应格式：columnar 为列式载荷（也可通过 Accept 协商）")
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         
         try {
             List<GasData> data = dataQueryService.getGasDataByDevice(deviceId, startTime, endTime, limit);
+            if (SensorColumnsVO.requested(format, accept)) {
+                SensorColumnsVO columns = VoMappers.toGasColumns(deviceId, data);
+                return ResponseEntity.ok()
+                        .contentType(SensorColumnsVO.contentType(accept))
+                        .body(ApiResponse.ok(columns, "获取气体数据成功"));
+            }
             return ResponseEntity.ok(ApiResponse.ok(data, "获取气体数据成功"));
             
         } catch (Exception e) {
@@ -223,12 +250,12 @@ public class RealtimeDataController {
     }
 
     @GetMapping("/audio/{deviceId}")
-    @Operation(summary = "获取设备音频数据", description = "查询指定设备的音频数据")
+    @Operation(summary = "获取设备音频数据", description = "查询指定设备的音频分段元数据，样本字节通过 /api/data/audio/chunk/{id}/payload 获取")
     @ApiResponses(value = {
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
     })
-    public ResponseEntity<ApiResponse<List<AudioData>>> getAudioData(
+    public ResponseEntity<ApiResponse<List<AudioChunkVO>>> getAudioData(
             @Parameter(description = "设备ID", required = true)
             @PathVariable String deviceId,
             @Parameter(description = "开始时间戳")
@@ -239,12 +266,45 @@ public class RealtimeDataController {
             @RequestParam(defaultValue = "100") int limit) {
         
         try {
-            List<AudioData> data = dataQueryService.getAudioDataByDevice(deviceId, startTime, endTime, limit);
+            List<AudioChunkVO> data = dataQueryService.getAudioDataByDevice(deviceId, startTime, endTime, limit);
             return ResponseEntity.ok(ApiResponse.ok(data, "获取音频数据成功"));
             
         } catch (Exception e) {
             log.error("获取音频数据失败", e);
-            return ResponseEntity.ok(ApiResponse.<List<AudioData>>error(500, "获取音频数据失败: " + e.getMessage()));
+            return ResponseEntity.ok(ApiResponse.<List<AudioChunkVO>>error(500, "获取音频数据失败: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/aggregate/{deviceId}")
+    @Operation(summary = "获取设备传感器分桶聚合数据", description = "按时间分桶返回每桶的 min/max/mean/count，桶数不超过 points，用于长时间范围的图表展示")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "请求参数错误"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
+    })
+    public ResponseEntity<ApiResponse<SensorAggregateVO>> getAggregatedData(
+            @Parameter(description = "设备ID", required = true)
+            @PathVariable String deviceId,
+            @Parameter(description = "数据流 (imu / gas)", example = "imu")
+            @RequestParam(defaultValue = "imu") String stream,
+            @Parameter(description = "开始时间戳(秒)", required = true)
+            @RequestParam Long startTime,
+            @Parameter(description = "结束时间戳(秒)", required = true)
+            @RequestParam Long endTime,
+            @Parameter(description = "期望桶宽(毫秒)")
+            @RequestParam(required = false) Long bucketMs,
+            @Parameter(description = "最大点数（图表像素宽度）")
+            @RequestParam(defaultValue = "1000") int points) {
+        
+        try {
+            SensorAggregateVO data = dataQueryService.aggregate(deviceId, stream, startTime, endTime, bucketMs, points);
+            return ResponseEntity.ok(ApiResponse.ok(data, "获取聚合数据成功"));
+            
+        } catch (BizException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("获取聚合数据失败", e);
+            return ResponseEntity.ok(ApiResponse.<SensorAggregateVO>error(500, "获取聚合数据失败: " + e.getMessage()));
         }
     }
 
@@ -287,6 +347,23 @@ public class RealtimeDataController {
         }
     }
 
+    @GetMapping("/csv/sessions")
+    @Operation(summary = "获取会话列表", description = "返回各会话目录及其 manifest.json 中的样本数、首末时间戳、丢弃数、音频帧数与时长，不读取数据文件")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "获取会话列表成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "500", description = "服务器内部错误")
+    })
+    public ResponseEntity<ApiResponse<List<SessionSummaryVO>>> getSessionList() {
+        try {
+            List<SessionSummaryVO> sessions = csvDataService.listSessions();
+            return ResponseEntity.ok(ApiResponse.ok(sessions, "获取会话列表成功"));
+
+        } catch (Exception e) {
+            log.error("获取会话列表失败", e);
+            return ResponseEntity.ok(ApiResponse.<List<SessionSummaryVO>>error(500, "获取会话列表失败: " + e.getMessage()));
+        }
+    }
+
     @DeleteMapping("/csv/files/{fileName}")
     @Operation(summary = "删除CSV文件", description = "删除指定的CSV文件")
     @ApiResponses(value = {
@@ -331,6 +408,46 @@ public class RealtimeDataController {
         }
     }
 
+    // ========== 会话回放 ==========
+
+    @PostMapping("/replay")
+    @Operation(summary = "回放已录制的会话", description = "把会话目录中的 IMU/GAS/音频按原速、倍速或不限速送入实时处理链路，立即返回回放任务ID")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "回放任务已提交"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "请求参数错误"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "会话目录不存在")
+    })
+    public ResponseEntity<ApiResponse<ReplayJobVO>> startReplay(@RequestBody ReplayRequest req) {
+        ReplayJobVO job = sessionReplayService.submit(req.folderName(), req.mode(), req.speed());
+        return ResponseEntity.ok(ApiResponse.ok(job, "回放任务已提交"));
+    }
+
+    @GetMapping("/replay/{replayId}")
+    @Operation(summary = "查询回放进度", description = "返回已注入的样本数、吞吐与单样本处理延迟；结束后分位数有效")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "查询成功"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "任务不存在")
+    })
+    public ResponseEntity<ApiResponse<ReplayJobVO>> getReplay(
+            @Parameter(description = "回放任务ID", required = true)
+            @PathVariable String replayId) {
+
+        return ResponseEntity.ok(ApiResponse.ok(sessionReplayService.get(replayId), "查询成功"));
+    }
+
+    @DeleteMapping("/replay/{replayId}")
+    @Operation(summary = "取消回放", description = "停止注入并结束回放会话，已写出的数据保留")
+    @ApiResponses(value = {
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "已取消"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "任务不存在")
+    })
+    public ResponseEntity<ApiResponse<ReplayJobVO>> cancelReplay(
+            @Parameter(description = "回放任务ID", required = true)
+            @PathVariable String replayId) {
+
+        return ResponseEntity.ok(ApiResponse.ok(sessionReplayService.cancel(replayId), "已取消"));
+    }
+
     // ========== DTO类 ==========
 
     /**
@@ -350,4 +467,13 @@ public class RealtimeDataController {
         String patientId,
         String patientName
     ) {}
+
+    /**
+     * 回放入参：mode 为 REALTIME / ACCELERATED / MAX，speed 仅 ACCELERATED 使用
+     */
+    public record ReplayRequest(
+        String folderName,
+        String mode,
+        Double speed
+    ) {}
 }
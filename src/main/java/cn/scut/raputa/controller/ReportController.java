@@ -16,6 +16,7 @@ import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @RestController
@@ -64,16 +65,19 @@ public class ReportController {
                 Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
             }
 
-            // 4. 写入 PatientFile
+            // 4. 写入 PatientFile（登记为批量异步写入，等待落库后再返回，失败时返回错误）
             patientFileService.record(
                     patientId,
                     dest.toAbsolutePath().toString(),
                     "pdf",
                     LocalDateTime.now()
-            );
+            ).join();
 
             log.info("保存并登记报告 PDF：patientId={}, path={}", patientId, dest);
             return ApiResponse.ok(dest.toString());
+        } catch (CompletionException e) {
+            log.error("登记报告 PDF 失败", e.getCause());
+            return ApiResponse.error(500, "登记报告失败：" + e.getCause().getMessage());
         } catch (Exception e) {
             log.error("上传报告 PDF 失败", e);
             return ApiResponse.error(500, "上传报告失败：" + e.getMessage());
@@ -1,21 +1,29 @@
 package cn.scut.raputa.controller;
 
+import cn.scut.raputa.dto.ChunkedUploadInitDTO;
 import cn.scut.raputa.dto.CsvMappingRequestDTO;
 import cn.scut.raputa.response.ApiResponse;
+import cn.scut.raputa.service.ChunkedUploadService;
 import cn.scut.raputa.service.TempFileService;
+import cn.scut.raputa.vo.ChunkedUploadVO;
+import cn.scut.raputa.vo.CsvInspectVO;
 import cn.scut.raputa.vo.TempFileUploadVO;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping("/api/files/temp")
 @RequiredArgsConstructor
 public class TempFileController {
 
     private final TempFileService tempFileService;
+    private final ChunkedUploadService chunkedUploadService;
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ApiResponse<TempFileUploadVO> upload(@RequestParam("file") MultipartFile file) {
@@ -23,12 +31,52 @@ public class TempFileController {
         return ApiResponse.ok(vo);
     }
 
+    @GetMapping("/{tempId}/inspect")
+    public ApiResponse<CsvInspectVO> inspect(@PathVariable String tempId,
+                                             @RequestParam(defaultValue = "20") int rows) {
+        return ApiResponse.ok(tempFileService.inspect(tempId, rows));
+    }
+
     @PostMapping("/{tempId}/mapping")
     public ApiResponse<Void> setMapping(@PathVariable String tempId, @Valid @RequestBody CsvMappingRequestDTO req) {
         tempFileService.setMapping(tempId, req);
         return ApiResponse.ok();
     }
 
+    // ---------- 可续传分块上传：init -> PUT 各块 -> complete ----------
+
+    @PostMapping("/uploads")
+    public ApiResponse<ChunkedUploadVO> initUpload(@Valid @RequestBody ChunkedUploadInitDTO req) {
+        return ApiResponse.ok(chunkedUploadService.init(req));
+    }
+
+    // 断线重连后查询缺失的块
+    @GetMapping("/uploads/{uploadId}")
+    public ApiResponse<ChunkedUploadVO> uploadStatus(@PathVariable String uploadId) {
+        return ApiResponse.ok(chunkedUploadService.status(uploadId));
+    }
+
+    // 请求体为该块的原始字节（application/octet-stream），各块可并行上传
+    @PutMapping("/uploads/{uploadId}")
+    public ApiResponse<ChunkedUploadVO> putChunk(@PathVariable String uploadId,
+                                                 @RequestParam long offset,
+                                                 @RequestHeader(value = "X-Chunk-Crc32", required = false) String crc32,
+                                                 HttpServletRequest request) throws IOException {
+        return ApiResponse.ok(chunkedUploadService.putChunk(uploadId, offset, request.getInputStream(), crc32));
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ApiResponse<TempFileUploadVO> completeUpload(@PathVariable String uploadId,
+                                                        @RequestParam(required = false) String sha256) {
+        return ApiResponse.ok(chunkedUploadService.complete(uploadId, sha256));
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ApiResponse<Void> abortUpload(@PathVariable String uploadId) {
+        chunkedUploadService.abort(uploadId);
+        return ApiResponse.ok();
+    }
+
     @DeleteMapping("/{tempId}")
     public ApiResponse<Void> delete(@PathVariable String tempId) {
         tempFileService.delete(tempId);
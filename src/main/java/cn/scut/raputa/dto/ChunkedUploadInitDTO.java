@@ -0,0 +1,30 @@
+package cn.scut.raputa.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+/**
+ * 分块上传初始化请求
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChunkedUploadInitDTO {
+
+    @NotBlank(message = "文件名不能为空")
+    @Size(max = 255)
+    private String fileName;
+
+    @NotNull(message = "文件大小不能为空")
+    @Min(value = 1, message = "文件不能为空")
+    private Long size;
+
+    // 可空，服务端按配置取默认值并限制上下限
+    private Integer chunkSize;
+
+    // 可空；整个文件的 SHA-256（十六进制），完成时校验
+    @Pattern(regexp = "[0-9a-fA-F]{64}", message = "sha256 格式不正确")
+    private String sha256;
+
+    private String contentType;
+}
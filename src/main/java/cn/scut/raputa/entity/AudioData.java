@@ -1,5 +1,6 @@
 package cn.scut.raputa.entity;
 
+import cn.scut.raputa.utils.TsMicros;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -9,8 +10,7 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Table(name = "audio_data", indexes = {
-        @Index(name = "idx_audio_device_id", columnList = "device_id"),
-        @Index(name = "idx_audio_timestamp", columnList = "timestamp"),
+        @Index(name = "idx_audio_device_ts", columnList = "device_id, ts_micros"),
         @Index(name = "idx_audio_created_at", columnList = "created_at")
 })
 public class AudioData {
@@ -25,24 +25,39 @@ public class AudioData {
     @Column(nullable = false)
     private Long timestamp;
 
+    // 派生列：epoch 微秒（timestamp 为毫秒），写入时计算，配合 (device_id, ts_micros) 组合索引做区间查询
+    @Column(name = "ts_micros")
+    private Long tsMicros;
+
     @Column(name = "sample_rate", nullable = false)
     private Integer sampleRate;
 
     @Column(nullable = false)
     private Integer channels;
 
+    // 历史数据：Base64 文本；新数据写入分段文件，此列为空
     @Column(name = "audio_data", columnDefinition = "LONGTEXT")
     private String audioData;
 
+    // 音频分段文件路径及分段在文件中的字节偏移、长度
     @Column(name = "file_path", length = 500)
     private String filePath;
 
+    @Column(name = "file_offset")
+    private Long fileOffset;
+
+    @Column(name = "byte_length")
+    private Integer byteLength;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @PrePersist
     public void prePersist() {
         this.createdAt = LocalDateTime.now();
+        if (this.timestamp != null) {
+            this.tsMicros = TsMicros.ofMillis(this.timestamp);
+        }
     }
 }
 
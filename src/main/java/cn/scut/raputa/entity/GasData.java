@@ -1,5 +1,6 @@
 package cn.scut.raputa.entity;
 
+import cn.scut.raputa.utils.TsMicros;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -9,8 +10,7 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Table(name = "gas_data", indexes = {
-        @Index(name = "idx_gas_device_id", columnList = "device_id"),
-        @Index(name = "idx_gas_timestamp", columnList = "timestamp"),
+        @Index(name = "idx_gas_device_ts", columnList = "device_id, ts_micros"),
         @Index(name = "idx_gas_created_at", columnList = "created_at")
 })
 public class GasData {
@@ -28,6 +28,10 @@ public class GasData {
     @Column(nullable = false)
     private Long timestampus;
 
+    // 派生列：epoch 微秒 = timestamp * 1e6 + timestampus，写入时计算，配合 (device_id, ts_micros) 组合索引做区间查询
+    @Column(name = "ts_micros")
+    private Long tsMicros;
+
     @Column
     private Integer flow;
 
@@ -37,6 +41,9 @@ public class GasData {
     @PrePersist
     public void prePersist() {
         this.createdAt = LocalDateTime.now();
+        if (this.timestamp != null) {
+            this.tsMicros = TsMicros.ofSeconds(this.timestamp, this.timestampus == null ? 0L : this.timestampus);
+        }
     }
 }
 
@@ -1,5 +1,6 @@
 package cn.scut.raputa.entity;
 
+import cn.scut.raputa.utils.TsMicros;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -9,8 +10,7 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Table(name = "imu_data", indexes = {
-        @Index(name = "idx_imu_device_id", columnList = "device_id"),
-        @Index(name = "idx_imu_timestamp", columnList = "timestamp"),
+        @Index(name = "idx_imu_device_ts", columnList = "device_id, ts_micros"),
         @Index(name = "idx_imu_created_at", columnList = "created_at")
 })
 public class ImuData {
@@ -28,6 +28,10 @@ public class ImuData {
     @Column(nullable = false)
     private Long timestampus;
 
+    // 派生列：epoch 微秒 = timestamp * 1e6 + timestampus，写入时计算，配合 (device_id, ts_micros) 组合索引做区间查询
+    @Column(name = "ts_micros")
+    private Long tsMicros;
+
     @Column(nullable = false)
     private Integer x;
 
@@ -43,6 +47,9 @@ public class ImuData {
     @PrePersist
     public void prePersist() {
         this.createdAt = LocalDateTime.now();
+        if (this.timestamp != null) {
+            this.tsMicros = TsMicros.ofSeconds(this.timestamp, this.timestampus == null ? 0L : this.timestampus);
+        }
     }
 }
 
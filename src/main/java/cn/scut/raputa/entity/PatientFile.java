@@ -41,6 +41,10 @@ public class PatientFile {
     @Column(name="session_key", length = 128, nullable = false)
     private String sessionKey;
 
+    // 会话结束后后台压缩生成的 .gz 路径（未压缩为空），下载时可直接输出压缩字节
+    @Column(name="compressed_path", length = 700)
+    private String compressedPath;
+
     // —— 便捷访问器（不参与持久化映射）——
     @Transient
     public String getPatientId() {
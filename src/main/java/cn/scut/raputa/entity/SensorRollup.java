@@ -0,0 +1,51 @@
+package cn.scut.raputa.entity;
+
+import cn.scut.raputa.entity.key.SensorRollupId;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * 传感器预聚合（1s / 10s / 1min 三档分辨率）
+ * 主键 (device_id, stream, resolution_ms, bucket_start) 同时作为区间查询的聚簇索引；
+ * 保存 sum 而非 avg，便于增量合并与二次分桶
+ * 通道约定：imu 为 x/y/z 对应 0/1/2，gas 仅使用通道 0（flow）
+ */
+@Entity
+@Table(name = "sensor_rollup")
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+public class SensorRollup {
+
+    @EmbeddedId
+    @AttributeOverrides({
+        @AttributeOverride(name = "deviceId", column = @Column(name = "device_id", length = 20, nullable = false)),
+        @AttributeOverride(name = "stream", column = @Column(name = "stream", length = 8, nullable = false)),
+        @AttributeOverride(name = "resolutionMs", column = @Column(name = "resolution_ms", nullable = false)),
+        @AttributeOverride(name = "bucketStart", column = @Column(name = "bucket_start", nullable = false))
+    })
+    private SensorRollupId id;
+
+    @Column(nullable = false)
+    private Long cnt;
+
+    @Column(name = "min_0")
+    private Integer min0;
+    @Column(name = "max_0")
+    private Integer max0;
+    @Column(name = "sum_0")
+    private Long sum0;
+
+    @Column(name = "min_1")
+    private Integer min1;
+    @Column(name = "max_1")
+    private Integer max1;
+    @Column(name = "sum_1")
+    private Long sum1;
+
+    @Column(name = "min_2")
+    private Integer min2;
+    @Column(name = "max_2")
+    private Integer max2;
+    @Column(name = "sum_2")
+    private Long sum2;
+}
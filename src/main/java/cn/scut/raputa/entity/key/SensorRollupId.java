@@ -0,0 +1,18 @@
+// cn/scut/raputa/entity/key/SensorRollupId.java
+package cn.scut.raputa.entity.key;
+
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serializable;
+
+@Embeddable
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+@EqualsAndHashCode
+public class SensorRollupId implements Serializable {
+    private String deviceId;
+    private String stream;        // imu / gas
+    private Integer resolutionMs; // 1000 / 10000 / 60000
+    private Long bucketStart;     // 桶起点（epoch 毫秒）
+}
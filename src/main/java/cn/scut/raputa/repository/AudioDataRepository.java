@@ -1,35 +1,44 @@
 package cn.scut.raputa.repository;
 
 import cn.scut.raputa.entity.AudioData;
-import org.springframework.data.domain.Page;
+import cn.scut.raputa.vo.AudioChunkVO;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 @Repository
 public interface AudioDataRepository extends JpaRepository<AudioData, Long> {
     
+    String CHUNK_VO = "SELECT new cn.scut.raputa.vo.AudioChunkVO(a.id, a.deviceId, a.timestamp, a.sampleRate, a.channels, a.byteLength) FROM AudioData a ";
+
     /**
-     * 根据设备ID查询音频数据
+     * 根据设备ID查询最新音频分段元数据（走 (device_id, ts_micros) 组合索引倒序扫描，不读取样本列）
      */
-    Page<AudioData> findByDeviceIdOrderByTimestampDesc(String deviceId, Pageable pageable);
+    @Query(CHUNK_VO + "WHERE a.deviceId = :deviceId ORDER BY a.tsMicros DESC")
+    List<AudioChunkVO> findChunksByDeviceId(@Param("deviceId") String deviceId, Pageable pageable);
     
     /**
-     * 根据设备ID和时间范围查询音频数据
+     * 根据设备ID和微秒时间范围查询音频分段元数据（组合索引区间扫描，不读取样本列）
      */
-    @Query("SELECT a FROM AudioData a WHERE a.deviceId = :deviceId AND a.timestamp BETWEEN :startTime AND :endTime ORDER BY a.timestamp DESC")
-    List<AudioData> findByDeviceIdAndTimestampRange(@Param("deviceId") String deviceId, 
-                                                    @Param("startTime") Long startTime, 
-                                                    @Param("endTime") Long endTime);
+    @Query(CHUNK_VO + "WHERE a.deviceId = :deviceId AND a.tsMicros BETWEEN :startMicros AND :endMicros ORDER BY a.tsMicros DESC")
+    List<AudioChunkVO> findChunksByDeviceIdAndTsMicrosRange(@Param("deviceId") String deviceId, 
+                                                           @Param("startMicros") Long startMicros, 
+                                                           @Param("endMicros") Long endMicros,
+                                                           Pageable pageable);
     
     /**
-     * 根据设备ID删除音频数据
+     * 按块删除设备音频数据（每次最多 limit 行，单独提交以缩短锁持有时间）
      */
-    void deleteByDeviceId(String deviceId);
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM audio_data WHERE device_id = :deviceId LIMIT :limit", nativeQuery = true)
+    int deleteChunkByDeviceId(@Param("deviceId") String deviceId, @Param("limit") int limit);
     
     /**
      * 统计设备的数据量
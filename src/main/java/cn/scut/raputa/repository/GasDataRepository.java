@@ -1,35 +1,71 @@
 package cn.scut.raputa.repository;
 
 import cn.scut.raputa.entity.GasData;
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface GasDataRepository extends JpaRepository<GasData, Long> {
     
     /**
-     * 根据设备ID查询气体数据
+     * 根据设备ID查询最新气体数据（走 (device_id, ts_micros) 组合索引倒序扫描，无需 filesort）
      */
-    Page<GasData> findByDeviceIdOrderByTimestampDesc(String deviceId, Pageable pageable);
+    List<GasData> findByDeviceIdOrderByTsMicrosDesc(String deviceId, Pageable pageable);
     
     /**
-     * 根据设备ID和时间范围查询气体数据
+     * 根据设备ID和微秒时间范围查询气体数据（组合索引区间扫描）
      */
-    @Query("SELECT g FROM GasData g WHERE g.deviceId = :deviceId AND g.timestamp BETWEEN :startTime AND :endTime ORDER BY g.timestamp DESC")
-    List<GasData> findByDeviceIdAndTimestampRange(@Param("deviceId") String deviceId, 
-                                                  @Param("startTime") Long startTime, 
-                                                  @Param("endTime") Long endTime);
+    @Query("SELECT g FROM GasData g WHERE g.deviceId = :deviceId AND g.tsMicros BETWEEN :startMicros AND :endMicros ORDER BY g.tsMicros DESC")
+    List<GasData> findByDeviceIdAndTsMicrosRange(@Param("deviceId") String deviceId, 
+                                                  @Param("startMicros") Long startMicros, 
+                                                  @Param("endMicros") Long endMicros,
+                                                  Pageable pageable);
     
     /**
-     * 根据设备ID删除气体数据
+     * 按时间分桶聚合：bucket = ts_micros DIV bucketMicros，返回
+     * [bucket, count, minFlow, maxFlow, avgFlow]
      */
-    void deleteByDeviceId(String deviceId);
+    @Query(value = "SELECT g.ts_micros DIV :bucketMicros AS bucket, COUNT(*) AS cnt, " +
+            "MIN(g.flow), MAX(g.flow), AVG(g.flow) " +
+            "FROM gas_data g WHERE g.device_id = :deviceId AND g.ts_micros BETWEEN :startMicros AND :endMicros " +
+            "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> aggregateByBucket(@Param("deviceId") String deviceId,
+                                     @Param("startMicros") Long startMicros,
+                                     @Param("endMicros") Long endMicros,
+                                     @Param("bucketMicros") Long bucketMicros);
+    
+    /**
+     * 流式读取气体数据（按时间升序），用于大结果集导出；
+     * fetchSize=Integer.MIN_VALUE 让 MySQL 驱动逐行返回，需在只读事务内消费并关闭
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT g FROM GasData g WHERE g.deviceId = :deviceId AND g.tsMicros BETWEEN :startMicros AND :endMicros ORDER BY g.tsMicros")
+    Stream<GasData> streamByDeviceIdAndTsMicrosRange(@Param("deviceId") String deviceId,
+                                                   @Param("startMicros") Long startMicros,
+                                                   @Param("endMicros") Long endMicros);
+    
+    /**
+     * 按块删除设备气体数据（每次最多 limit 行，单独提交以缩短锁持有时间）
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM gas_data WHERE device_id = :deviceId LIMIT :limit", nativeQuery = true)
+    int deleteChunkByDeviceId(@Param("deviceId") String deviceId, @Param("limit") int limit);
     
     /**
      * 统计设备的数据量
@@ -4,10 +4,16 @@ package cn.scut.raputa.repository;
 import cn.scut.raputa.entity.PatientFile;
 import cn.scut.raputa.entity.key.PatientFileId;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.*;
 
 public interface PatientFileRepository extends JpaRepository<PatientFile, PatientFileId>, JpaSpecificationExecutor<PatientFile> {
     Optional<PatientFile> findTop1ByIdPatientIdOrderBySavedAtDesc(String patientId);
+
+    List<PatientFile> findByIdFilePath(String filePath);
+
+    List<PatientFile> findByIdPatientIdIn(Collection<String> patientIds);
 }
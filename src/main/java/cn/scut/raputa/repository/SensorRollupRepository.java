@@ -0,0 +1,86 @@
+package cn.scut.raputa.repository;
+
+import cn.scut.raputa.entity.SensorRollup;
+import cn.scut.raputa.entity.key.SensorRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface SensorRollupRepository extends JpaRepository<SensorRollup, SensorRollupId> {
+
+    /**
+     * 增量合并一个桶：不存在则插入，存在则累加 cnt/sum 并合并 min/max
+     */
+    @Modifying
+    @Query(value = "INSERT INTO sensor_rollup (device_id, stream, resolution_ms, bucket_start, cnt, " +
+            "min_0, max_0, sum_0, min_1, max_1, sum_1, min_2, max_2, sum_2) " +
+            "VALUES (:deviceId, :stream, :resolutionMs, :bucketStart, :cnt, " +
+            ":min0, :max0, :sum0, :min1, :max1, :sum1, :min2, :max2, :sum2) AS new " +
+            "ON DUPLICATE KEY UPDATE cnt = cnt + new.cnt, " +
+            "min_0 = LEAST(min_0, new.min_0), max_0 = GREATEST(max_0, new.max_0), sum_0 = sum_0 + new.sum_0, " +
+            "min_1 = LEAST(min_1, new.min_1), max_1 = GREATEST(max_1, new.max_1), sum_1 = sum_1 + new.sum_1, " +
+            "min_2 = LEAST(min_2, new.min_2), max_2 = GREATEST(max_2, new.max_2), sum_2 = sum_2 + new.sum_2",
+            nativeQuery = true)
+    int upsert(@Param("deviceId") String deviceId,
+               @Param("stream") String stream,
+               @Param("resolutionMs") Integer resolutionMs,
+               @Param("bucketStart") Long bucketStart,
+               @Param("cnt") Long cnt,
+               @Param("min0") Integer min0, @Param("max0") Integer max0, @Param("sum0") Long sum0,
+               @Param("min1") Integer min1, @Param("max1") Integer max1, @Param("sum1") Long sum1,
+               @Param("min2") Integer min2, @Param("max2") Integer max2, @Param("sum2") Long sum2);
+
+    /**
+     * 在指定分辨率上二次分桶：bucket = bucket_start DIV bucketMs，返回
+     * [bucket, count, min0, max0, avg0, min1, max1, avg1, min2, max2, avg2]（与原始表聚合的行格式一致）
+     */
+    @Query(value = "SELECT r.bucket_start DIV :bucketMs AS bucket, SUM(r.cnt) AS cnt, " +
+            "MIN(r.min_0), MAX(r.max_0), SUM(r.sum_0) / SUM(r.cnt), " +
+            "MIN(r.min_1), MAX(r.max_1), SUM(r.sum_1) / SUM(r.cnt), " +
+            "MIN(r.min_2), MAX(r.max_2), SUM(r.sum_2) / SUM(r.cnt) " +
+            "FROM sensor_rollup r WHERE r.device_id = :deviceId AND r.stream = :stream " +
+            "AND r.resolution_ms = :resolutionMs AND r.bucket_start BETWEEN :startMs AND :endMs " +
+            "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<Object[]> aggregateByBucket(@Param("deviceId") String deviceId,
+                                     @Param("stream") String stream,
+                                     @Param("resolutionMs") Integer resolutionMs,
+                                     @Param("startMs") Long startMs,
+                                     @Param("endMs") Long endMs,
+                                     @Param("bucketMs") Long bucketMs);
+
+    /**
+     * 设备某数据流在指定分辨率上最早的预聚合桶（毫秒），没有预聚合时为 null；走主键前缀
+     */
+    @Query(value = "SELECT MIN(r.bucket_start) FROM sensor_rollup r WHERE r.device_id = :deviceId " +
+            "AND r.stream = :stream AND r.resolution_ms = :resolutionMs", nativeQuery = true)
+    Long findFirstBucketStart(@Param("deviceId") String deviceId,
+                              @Param("stream") String stream,
+                              @Param("resolutionMs") Integer resolutionMs);
+
+    /**
+     * 统计设备某数据流的预聚合行数
+     */
+    long countByIdDeviceIdAndIdStream(String deviceId, String stream);
+
+    /**
+     * 按块删除设备的预聚合数据
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM sensor_rollup WHERE device_id = :deviceId AND stream = :stream LIMIT :limit", nativeQuery = true)
+    int deleteChunkByDeviceIdAndStream(@Param("deviceId") String deviceId, @Param("stream") String stream, @Param("limit") int limit);
+
+    /**
+     * 按块删除某数据流在 beforeMs 之前的预聚合桶
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM sensor_rollup WHERE stream = :stream AND bucket_start < :beforeMs LIMIT :limit", nativeQuery = true)
+    int deleteChunkBefore(@Param("stream") String stream, @Param("beforeMs") Long beforeMs, @Param("limit") int limit);
+}
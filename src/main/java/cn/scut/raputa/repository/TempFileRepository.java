@@ -1,9 +1,31 @@
 package cn.scut.raputa.repository;
 
 import cn.scut.raputa.entity.TempFile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface TempFileRepository extends JpaRepository<TempFile, String> {
+
+    /**
+     * 已过期的临时文件（走 idx_temp_expire_at 索引，按过期时间从早到晚分页）
+     */
+    List<TempFile> findByExpireAtBeforeOrderByExpireAtAsc(LocalDateTime now, Pageable pageable);
+
+    /**
+     * 按 ID 批量删除，一条语句
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TempFile t WHERE t.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<String> ids);
 }
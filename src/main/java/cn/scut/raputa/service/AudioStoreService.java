@@ -0,0 +1,204 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.exception.BizException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 音频分段文件存储
+ * 音频字节按 设备/分段日期 追加写入 {store-dir}/{deviceId}/{yyyyMMdd}.pcm，数据库只记录 (file_path, file_offset, byte_length)
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@Slf4j
+public class AudioStoreService {
+
+    private static final ZoneId ZONE_CN = ZoneId.of("Asia/Shanghai");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Value("${raputa.audio.store-dir:D:/health_plat_bk/audio}")
+    private String storeDir;
+
+    // 同一分段文件的追加需串行，保证 offset 与写入位置一致；处于事务中时持有到事务结束
+    private final ConcurrentHashMap<Path, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * 追加一段音频字节，并在持有该文件追加锁时调用 record 登记分段位置（一般为写数据库行）
+     * 日期文件按分段自身的时间戳（毫秒）选择，与 audio_data 的 ts_micros 分区同一天，迟到或回放的分段不会落到当天文件；
+     * record 失败，或所在事务最终回滚时，把文件截回追加前的长度，不留下没有记录指向的字节。
+     * 事务中追加锁保持到事务结束，保证截断时该文件在 offset 之后没有其他分段
+     */
+    public <T> T append(String deviceId, Long timestampMs, byte[] bytes, Function<Segment, T> record) throws IOException {
+        Path file = dayFile(deviceId, timestampMs);
+        ReentrantLock lock = locks.computeIfAbsent(file, k -> new ReentrantLock());
+        lock.lock();
+        boolean deferred = false;
+        try {
+            Files.createDirectories(file.getParent());
+            long offset;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                offset = ch.size();
+                ByteBuffer buf = ByteBuffer.wrap(bytes);
+                while (buf.hasRemaining()) {
+                    ch.write(buf, offset + buf.position());
+                }
+            }
+            T result;
+            try {
+                result = record.apply(new Segment(file.toString(), offset, bytes.length));
+            } catch (RuntimeException e) {
+                truncate(file, offset);
+                throw e;
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        try {
+                            if (status == STATUS_ROLLED_BACK) {
+                                truncate(file, offset);
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                });
+                deferred = true;
+            }
+            return result;
+        } finally {
+            if (!deferred) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 校验分段可读：在开始输出响应前调用，响应头发出后就无法再返回错误状态
+     */
+    public void check(String filePath, long offset, int length) {
+        Path file = Paths.get(filePath);
+        if (!Files.isRegularFile(file)) {
+            throw new BizException(404, "音频文件不存在");
+        }
+        try {
+            if (offset + length > Files.size(file)) {
+                throw new BizException(500, "音频分段越界");
+            }
+        } catch (IOException e) {
+            throw new BizException(500, "读取音频文件失败");
+        }
+    }
+
+    /**
+     * 将分段内容直接拷贝到输出流（FileChannel.transferTo，不经过堆内缓冲），调用前应先 check
+     */
+    public void transfer(String filePath, long offset, int length, OutputStream out) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (offset + length > ch.size()) {
+                throw new IOException("音频分段越界: " + filePath);
+            }
+            WritableByteChannel target = Channels.newChannel(out);
+            long pos = offset;
+            long end = offset + length;
+            while (pos < end) {
+                pos += ch.transferTo(pos, end - pos, target);
+            }
+        }
+    }
+
+    /**
+     * 删除设备全部音频分段文件
+     */
+    public void deleteDevice(String deviceId) {
+        Path dir = deviceDir(deviceId);
+        try {
+            if (FileSystemUtils.deleteRecursively(dir)) {
+                log.info("已删除设备音频文件目录: {}", dir);
+            }
+        } catch (IOException e) {
+            log.warn("删除设备音频文件失败: {}", dir, e);
+        }
+    }
+
+    /**
+     * 删除所有设备中日期早于 day 的分段文件（audio_data 过期分区删除后调用），返回删除的文件数
+     */
+    public int deleteDaysBefore(LocalDate day) {
+        Path root = Paths.get(storeDir);
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        String bound = day.format(DAY);
+        int deleted = 0;
+        try (DirectoryStream<Path> devices = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : devices) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.pcm")) {
+                    for (Path file : files) {
+                        String name = file.getFileName().toString();
+                        if (!name.matches("\\d{8}\\.pcm") || name.substring(0, 8).compareTo(bound) >= 0) {
+                            continue;
+                        }
+                        Files.deleteIfExists(file);
+                        locks.remove(file);
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("删除过期音频文件失败: {}", dir, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("扫描音频目录失败: {}", root, e);
+        }
+        if (deleted > 0) {
+            log.info("已删除 {} 之前的音频分段文件 {} 个", bound, deleted);
+        }
+        return deleted;
+    }
+
+    private Path dayFile(String deviceId, Long timestampMs) {
+        LocalDate day = timestampMs == null
+                ? LocalDate.now(ZONE_CN)
+                : Instant.ofEpochMilli(timestampMs).atZone(ZONE_CN).toLocalDate();
+        return deviceDir(deviceId).resolve(day.format(DAY) + ".pcm");
+    }
+
+    private static void truncate(Path file, long size) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size);
+        } catch (IOException e) {
+            log.warn("截断音频文件失败: {} -> {}", file, size, e);
+        }
+    }
+
+    private Path deviceDir(String deviceId) {
+        // deviceId 为设备 IP，过滤掉路径分隔符等字符
+        return Paths.get(storeDir, deviceId.replaceAll("[^0-9A-Za-z._-]", "_"));
+    }
+
+    public record Segment(String filePath, long offset, int length) {}
+}
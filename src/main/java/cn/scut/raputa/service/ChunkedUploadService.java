@@ -0,0 +1,399 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.dto.ChunkedUploadInitDTO;
+import cn.scut.raputa.entity.TempFile;
+import cn.scut.raputa.exception.BizException;
+import cn.scut.raputa.repository.TempFileRepository;
+import cn.scut.raputa.utils.Ids;
+import cn.scut.raputa.vo.ChunkedUploadVO;
+import cn.scut.raputa.vo.TempFileUploadVO;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 大 CSV 的可续传分块上传：init -> 并行 PUT 各块（按偏移）-> complete
+ * 文件在 init 时按总大小预分配，各块通过 FileChannel 定位写直接落盘，不经过 multipart 缓冲；
+ * 已收到的块记录在上传目录的 upload.json 中，客户端断线或服务重启后查询状态只补传缺失的块
+ *
+ * 完成后生成与普通上传相同的 TempFile 记录（目录布局一致），后续的探测、映射、清理流程不变
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadService {
+
+    public static final String STATE_FILE = "upload.json";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int MIN_CHUNK = 256 * 1024;
+    private static final int MAX_CHUNK = 32 * 1024 * 1024;
+
+    private final TempFileRepository repo;
+
+    @Value("${raputa.storage.tmp-dir:${java.io.tmpdir}/raputa/tmp}")
+    private String tmpRoot;
+
+    // 默认块大小
+    @Value("${raputa.temp.upload.chunk-size:4194304}")
+    private int defaultChunkSize;
+
+    // 分块上传允许的最大文件
+    @Value("${raputa.temp.upload.max-bytes:2147483648}")
+    private long maxBytes;
+
+    // 未完成的上传闲置多久后清理
+    @Value("${raputa.temp.upload.stale-hours:24}")
+    private long staleHours;
+
+    private final ConcurrentHashMap<String, State> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * 上传状态（持久化为 upload.json）
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class State {
+        private String originalName;
+        private String storedName;
+        private String contentType;
+        private long size;
+        private int chunkSize;
+        private String sha256;
+        private long[] received = new long[0];   // BitSet.toLongArray()
+        @JsonIgnore
+        private final BitSet writing = new BitSet();   // 正在写入的块（只在内存中）
+    }
+
+    public ChunkedUploadVO init(ChunkedUploadInitDTO req) {
+        String originalName = Paths.get(req.getFileName()).getFileName().toString(); // 只保留文件名，防路径穿越
+        boolean looksLikeCsv = originalName.toLowerCase().endsWith(".csv")
+                || (req.getContentType() != null && req.getContentType().toLowerCase().contains("csv"));
+        if (!looksLikeCsv) {
+            throw new BizException(400, "仅支持 CSV 文件");
+        }
+        if (req.getSize() > maxBytes) {
+            throw new BizException(413, "文件过大（>" + maxBytes / 1024 / 1024 + "MB）");
+        }
+
+        String id = Ids.randomId(20);
+        State st = new State();
+        st.setOriginalName(originalName);
+        st.setStoredName(id + ".csv");
+        st.setContentType(req.getContentType());
+        st.setSize(req.getSize());
+        int chunk = req.getChunkSize() != null ? req.getChunkSize() : defaultChunkSize;
+        st.setChunkSize(Math.min(Math.max(chunk, MIN_CHUNK), MAX_CHUNK));
+        st.setSha256(req.getSha256() == null ? null : req.getSha256().toLowerCase());
+
+        Path dir = Paths.get(tmpRoot, id);
+        try {
+            Files.createDirectories(dir);
+            // 预分配（多数文件系统上为稀疏文件，不占实际空间）
+            try (RandomAccessFile raf = new RandomAccessFile(dir.resolve(st.getStoredName()).toFile(), "rw")) {
+                raf.setLength(st.getSize());
+            }
+            saveState(id, st);
+        } catch (IOException e) {
+            throw new BizException(500, "创建上传文件失败: " + e.getMessage());
+        }
+        uploads.put(id, st);
+        return toVO(id, st);
+    }
+
+    public ChunkedUploadVO status(String uploadId) {
+        State st = state(uploadId);
+        synchronized (st) {
+            return toVO(uploadId, st);
+        }
+    }
+
+    /**
+     * 写入一块：offset 必须对齐到块边界，长度必须等于该块应有的长度（最后一块可能较短）
+     * 重传已收到的块时先清除并持久化其已收标记再覆盖写入，长度与校验通过后才重新标记；写入期间不允许 complete
+     *
+     * @param crc32 可空；客户端计算的该块 CRC32（十六进制），不一致时拒绝，该块需重传
+     */
+    public ChunkedUploadVO putChunk(String uploadId, long offset, InputStream in, String crc32) {
+        State st = state(uploadId);
+        if (offset < 0 || offset >= st.getSize() || offset % st.getChunkSize() != 0) {
+            throw new BizException(400, "偏移量必须对齐到块边界");
+        }
+        int index = (int) (offset / st.getChunkSize());
+        long expected = Math.min(st.getChunkSize(), st.getSize() - offset);
+
+        synchronized (st) {
+            if (st.getWriting().get(index)) {
+                throw new BizException(409, "该块正在写入，请稍后重传");
+            }
+            BitSet bits = BitSet.valueOf(st.getReceived());
+            if (bits.get(index)) {
+                bits.clear(index);
+                st.setReceived(bits.toLongArray());
+                try {
+                    saveState(uploadId, st);
+                } catch (IOException e) {
+                    throw new BizException(500, "保存上传状态失败: " + e.getMessage());
+                }
+            }
+            st.getWriting().set(index);
+        }
+
+        boolean ok = false;
+        try {
+            writeChunk(uploadId, st, offset, expected, in, crc32);
+            ok = true;
+        } finally {
+            if (!ok) {
+                synchronized (st) {
+                    st.getWriting().clear(index);
+                }
+            }
+        }
+
+        synchronized (st) {
+            st.getWriting().clear(index);
+            BitSet bits = BitSet.valueOf(st.getReceived());
+            bits.set(index);
+            st.setReceived(bits.toLongArray());
+            try {
+                saveState(uploadId, st);
+            } catch (IOException e) {
+                // 状态文件只影响服务重启后的续传，内存状态已更新
+                log.warn("保存上传状态失败: {}", uploadId, e);
+            }
+            return toVO(uploadId, st);
+        }
+    }
+
+    // 定位写入一块并校验长度与 CRC，不符时抛出 BizException
+    private void writeChunk(String uploadId, State st, long offset, long expected, InputStream in, String crc32) {
+        Path file = Paths.get(tmpRoot, uploadId, st.getStoredName());
+        CRC32 crc = new CRC32();
+        long written = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                if (written + n > expected) {
+                    throw new BizException(400, "块长度超出，期望 " + expected + " 字节");
+                }
+                crc.update(buf, 0, n);
+                ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+                while (bb.hasRemaining()) {
+                    ch.write(bb, offset + written + bb.position());
+                }
+                written += n;
+            }
+        } catch (NoSuchFileException e) {
+            throw new BizException(404, "上传不存在或已过期");
+        } catch (IOException e) {
+            throw new BizException(500, "写入分块失败: " + e.getMessage());
+        }
+        if (written != expected) {
+            throw new BizException(400, "块长度不符：期望 " + expected + " 字节，实际 " + written);
+        }
+        if (crc32 != null && !crc32.isBlank() && parseCrc(crc32) != crc.getValue()) {
+            throw new BizException(400, "块校验失败，请重传");
+        }
+    }
+
+    /**
+     * 全部块到齐后校验 SHA-256（init 或此处提供时），登记为临时文件
+     */
+    public TempFileUploadVO complete(String uploadId, String sha256) {
+        State st = state(uploadId);
+        synchronized (st) {
+            if (!st.getWriting().isEmpty()) {
+                throw new BizException(409, "还有分块正在写入");
+            }
+            List<Integer> missing = missing(st);
+            if (!missing.isEmpty()) {
+                throw new BizException(409, "还有 " + missing.size() + " 块未上传");
+            }
+            Path dir = Paths.get(tmpRoot, uploadId);
+            Path file = dir.resolve(st.getStoredName());
+            String expected = sha256 != null && !sha256.isBlank() ? sha256.toLowerCase() : st.getSha256();
+            if (expected != null) {
+                String actual = sha256Of(file);
+                if (!expected.equals(actual)) {
+                    // 无法确定是哪一块出错，清空已收记录，需整体重传
+                    st.setReceived(new long[0]);
+                    try {
+                        saveState(uploadId, st);
+                    } catch (IOException e) {
+                        log.warn("保存上传状态失败: {}", uploadId, e);
+                    }
+                    throw new BizException(400, "文件校验失败（sha256 不一致），请重新上传");
+                }
+            }
+
+            TempFile t = new TempFile();
+            t.setId(uploadId);
+            t.setOriginalName(st.getOriginalName());
+            t.setStoredName(st.getStoredName());
+            t.setLocation(file.toAbsolutePath().toString());
+            t.setContentType(st.getContentType());
+            t.setSize(st.getSize());
+            t.setExpireAt(LocalDateTime.now(TempFile.ZONE_CN).plusHours(6));
+            repo.save(t);
+
+            uploads.remove(uploadId);
+            try {
+                Files.deleteIfExists(dir.resolve(STATE_FILE));
+            } catch (IOException e) {
+                log.warn("删除上传状态文件失败: {}", uploadId, e);
+            }
+            return new TempFileUploadVO(uploadId);
+        }
+    }
+
+    public void abort(String uploadId) {
+        state(uploadId);
+        uploads.remove(uploadId);
+        deleteDir(Paths.get(tmpRoot, uploadId));
+    }
+
+    /**
+     * 清理闲置超过 stale-hours 的未完成上传（由临时文件清理任务调用）
+     */
+    public int purgeStale() {
+        Path root = Paths.get(tmpRoot);
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long cutoff = System.currentTimeMillis() - staleHours * 3_600_000L;
+        int purged = 0;
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                Path state = dir.resolve(STATE_FILE);
+                if (Files.isRegularFile(state) && Files.getLastModifiedTime(state).toMillis() < cutoff) {
+                    uploads.remove(dir.getFileName().toString());
+                    deleteDir(dir);
+                    purged++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理未完成上传失败", e);
+        }
+        return purged;
+    }
+
+    // 内存中没有时从 upload.json 恢复（服务重启后续传）
+    private State state(String uploadId) {
+        if (uploadId == null || !uploadId.matches("[A-Za-z0-9]+")) {
+            throw new BizException(404, "上传不存在或已过期");
+        }
+        return uploads.computeIfAbsent(uploadId, id -> {
+            Path file = Paths.get(tmpRoot, id, STATE_FILE);
+            if (!Files.isRegularFile(file)) {
+                throw new BizException(404, "上传不存在或已过期");
+            }
+            try {
+                return objectMapper.readValue(file.toFile(), State.class);
+            } catch (IOException e) {
+                throw new BizException(500, "读取上传状态失败: " + e.getMessage());
+            }
+        });
+    }
+
+    private void saveState(String uploadId, State st) throws IOException {
+        Path dir = Paths.get(tmpRoot, uploadId);
+        Path tmp = dir.resolve(STATE_FILE + ".tmp");
+        objectMapper.writeValue(tmp.toFile(), st);
+        Files.move(tmp, dir.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<Integer> missing(State st) {
+        BitSet bits = BitSet.valueOf(st.getReceived());
+        int count = chunkCount(st);
+        List<Integer> out = new ArrayList<>();
+        for (int i = bits.nextClearBit(0); i < count; i = bits.nextClearBit(i + 1)) {
+            out.add(i);
+        }
+        return out;
+    }
+
+    private static int chunkCount(State st) {
+        return (int) ((st.getSize() + st.getChunkSize() - 1) / st.getChunkSize());
+    }
+
+    private static ChunkedUploadVO toVO(String uploadId, State st) {
+        List<Integer> missing = missing(st);
+        int count = chunkCount(st);
+        long receivedBytes = st.getSize();
+        for (int i : missing) {
+            receivedBytes -= Math.min(st.getChunkSize(), st.getSize() - (long) i * st.getChunkSize());
+        }
+        return ChunkedUploadVO.builder()
+                .uploadId(uploadId)
+                .fileName(st.getOriginalName())
+                .size(st.getSize())
+                .chunkSize(st.getChunkSize())
+                .chunkCount(count)
+                .receivedBytes(receivedBytes)
+                .missingChunks(missing)
+                .build();
+    }
+
+    private static long parseCrc(String hex) {
+        try {
+            return Long.parseUnsignedLong(hex.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new BizException(400, "CRC32 格式不正确");
+        }
+    }
+
+    private static String sha256Of(Path file) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            while (ch.read(buf) != -1) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new BizException(500, "校验文件失败: " + e.getMessage());
+        }
+    }
+
+    private static void deleteDir(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            log.warn("删除上传目录失败: {}", dir, e);
+        }
+    }
+}
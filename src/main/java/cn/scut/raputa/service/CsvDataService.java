@@ -1,22 +1,33 @@
 package cn.scut.raputa.service;
 
-import com.opencsv.CSVWriter;
-
+import cn.scut.raputa.utils.ColumnarBlockFile;
+import cn.scut.raputa.utils.CsvTimeIndex;
+import cn.scut.raputa.utils.IndexedCsvWriter;
+import cn.scut.raputa.utils.SampleJournal;
+import cn.scut.raputa.utils.SessionManifest;
+import cn.scut.raputa.utils.SessionStreamWriter;
+import cn.scut.raputa.vo.SessionSummaryVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 /**
  * CSV数据写入服务 - 参考原始项目的ImuGasCSV.java
@@ -30,13 +41,31 @@ import java.util.concurrent.ConcurrentHashMap;
 public class CsvDataService {
 
     private final PatientFileService patientFileService;
+    private final SessionSegmentService segmentService;
+    private final SensorRollupService sensorRollupService;
     
     private static final String CSV_DIRECTORY = "D:/health_plat_bk/data";
     private static final DateTimeFormatter FILE_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
     
+    // 稀疏时间索引步长（每 N 行登记一次偏移）：IMU 约 1000 行/批量级，GAS 频率低得多
+    private static final int IMU_INDEX_STRIDE = 1000;
+    private static final int GAS_INDEX_STRIDE = 100;
+    
     // 存储每个设备的文件路径和CSVWriter
-    private final ConcurrentHashMap<String, CSVWriter> imuWriters = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, CSVWriter> gasWriters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SessionStreamWriter> imuWriters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SessionStreamWriter> gasWriters = new ConcurrentHashMap<>();
+    
+    // 会话分段文件格式：csv（默认）或 binary（二进制列式 .rbin，读取/下载时即时还原为 CSV）
+    @Value("${raputa.session.format:csv}")
+    private String sessionFormat;
+    
+    // binary 格式下数据块是否 Deflate 压缩
+    @Value("${raputa.session.binary-deflate:true}")
+    private boolean binaryDeflate;
+    
+    // 每个流的采集日志容量（MB），写入器落后超过该容量时新样本被丢弃
+    @Value("${raputa.journal.capacity-mb:16}")
+    private long journalCapacityMb;
     
     // 存储每个设备的会话文件夹路径
     private final ConcurrentHashMap<String, String> sessionFolders = new ConcurrentHashMap<>();
@@ -106,44 +135,22 @@ public class CsvDataService {
      * 
      * @param deviceId 设备ID
      * @param dataList IMU数据列表 [timestamp, x, y, z]
+     * @return 是否写入成功
      */
-    public void writeImuData(String deviceId, List<String[]> dataList) {
+    public boolean writeImuData(String deviceId, List<String[]> dataList) {
         if (dataList == null || dataList.isEmpty()) {
-            return;
+            return true;
         }
         
         try {
-            // 检查是否已有writer，如果没有则创建新的文件
-            CSVWriter writer = imuWriters.computeIfAbsent(deviceId, id -> {
-                try {
-                    Path filePath = getSessionFilePath(deviceId, "imu.csv");
-                    CSVWriter csvWriter = new CSVWriter(new FileWriter(filePath.toFile(), true));
-                    if (Files.size(filePath) == 0) {
-                        csvWriter.writeNext(new String[]{"time", "X", "Y", "Z"});
-                        csvWriter.flush();
-                        String patientId = sessionPatientIds.getOrDefault(deviceId, "unknown");
-                        patientFileService.record(patientId, filePath.toAbsolutePath().toString(), "csv", LocalDateTime.now());
-                    }
-                    log.info("创建新的IMU CSV文件: {}", filePath);
-                    return csvWriter;
-                } catch (IOException e) {
-                    log.error("创建IMU CSV写入器失败: {}", deviceId, e);
-                    return null;
-                }
-            });
-            
-            if (writer != null) {
-                // 写入数据
-                for (String[] data : dataList) {
-                    writer.writeNext(data);
-                }
-                writer.flush();
-                
-                log.debug("成功写入 {} 条IMU数据", dataList.size());
-            }
+            appendRows(deviceId, SessionSegmentService.IMU, imuWriters,
+                    new String[]{"time", "X", "Y", "Z"}, IMU_INDEX_STRIDE, dataList);
+            log.debug("成功写入 {} 条IMU数据", dataList.size());
+            return true;
             
         } catch (IOException e) {
             log.error("写入IMU数据到CSV文件失败", e);
+            return false;
         }
     }
     
@@ -152,51 +159,185 @@ public class CsvDataService {
      * 
      * @param deviceId 设备ID
      * @param dataList GAS数据列表 [timestamp, flow]
+     * @return 是否写入成功
      */
-    public void writeGasData(String deviceId, List<String[]> dataList) {
+    public boolean writeGasData(String deviceId, List<String[]> dataList) {
         if (dataList == null || dataList.isEmpty()) {
-            return;
+            return true;
         }
         
         try {
-            // 检查是否已有writer，如果没有则创建新的文件
-            CSVWriter writer = gasWriters.computeIfAbsent(deviceId, id -> {
-                try {
-                    Path filePath = getSessionFilePath(deviceId, "gas.csv");
-                    CSVWriter csvWriter = new CSVWriter(new FileWriter(filePath.toFile(), true));
-                    if (Files.size(filePath) == 0) {
-                        csvWriter.writeNext(new String[]{"time", "value"});
-                        csvWriter.flush();
-                        String patientId = sessionPatientIds.getOrDefault(deviceId, "unknown");
-                        patientFileService.record(patientId, filePath.toAbsolutePath().toString(), "csv", LocalDateTime.now());
-                    }
-                    log.info("创建新的GAS CSV文件: {}", filePath);
-                    return csvWriter;
-                } catch (IOException e) {
-                    log.error("创建GAS CSV写入器失败: {}", deviceId, e);
-                    return null;
-                }
-            });
+            appendRows(deviceId, SessionSegmentService.GAS, gasWriters,
+                    new String[]{"time", "value"}, GAS_INDEX_STRIDE, dataList);
+            log.debug("成功写入 {} 条GAS数据", dataList.size());
+            return true;
             
-            if (writer != null) {
-                // 写入数据
-                for (String[] data : dataList) {
-                    writer.writeNext(data);
+        } catch (IOException e) {
+            log.error("写入GAS数据到CSV文件失败", e);
+            return false;
+        }
+    }
+    
+    /**
+     * 打开设备当前会话某个流的采集日志（会话目录/imu.jnl）
+     *
+     * @param channels 每个样本的通道数（IMU 3，GAS 1）
+     */
+    public SampleJournal openJournal(String deviceId, String stream, int channels) throws IOException {
+        Path folder = getSessionFolderPath(deviceId);
+        return SampleJournal.open(SampleJournal.journalPathFor(folder, stream), channels, journalCapacityMb * 1024 * 1024);
+    }
+    
+    /**
+     * 重放崩溃遗留的采集日志：未提交的样本追加到原会话的 CSV 分段后结束该会话，日志文件随后删除
+     * 只在启动时调用（此时没有录制中的会话）
+     */
+    public void recoverJournals() {
+        Path directory = Paths.get(CSV_DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> folders;
+        try (var dirs = Files.list(directory)) {
+            folders = dirs.filter(Files::isDirectory).sorted().toList();
+        } catch (IOException e) {
+            log.error("扫描会话目录失败", e);
+            return;
+        }
+        for (Path folder : folders) {
+            Path imuJournal = SampleJournal.journalPathFor(folder, SessionSegmentService.IMU);
+            Path gasJournal = SampleJournal.journalPathFor(folder, SessionSegmentService.GAS);
+            if (!Files.isRegularFile(imuJournal) && !Files.isRegularFile(gasJournal)) {
+                continue;
+            }
+            String key = "recover:" + folder.getFileName();
+            sessionFolders.put(key, folder.toString());
+            sessionPatientIds.put(key, patientIdOf(folder));
+            long replayed = 0;
+            try {
+                SessionManifest before = SessionManifest.read(folder);
+                replayed += replayJournal(key, imuJournal, true);
+                replayed += replayJournal(key, gasJournal, false);
+                if (replayed > 0 || before == null || !before.isFinalized()) {
+                    closeWriter(key);
                 }
-                writer.flush();
-                
-                log.debug("成功写入 {} 条GAS数据", dataList.size());
+                log.info("会话 {} 采集日志恢复完成，重放 {} 条样本", folder.getFileName(), replayed);
+            } catch (IOException e) {
+                // 只关闭已打开的分段，不结束会话，下次启动从已提交位置继续重放
+                closeQuietly(imuWriters.remove(key));
+                closeQuietly(gasWriters.remove(key));
+                log.error("会话 {} 采集日志恢复失败，保留日志待下次启动重试", folder.getFileName(), e);
+            } finally {
+                sessionFolders.remove(key);
+                sessionPatientIds.remove(key);
+            }
+        }
+    }
+    
+    private long replayJournal(String key, Path path, boolean imu) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return 0;
+        }
+        // 已全部提交（正常结束但删除失败）的日志直接删除，不必映射整个环形区
+        if (!SampleJournal.hasUncommitted(path)) {
+            Files.deleteIfExists(path);
+            return 0;
+        }
+        long replayed = 0;
+        SampleJournal journal = SampleJournal.open(path, imu ? 3 : 1, journalCapacityMb * 1024 * 1024);
+        try {
+            List<String[]> rows;
+            while (!(rows = journal.read(5000)).isEmpty()) {
+                boolean ok = imu ? writeImuData(key, rows) : writeGasData(key, rows);
+                if (!ok) {
+                    throw new IOException("重放写入失败: " + path);
+                }
+                journal.commit();
+                replayed += rows.size();
             }
-            
         } catch (IOException e) {
-            log.error("写入GAS数据到CSV文件失败", e);
+            journal.close();
+            throw e;
         }
+        journal.closeAndDelete();
+        return replayed;
+    }
+    
+    private static void closeQuietly(SessionStreamWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("关闭分段写入器失败", e);
+        }
+    }
+    
+    /**
+     * 会话目录名为 患者id_患者姓名_时间戳，取其中的患者id
+     */
+    public static String patientIdOf(Path folder) {
+        String name = folder.getFileName().toString();
+        int sep = name.indexOf('_');
+        return sep > 0 ? name.substring(0, sep) : "unknown";
     }
     
     /**
-     * 获取会话文件路径（在会话文件夹内）
+     * 追加一批数据行到当前分段；当前分段写满设定时长时先滚动到新分段
+     * 对外登记的是逻辑路径（会话目录/imu.csv），首个分段创建时登记一次
      */
-    private Path getSessionFilePath(String deviceId, String fileName) throws IOException {
+    private void appendRows(String deviceId, String stream, ConcurrentHashMap<String, SessionStreamWriter> writers,
+                            String[] header, int stride, List<String[]> dataList) throws IOException {
+        Path folder = getSessionFolderPath(deviceId);
+        SessionStreamWriter writer = writers.get(deviceId);
+        if (writer != null && segmentService.shouldRoll(folder, stream)) {
+            writers.remove(deviceId);
+            writer.close();
+            writer = null;
+        }
+        if (writer == null) {
+            boolean first = segmentService.segmentCount(folder, stream) == 0;
+            Path segment;
+            if ("binary".equalsIgnoreCase(sessionFormat)) {
+                segment = segmentService.openSegment(folder, stream, "csv", ColumnarBlockFile.EXT);
+                writer = new ColumnarBlockFile.Writer(segment, header.length - 1, binaryDeflate);
+            } else {
+                segment = segmentService.openSegment(folder, stream, "csv");
+                writer = new IndexedCsvWriter(segment, stride);
+            }
+            if (writer.isEmpty()) {
+                writer.writeHeader(header);
+            }
+            writers.put(deviceId, writer);
+            if (first) {
+                String patientId = sessionPatientIds.getOrDefault(deviceId, "unknown");
+                Path logical = SessionSegmentService.logicalPath(folder, stream, "csv");
+                patientFileService.record(patientId, logical.toAbsolutePath().toString(), "csv", LocalDateTime.now());
+            }
+            log.info("创建新的{}分段: {}", stream.toUpperCase(), segment);
+        }
+
+        // 写入数据（CSV 同时维护 .idx 稀疏索引，二进制格式以块头作索引）；写入器跳过的行计为丢弃
+        SessionStreamWriter.Written written = writer.writeRows(dataList);
+        if (written.rows() < dataList.size()) {
+            segmentService.recordDropped(folder, stream, dataList.size() - written.rows());
+        }
+        if (written.rows() > 0) {
+            segmentService.recordSamples(folder, stream, written.firstTs(), written.lastTs(), written.rows());
+            // 实时采集与回放的数据只写会话文件，预聚合在这里随之更新；失败不影响文件写入
+            try {
+                sensorRollupService.accumulateRows(deviceId, stream, dataList);
+            } catch (RuntimeException e) {
+                log.warn("更新预聚合失败: deviceId={}, stream={}", deviceId, stream, e);
+            }
+        }
+    }
+
+    /**
+     * 获取会话文件夹路径，没有则创建一个默认的
+     */
+    private Path getSessionFolderPath(String deviceId) throws IOException {
         String sessionFolder = sessionFolders.get(deviceId);
         if (sessionFolder == null) {
             // 如果没有会话文件夹，创建一个默认的
@@ -208,7 +349,7 @@ public class CsvDataService {
             sessionFolders.put(deviceId, folderPath.toString());
             sessionFolder = folderPath.toString();
         }
-        return Paths.get(sessionFolder, fileName);
+        return Paths.get(sessionFolder);
     }
 
     private static String sanitize(String s) {
@@ -255,13 +396,13 @@ public class CsvDataService {
     // }
         public void closeWriter(String deviceId) {
         try {
-            CSVWriter imuWriter = imuWriters.remove(deviceId);
+            SessionStreamWriter imuWriter = imuWriters.remove(deviceId);
             if (imuWriter != null) {
                 imuWriter.close();
                 log.info("关闭设备 {} 的IMU CSV写入器", deviceId);
             }
 
-            CSVWriter gasWriter = gasWriters.remove(deviceId);
+            SessionStreamWriter gasWriter = gasWriters.remove(deviceId);
             if (gasWriter != null) {
                 gasWriter.close();
                 log.info("关闭设备 {} 的GAS CSV写入器", deviceId);
@@ -270,13 +411,15 @@ public class CsvDataService {
             String sessionFolder = sessionFolders.get(deviceId);
             String patientId = sessionPatientIds.getOrDefault(deviceId, "unknown");
 
-            // 👉 如果会话目录里存在 audio.wav，则登记到DB
+            // 👉 如果会话目录里存在 audio.wav（或其分段），则以逻辑路径登记到DB
             if (sessionFolder != null) {
-                Path audio = Paths.get(sessionFolder, "audio.wav");
-                if (Files.exists(audio)) {
+                Path folder = Paths.get(sessionFolder);
+                Path audio = SessionSegmentService.logicalPath(folder, SessionSegmentService.AUDIO, "wav");
+                if (segmentService.exists(audio)) {
                     patientFileService.record(patientId, audio.toAbsolutePath().toString(), "wav", LocalDateTime.now());
                     log.info("登记音频文件: {}", audio);
                 }
+                segmentService.finalizeSession(folder);
                 log.info("设备 {} 会话文件已保存到: {}", deviceId, sessionFolder);
             }
 
@@ -293,6 +436,36 @@ public class CsvDataService {
     
 
     
+    /**
+     * 登记解析失败被丢弃的样本数（写入会话清单）
+     */
+    public void recordDropped(String deviceId, String stream, int dropped) {
+        String sessionFolder = sessionFolders.get(deviceId);
+        if (sessionFolder != null && dropped > 0) {
+            segmentService.recordDropped(Paths.get(sessionFolder), stream, dropped);
+        }
+    }
+    
+    /**
+     * 会话目录列表及其清单（只读 manifest.json，不打开数据文件）
+     */
+    public List<SessionSummaryVO> listSessions() {
+        Path directory = Paths.get(CSV_DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (var dirs = Files.list(directory)) {
+            return dirs.filter(Files::isDirectory)
+                    .sorted(Comparator.comparing((Path p) -> p.getFileName().toString()).reversed())
+                    .map(dir -> new SessionSummaryVO(dir.getFileName().toString(), dir.toAbsolutePath().toString(),
+                            segmentService.manifestOf(dir)))
+                    .toList();
+        } catch (IOException e) {
+            log.error("获取会话列表失败", e);
+            return new ArrayList<>();
+        }
+    }
+    
     /**
      * 获取CSV文件列表
      */
@@ -346,29 +519,19 @@ public class CsvDataService {
             
             String fileName = dataType + ".csv";
             Path sourcePath = Paths.get(sessionFolder, fileName);
-            if (!Files.exists(sourcePath)) {
+            List<Path> segments = segmentService.resolve(sourcePath);
+            if (segments.isEmpty()) {
                 log.warn("文件不存在: {}", sourcePath);
                 return null;
             }
             
-            // 读取所有行
-            List<String> allLines = Files.readAllLines(sourcePath);
-            if (allLines.size() <= 1) {
-                log.warn("文件数据不足: {}", fileName);
-                return null;
-            }
-            
-            // 获取最后一条数据的时间戳作为基准
-            String lastLine = allLines.get(allLines.size() - 1);
-            String[] lastParts = lastLine.split(",");
-            if (lastParts.length == 0) {
-                log.warn("最后一行数据格式错误: {}", fileName);
-                return null;
+            // 借助 .idx / 块头只扫描最后一个分段的尾部取最后时间戳，作为基准（刚滚动的空分段则向前找）
+            Long endTimeObj = null;
+            for (int i = segments.size() - 1; i >= 0 && endTimeObj == null; i--) {
+                endTimeObj = lastTimestamp(segments.get(i));
             }
-            
-            // 解析时间戳
-            Long endTimeObj = parseTimestamp(lastParts[0], lastLine, allLines, fileName);
             if (endTimeObj == null) {
+                log.warn("文件数据不足: {}", fileName);
                 return null;
             }
             final long endTime = endTimeObj;
@@ -378,24 +541,9 @@ public class CsvDataService {
             
             log.debug("导出数据段: {} - 时间范围: {} 到 {}", fileName, startTime, endTime);
             
-            // 过滤最近N秒的数据
-            List<String> header = List.of(allLines.get(0));
-            List<String> dataLines = allLines.subList(1, allLines.size()).stream()
-                .filter(line -> {
-                    String[] parts = line.split(",");
-                    if (parts.length > 0) {
-                        try {
-                            // 去除引号和空格
-                            String timestampStr = parts[0].trim().replace("\"", "");
-                            long timestamp = Long.parseLong(timestampStr);
-                            return timestamp >= startTime && timestamp <= endTime;
-                        } catch (NumberFormatException e) {
-                            return false;
-                        }
-                    }
-                    return false;
-                })
-                .toList();
+            // 按索引直接定位到区间起点读取
+            List<String> header = List.of(headerLine(segments.get(0)));
+            List<String> dataLines = readRange(sourcePath, startTime, endTime);
             
             if (dataLines.isEmpty()) {
                 log.warn("最近{}秒没有数据: {} (时间范围: {} - {})", seconds, fileName, startTime, endTime);
@@ -427,7 +575,7 @@ public class CsvDataService {
      * 为避免文件锁冲突，创建临时副本而不是直接使用原文件
      * 
      * @param deviceId 设备ID
-     * @param seconds 时长(秒) - 暂时忽略，返回整个文件
+     * @param seconds 时长(秒) - 暂时忽略，返回当前音频分段
      * @return 音频WAV文件（临时副本）
      */
     public File exportAudioSegment(String deviceId, int seconds) {
@@ -438,9 +586,9 @@ public class CsvDataService {
                 return null;
             }
             
-            // 原始音频文件
-            Path audioPath = Paths.get(sessionFolder, "audio.wav");
-            if (!Files.exists(audioPath)) {
+            // 当前正在写入的音频分段（只复制当前分段，而不是整个会话的音频）
+            Path audioPath = segmentService.currentSegment(Paths.get(sessionFolder), SessionSegmentService.AUDIO);
+            if (audioPath == null || !Files.exists(audioPath)) {
                 log.warn("设备 {} 的音频文件不存在: {}", deviceId, audioPath);
                 return null;
             }
@@ -462,33 +610,60 @@ public class CsvDataService {
     }
     
     /**
-     * 解析时间戳，如果失败尝试倒数第二条
+     * 读取会话 CSV 在 [startTs, endTs]（毫秒）内的数据行
+     * csv 为逻辑路径（会话目录/imu.csv），按分段顺序读取；有 .idx 索引时直接 seek 到区间起点
      */
-    private Long parseTimestamp(String timestampField, String line, List<String> allLines, String fileName) {
-        try {
-            // 去除可能的空格和引号
-            String timestampStr = timestampField.trim().replace("\"", "");
-            long timestamp = Long.parseLong(timestampStr);
-            log.debug("成功解析时间戳: {} -> {}", timestampField, timestamp);
-            return timestamp;
-        } catch (NumberFormatException e) {
-            log.error("无法解析最后一条数据的时间戳: '{}', 原始行: {}", timestampField, line);
-            // 尝试倒数第二条
-            if (allLines.size() > 2) {
-                String secondLastLine = allLines.get(allLines.size() - 2);
-                String[] secondLastParts = secondLastLine.split(",");
-                if (secondLastParts.length > 0) {
-                    try {
-                        String timestampStr = secondLastParts[0].trim().replace("\"", "");
-                        long timestamp = Long.parseLong(timestampStr);
-                        log.info("使用倒数第二条数据的时间戳: {}", timestamp);
-                        return timestamp;
-                    } catch (NumberFormatException e2) {
-                        log.error("倒数第二条也无法解析，放弃: {}", secondLastParts[0]);
+    public List<String> readRange(Path csv, long startTs, long endTs) throws IOException {
+        List<String> lines = new ArrayList<>();
+        scanRange(csv, startTs, endTs, lines::add);
+        return lines;
+    }
+    
+    /**
+     * 按时间区间流式读取会话 CSV（用于大区间回放/下载，不在内存中累积）
+     */
+    public void scanRange(Path csv, long startTs, long endTs, Consumer<String> sink) throws IOException {
+        List<Path> segments = segmentService.resolve(csv);
+        Path gz = segments.isEmpty() ? segmentService.compressedPath(csv) : null;
+        if (gz != null) {
+            // 已压缩的会话：顺序解压并按时间过滤
+            try (var reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(gz), 64 * 1024), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Long ts = CsvTimeIndex.leadingTimestamp(line);
+                    if (ts == null || ts < startTs) {
+                        continue;
                     }
+                    if (ts > endTs) {
+                        break;
+                    }
+                    sink.accept(line);
                 }
             }
-            return null;
+            return;
+        }
+        for (Path segment : segments) {
+            if (ColumnarBlockFile.isColumnar(segment)) {
+                ColumnarBlockFile.scan(segment, startTs, endTs, sink);
+            } else {
+                CsvTimeIndex.scan(segment, startTs, endTs, sink);
+            }
+        }
+    }
+    
+    private static Long lastTimestamp(Path segment) throws IOException {
+        return ColumnarBlockFile.isColumnar(segment)
+                ? ColumnarBlockFile.lastTimestamp(segment)
+                : CsvTimeIndex.lastTimestamp(segment);
+    }
+    
+    private static String headerLine(Path segment) throws IOException {
+        if (ColumnarBlockFile.isColumnar(segment)) {
+            return ColumnarBlockFile.headerLine(segment);
+        }
+        try (var reader = Files.newBufferedReader(segment)) {
+            return reader.readLine();
         }
     }
 }
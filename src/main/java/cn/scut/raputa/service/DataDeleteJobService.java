@@ -0,0 +1,186 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.exception.BizException;
+import cn.scut.raputa.repository.AudioDataRepository;
+import cn.scut.raputa.repository.GasDataRepository;
+import cn.scut.raputa.repository.ImuDataRepository;
+import cn.scut.raputa.repository.SensorRollupRepository;
+import cn.scut.raputa.utils.Ids;
+import cn.scut.raputa.vo.DeleteJobVO;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+
+/**
+ * 设备数据后台删除服务
+ * 以 DELETE ... LIMIT n 分块删除并在块之间休眠限流，每块单独提交，
+ * 避免一次性加载全部实体或长时间锁表；接口立即返回任务ID用于查询进度
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DataDeleteJobService {
+
+    private final ImuDataRepository imuDataRepository;
+    private final GasDataRepository gasDataRepository;
+    private final AudioDataRepository audioDataRepository;
+    private final SensorRollupRepository sensorRollupRepository;
+    private final AudioStoreService audioStoreService;
+
+    @Value("${raputa.data.delete.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${raputa.data.delete.throttle-ms:50}")
+    private long throttleMs;
+
+    // 删除任务串行执行，避免多个任务同时争用 IO 与行锁
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "data-delete-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ConcurrentHashMap<String, DeleteJobVO> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 提交删除任务，立即返回任务快照
+     */
+    public DeleteJobVO submit(String deviceId, String dataType) {
+        String type = dataType == null ? "" : dataType.toUpperCase();
+        List<Step> steps = plan(deviceId, type);
+
+        pruneFinished();
+        DeleteJobVO job = DeleteJobVO.builder()
+                .jobId(Ids.randomId(16))
+                .deviceId(deviceId)
+                .dataType(type)
+                .status("PENDING")
+                .submittedAt(LocalDateTime.now())
+                .build();
+        jobs.put(job.getJobId(), job);
+        executor.submit(() -> run(job, steps));
+        log.info("提交数据删除任务: jobId={}, deviceId={}, dataType={}", job.getJobId(), deviceId, type);
+        return snapshot(job);
+    }
+
+    /**
+     * 查询任务进度
+     */
+    public DeleteJobVO get(String jobId) {
+        DeleteJobVO job = jobs.get(jobId);
+        if (job == null) {
+            throw new BizException(404, "删除任务不存在");
+        }
+        return snapshot(job);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private List<Step> plan(String deviceId, String type) {
+        Step imu = new Step(() -> imuDataRepository.countByDeviceId(deviceId),
+                n -> imuDataRepository.deleteChunkByDeviceId(deviceId, n));
+        Step imuRollup = new Step(() -> sensorRollupRepository.countByIdDeviceIdAndIdStream(deviceId, "imu"),
+                n -> sensorRollupRepository.deleteChunkByDeviceIdAndStream(deviceId, "imu", n));
+        Step gas = new Step(() -> gasDataRepository.countByDeviceId(deviceId),
+                n -> gasDataRepository.deleteChunkByDeviceId(deviceId, n));
+        Step gasRollup = new Step(() -> sensorRollupRepository.countByIdDeviceIdAndIdStream(deviceId, "gas"),
+                n -> sensorRollupRepository.deleteChunkByDeviceIdAndStream(deviceId, "gas", n));
+        Step audio = new Step(() -> audioDataRepository.countByDeviceId(deviceId),
+                n -> audioDataRepository.deleteChunkByDeviceId(deviceId, n));
+        // 音频行删完后再移除对应的分段文件
+        Step audioFiles = new Step(() -> 0L, n -> {
+            audioStoreService.deleteDevice(deviceId);
+            return 0;
+        });
+        return switch (type) {
+            case "IMU" -> List.of(imu, imuRollup);
+            case "GAS" -> List.of(gas, gasRollup);
+            case "AUDIO" -> List.of(audio, audioFiles);
+            case "ALL" -> List.of(imu, imuRollup, gas, gasRollup, audio, audioFiles);
+            default -> throw new BizException(400, "不支持的数据类型: " + type);
+        };
+    }
+
+    private void run(DeleteJobVO job, List<Step> steps) {
+        try {
+            long total = 0;
+            for (Step s : steps) {
+                total += s.counter().getAsLong();
+            }
+            synchronized (job) {
+                job.setEstimatedTotal(total);
+                job.setStatus("RUNNING");
+            }
+
+            for (Step s : steps) {
+                int n;
+                do {
+                    n = s.chunk().applyAsInt(chunkSize);
+                    synchronized (job) {
+                        job.setDeleted(job.getDeleted() + n);
+                        job.setChunks(job.getChunks() + 1);
+                    }
+                    if (n > 0 && throttleMs > 0) {
+                        Thread.sleep(throttleMs);
+                    }
+                } while (n > 0);
+            }
+
+            synchronized (job) {
+                job.setStatus("DONE");
+                job.setFinishedAt(LocalDateTime.now());
+            }
+            log.info("数据删除任务完成: jobId={}, deleted={}, chunks={}", job.getJobId(), job.getDeleted(), job.getChunks());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, "任务被中断");
+        } catch (Exception e) {
+            log.error("数据删除任务失败: jobId={}", job.getJobId(), e);
+            fail(job, e.getMessage());
+        }
+    }
+
+    private void fail(DeleteJobVO job, String error) {
+        synchronized (job) {
+            job.setStatus("FAILED");
+            job.setError(error);
+            job.setFinishedAt(LocalDateTime.now());
+        }
+    }
+
+    private DeleteJobVO snapshot(DeleteJobVO job) {
+        synchronized (job) {
+            return job.toBuilder().build();
+        }
+    }
+
+    // 已结束超过 1 小时的任务不再保留
+    private void pruneFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(1);
+        List<String> expired = new ArrayList<>();
+        jobs.forEach((id, j) -> {
+            if (j.getFinishedAt() != null && j.getFinishedAt().isBefore(cutoff)) {
+                expired.add(id);
+            }
+        });
+        expired.forEach(jobs::remove);
+    }
+
+    private record Step(LongSupplier counter, IntUnaryOperator chunk) {}
+}
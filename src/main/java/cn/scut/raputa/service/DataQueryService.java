@@ -1,16 +1,20 @@
 package cn.scut.raputa.service;
 
-import cn.scut.raputa.entity.AudioData;
 import cn.scut.raputa.entity.GasData;
 import cn.scut.raputa.entity.ImuData;
+import cn.scut.raputa.exception.BizException;
 import cn.scut.raputa.repository.AudioDataRepository;
 import cn.scut.raputa.repository.GasDataRepository;
 import cn.scut.raputa.repository.ImuDataRepository;
+import cn.scut.raputa.utils.TsMicros;
+import cn.scut.raputa.vo.AudioChunkVO;
+import cn.scut.raputa.vo.SensorAggregateVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -26,6 +30,10 @@ public class DataQueryService {
     private final ImuDataRepository imuDataRepository;
     private final GasDataRepository gasDataRepository;
     private final AudioDataRepository audioDataRepository;
+    private final SensorRollupService sensorRollupService;
+
+    // 聚合查询的桶数上限，避免 points 过大时退化为返回原始数据
+    private static final int MAX_BUCKETS = 5000;
 
     /**
      * 获取设备IMU数据
@@ -33,12 +41,10 @@ public class DataQueryService {
     public List<ImuData> getImuDataByDevice(String deviceId, Long startTime, Long endTime, int limit) {
         try {
             if (startTime != null && endTime != null) {
-                return imuDataRepository.findByDeviceIdAndTimestampRange(deviceId, startTime, endTime)
-                        .stream()
-                        .limit(limit)
-                        .toList();
+                return imuDataRepository.findByDeviceIdAndTsMicrosRange(deviceId,
+                        TsMicros.secondsRangeStart(startTime), TsMicros.secondsRangeEnd(endTime), PageRequest.of(0, limit));
             } else {
-                return imuDataRepository.findByDeviceIdOrderByTimestampDesc(deviceId, PageRequest.of(0, limit)).getContent();
+                return imuDataRepository.findByDeviceIdOrderByTsMicrosDesc(deviceId, PageRequest.of(0, limit));
             }
         } catch (Exception e) {
             log.error("查询IMU数据失败: deviceId={}", deviceId, e);
@@ -52,12 +58,10 @@ public class DataQueryService {
     public List<GasData> getGasDataByDevice(String deviceId, Long startTime, Long endTime, int limit) {
         try {
             if (startTime != null && endTime != null) {
-                return gasDataRepository.findByDeviceIdAndTimestampRange(deviceId, startTime, endTime)
-                        .stream()
-                        .limit(limit)
-                        .toList();
+                return gasDataRepository.findByDeviceIdAndTsMicrosRange(deviceId,
+                        TsMicros.secondsRangeStart(startTime), TsMicros.secondsRangeEnd(endTime), PageRequest.of(0, limit));
             } else {
-                return gasDataRepository.findByDeviceIdOrderByTimestampDesc(deviceId, PageRequest.of(0, limit)).getContent();
+                return gasDataRepository.findByDeviceIdOrderByTsMicrosDesc(deviceId, PageRequest.of(0, limit));
             }
         } catch (Exception e) {
             log.error("查询气体数据失败: deviceId={}", deviceId, e);
@@ -66,17 +70,15 @@ public class DataQueryService {
     }
 
     /**
-     * 获取设备音频数据
+     * 获取设备音频分段元数据（不含样本字节）
      */
-    public List<AudioData> getAudioDataByDevice(String deviceId, Long startTime, Long endTime, int limit) {
+    public List<AudioChunkVO> getAudioDataByDevice(String deviceId, Long startTime, Long endTime, int limit) {
         try {
             if (startTime != null && endTime != null) {
-                return audioDataRepository.findByDeviceIdAndTimestampRange(deviceId, startTime, endTime)
-                        .stream()
-                        .limit(limit)
-                        .toList();
+                return audioDataRepository.findChunksByDeviceIdAndTsMicrosRange(deviceId,
+                        TsMicros.ofMillis(startTime), TsMicros.millisRangeEnd(endTime), PageRequest.of(0, limit));
             } else {
-                return audioDataRepository.findByDeviceIdOrderByTimestampDesc(deviceId, PageRequest.of(0, limit)).getContent();
+                return audioDataRepository.findChunksByDeviceId(deviceId, PageRequest.of(0, limit));
             }
         } catch (Exception e) {
             log.error("查询音频数据失败: deviceId={}", deviceId, e);
@@ -84,6 +86,89 @@ public class DataQueryService {
         }
     }
 
+    /**
+     * 分桶聚合查询 - 数据库端 GROUP BY，返回点数由 points 决定而与原始数据量无关
+     * 桶宽 ≥ 1s 时使用预聚合表（1s/10s/1min 中不超过桶宽的最粗一档），预聚合覆盖不到的区间及更细的桶宽聚合原始表
+     *
+     * @param stream    数据流 (imu / gas)
+     * @param startTime 开始时间戳(秒)
+     * @param endTime   结束时间戳(秒)
+     * @param bucketMs  期望桶宽(毫秒)，可空；实际桶宽不会小于 时间范围/points
+     * @param points    最大桶数，一般为前端图表的像素宽度
+     */
+    public SensorAggregateVO aggregate(String deviceId, String stream, long startTime, long endTime,
+                                       Long bucketMs, int points) {
+        if (endTime < startTime) {
+            throw new BizException(400, "结束时间不能早于开始时间");
+        }
+        long startMicros = TsMicros.secondsRangeStart(startTime);
+        long endMicros = TsMicros.secondsRangeEnd(endTime);
+
+        int budget = Math.max(1, Math.min(points, MAX_BUCKETS));
+        long minBucketMs = Math.floorDiv(endMicros - startMicros + 1 + budget * 1000L - 1, budget * 1000L);
+        long actualBucketMs = Math.max(1L, Math.max(bucketMs == null ? 0L : bucketMs, minBucketMs));
+
+        String key = stream == null ? "" : stream.toLowerCase();
+        List<String> channels = switch (key) {
+            case "imu" -> List.of("x", "y", "z");
+            case "gas" -> List.of("flow");
+            default -> throw new BizException(400, "不支持的数据流: " + stream);
+        };
+
+        // 桶宽不小于 1s 时改查预聚合表：对齐到所选分辨率的整数倍，扫描量与原始数据量无关
+        // 预聚合只覆盖其首个桶之后写入的数据，更早的部分（以及没有预聚合的设备/数据流）仍聚合原始表；
+        // 切分点取首个预聚合桶之后的第一个桶边界，保证每个桶只来自一边
+        Integer resolution = sensorRollupService.chooseResolution(actualBucketMs);
+        long rawEndMicros = endMicros;
+        List<Object[]> rollupRows = List.of();
+        if (resolution != null) {
+            actualBucketMs = Math.floorDiv(actualBucketMs + resolution - 1, resolution) * (long) resolution;
+            Long covered = sensorRollupService.coverageStart(deviceId, key, resolution);
+            if (covered != null) {
+                long splitMs = Math.max(Math.floorDiv(covered, actualBucketMs) * actualBucketMs + actualBucketMs,
+                        startMicros / 1000L);
+                rawEndMicros = Math.min(endMicros, splitMs * 1000L - 1);
+                if (splitMs * 1000L <= endMicros) {
+                    rollupRows = sensorRollupService.aggregate(deviceId, key, resolution,
+                            splitMs, endMicros / 1000L, actualBucketMs);
+                }
+            }
+        }
+        List<Object[]> rows = new ArrayList<>();
+        if (rawEndMicros >= startMicros) {
+            long rawBucketMicros = actualBucketMs * 1000L;
+            rows.addAll("imu".equals(key)
+                    ? imuDataRepository.aggregateByBucket(deviceId, startMicros, rawEndMicros, rawBucketMicros)
+                    : gasDataRepository.aggregateByBucket(deviceId, startMicros, rawEndMicros, rawBucketMicros));
+        }
+        rows.addAll(rollupRows);
+        long bucketMicros = actualBucketMs * 1000L;
+
+        List<SensorAggregateVO.Bucket> buckets = rows.stream()
+                .map(row -> toBucket(row, channels.size(), bucketMicros))
+                .toList();
+        return new SensorAggregateVO(deviceId, key, actualBucketMs, channels, buckets);
+    }
+
+    // 行格式: [bucket, count, (min, max, avg) * channels]
+    private static SensorAggregateVO.Bucket toBucket(Object[] row, int channels, long bucketMicros) {
+        long bucket = ((Number) row[0]).longValue();
+        long count = ((Number) row[1]).longValue();
+        double[] min = new double[channels];
+        double[] max = new double[channels];
+        double[] mean = new double[channels];
+        for (int c = 0; c < channels; c++) {
+            min[c] = toDouble(row[2 + c * 3]);
+            max[c] = toDouble(row[3 + c * 3]);
+            mean[c] = toDouble(row[4 + c * 3]);
+        }
+        return new SensorAggregateVO.Bucket(bucket * bucketMicros / 1000L, count, min, max, mean);
+    }
+
+    private static double toDouble(Object v) {
+        return v == null ? 0d : ((Number) v).doubleValue();
+    }
+
     /**
      * 获取设备数据统计
      */
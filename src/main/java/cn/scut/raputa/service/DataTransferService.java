@@ -4,17 +4,24 @@ import cn.scut.raputa.dto.*;
 import cn.scut.raputa.entity.AudioData;
 import cn.scut.raputa.entity.GasData;
 import cn.scut.raputa.entity.ImuData;
+import cn.scut.raputa.exception.BizException;
 import cn.scut.raputa.repository.AudioDataRepository;
 import cn.scut.raputa.repository.GasDataRepository;
 import cn.scut.raputa.repository.ImuDataRepository;
 import cn.scut.raputa.utils.SocketTools;
+import cn.scut.raputa.utils.TsMicros;
+import cn.scut.raputa.vo.AudioChunkVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.Base64;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -31,6 +38,8 @@ public class DataTransferService {
     private final ImuDataRepository imuDataRepository;
     private final GasDataRepository gasDataRepository;
     private final AudioDataRepository audioDataRepository;
+    private final SensorRollupService sensorRollupService;
+    private final AudioStoreService audioStoreService;
 
     /**
      * 发送数据传输控制命令
@@ -76,6 +85,7 @@ public class DataTransferService {
             log.info("imu数据: x={}, y={}, z={}", request.getAcc().getX(), request.getAcc().getY(), request.getAcc().getZ());
             
             ImuData saved = imuDataRepository.save(imuData);
+            sensorRollupService.accumulateImu(deviceId, List.of(saved));
             log.debug("保存IMU数据: deviceId={}, timestamp={}", deviceId, request.getTimestamp());
             return saved;
             
@@ -105,6 +115,7 @@ public class DataTransferService {
                 .toList();
             
             List<ImuData> saved = imuDataRepository.saveAll(imuDataList);
+            sensorRollupService.accumulateImu(deviceId, saved);
             log.info("批量保存IMU数据: deviceId={}, count={}", deviceId, saved.size());
             return saved;
             
@@ -127,6 +138,7 @@ public class DataTransferService {
 //            gasData.setFlow(request.getFlow());
 //
 //            GasData saved = gasDataRepository.save(gasData);
+//            sensorRollupService.accumulateGas(deviceId, List.of(saved));
 //            log.debug("保存气体数据: deviceId={}, timestamp={}", deviceId, request.getTimestamp());
 //            return saved;
 //
@@ -154,6 +166,7 @@ public class DataTransferService {
 //                .toList();
 //
 //            List<GasData> saved = gasDataRepository.saveAll(gasDataList);
+//            sensorRollupService.accumulateGas(deviceId, saved);
 //            log.info("批量保存气体数据: deviceId={}, count={}", deviceId, saved.size());
 //            return saved;
 //
@@ -174,9 +187,15 @@ public class DataTransferService {
             audioData.setTimestamp(request.getTimestamp());
             audioData.setSampleRate(request.getSampleRate());
             audioData.setChannels(request.getChannels());
-            audioData.setAudioData(request.getAudioData());
             
-            AudioData saved = audioDataRepository.save(audioData);
+            // Base64 只作为传输编码，落盘为原始字节，数据库仅保存分段位置
+            byte[] bytes = Base64.getMimeDecoder().decode(request.getAudioData());
+            AudioData saved = audioStoreService.append(request.getDeviceIp(), request.getTimestamp(), bytes, seg -> {
+                audioData.setFilePath(seg.filePath());
+                audioData.setFileOffset(seg.offset());
+                audioData.setByteLength(seg.length());
+                return audioDataRepository.save(audioData);
+            });
             log.debug("保存音频数据: deviceId={}, timestamp={}", request.getDeviceIp(), request.getTimestamp());
             return saved;
             
@@ -186,15 +205,43 @@ public class DataTransferService {
         }
     }
 
+    /**
+     * 获取单个音频分段
+     */
+    public AudioData getAudioChunk(Long id) {
+        return audioDataRepository.findById(id)
+                .orElseThrow(() -> new BizException(404, "音频分段不存在"));
+    }
+
+    /**
+     * 校验音频分段的样本字节可读，需在开始流式输出前调用
+     */
+    public void checkAudioPayload(AudioData chunk) {
+        if (chunk.getFilePath() != null && chunk.getByteLength() != null) {
+            audioStoreService.check(chunk.getFilePath(), chunk.getFileOffset(), chunk.getByteLength());
+        }
+    }
+
+    /**
+     * 输出音频分段的样本字节；历史 Base64 行在此解码
+     */
+    public void writeAudioPayload(AudioData chunk, OutputStream out) throws IOException {
+        if (chunk.getFilePath() != null && chunk.getByteLength() != null) {
+            audioStoreService.transfer(chunk.getFilePath(), chunk.getFileOffset(), chunk.getByteLength(), out);
+        } else if (chunk.getAudioData() != null) {
+            out.write(Base64.getMimeDecoder().decode(chunk.getAudioData()));
+        }
+    }
+
     /**
      * 获取设备IMU数据
      */
     public List<ImuData> getImuDataByDevice(String deviceId, Long startTime, Long endTime) {
         if (startTime != null && endTime != null) {
-            return imuDataRepository.findByDeviceIdAndTimestampRange(deviceId, startTime, endTime);
+            return imuDataRepository.findByDeviceIdAndTsMicrosRange(deviceId,
+                TsMicros.secondsRangeStart(startTime), TsMicros.secondsRangeEnd(endTime), Pageable.unpaged());
         } else {
-            return imuDataRepository.findByDeviceIdOrderByTimestampDesc(deviceId, 
-                org.springframework.data.domain.PageRequest.of(0, 1000)).getContent();
+            return imuDataRepository.findByDeviceIdOrderByTsMicrosDesc(deviceId, PageRequest.of(0, 1000));
         }
     }
 
@@ -203,56 +250,22 @@ public class DataTransferService {
      */
     public List<GasData> getGasDataByDevice(String deviceId, Long startTime, Long endTime) {
         if (startTime != null && endTime != null) {
-            return gasDataRepository.findByDeviceIdAndTimestampRange(deviceId, startTime, endTime);
+            return gasDataRepository.findByDeviceIdAndTsMicrosRange(deviceId,
+                TsMicros.secondsRangeStart(startTime), TsMicros.secondsRangeEnd(endTime), Pageable.unpaged());
         } else {
-            return gasDataRepository.findByDeviceIdOrderByTimestampDesc(deviceId, 
-                org.springframework.data.domain.PageRequest.of(0, 1000)).getContent();
+            return gasDataRepository.findByDeviceIdOrderByTsMicrosDesc(deviceId, PageRequest.of(0, 1000));
         }
     }
 
     /**
-     * 获取设备音频数据
+     * 获取设备音频分段元数据（不含样本字节）
      */
-    public List<AudioData> getAudioDataByDevice(String deviceId, Long startTime, Long endTime) {
+    public List<AudioChunkVO> getAudioDataByDevice(String deviceId, Long startTime, Long endTime) {
         if (startTime != null && endTime != null) {
-            return audioDataRepository.findByDeviceIdAndTimestampRange(deviceId, startTime, endTime);
+            return audioDataRepository.findChunksByDeviceIdAndTsMicrosRange(deviceId,
+                TsMicros.ofMillis(startTime), TsMicros.millisRangeEnd(endTime), Pageable.unpaged());
         } else {
-            return audioDataRepository.findByDeviceIdOrderByTimestampDesc(deviceId, 
-                org.springframework.data.domain.PageRequest.of(0, 100)).getContent();
-        }
-    }
-
-    /**
-     * 删除设备数据
-     */
-    @Transactional
-    public void deleteDeviceData(String deviceId, String dataType) {
-        try {
-            switch (dataType.toUpperCase()) {
-                case "IMU":
-                    imuDataRepository.deleteByDeviceId(deviceId);
-                    log.info("删除设备IMU数据: {}", deviceId);
-                    break;
-                case "GAS":
-                    gasDataRepository.deleteByDeviceId(deviceId);
-                    log.info("删除设备气体数据: {}", deviceId);
-                    break;
-                case "AUDIO":
-                    audioDataRepository.deleteByDeviceId(deviceId);
-                    log.info("删除设备音频数据: {}", deviceId);
-                    break;
-                case "ALL":
-                    imuDataRepository.deleteByDeviceId(deviceId);
-                    gasDataRepository.deleteByDeviceId(deviceId);
-                    audioDataRepository.deleteByDeviceId(deviceId);
-                    log.info("删除设备所有数据: {}", deviceId);
-                    break;
-                default:
-                    throw new IllegalArgumentException("不支持的数据类型: " + dataType);
-            }
-        } catch (Exception e) {
-            log.error("删除设备数据失败", e);
-            throw new RuntimeException("删除设备数据失败: " + e.getMessage());
+            return audioDataRepository.findChunksByDeviceId(deviceId, PageRequest.of(0, 100));
         }
     }
 
@@ -0,0 +1,184 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.entity.PatientFile;
+import cn.scut.raputa.entity.key.PatientFileId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PatientFile 登记的异步批量写入
+ * 调用方（CSV 写入线程、会话关闭、报告上传）只把记录放进队列并拿到 future，不等待 MySQL；
+ * 专用线程攒批后按主键合并（同一文件多次登记只保留最后一次），以一条多行 INSERT ... ON DUPLICATE KEY UPDATE 写入
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PatientFileRecordWriter {
+
+    private static final String UPSERT_HEAD = "INSERT INTO patient_file " +
+            "(patient_id, file_path, file_type, saved_at, session_key, compressed_path) VALUES ";
+    // 行别名写法（MySQL 8.0.19+），取代 8.0.20 起弃用的 VALUES(col)
+    private static final String UPSERT_TAIL = " AS new ON DUPLICATE KEY UPDATE file_type = new.file_type, " +
+            "saved_at = new.saved_at, session_key = new.session_key, compressed_path = new.compressed_path";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // 单批最多合并的记录数
+    @Value("${raputa.patient-file.batch-size:200}")
+    private int batchSize;
+
+    // 取到第一条后再等多久以攒批
+    @Value("${raputa.patient-file.linger-ms:50}")
+    private long lingerMs;
+
+    // 写库失败的重试次数（间隔逐次加长）
+    @Value("${raputa.patient-file.max-retries:3}")
+    private int maxRetries;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private volatile boolean stopped;
+    private Thread worker;
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::loop, "patient-file-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 停止前写完队列中剩余的记录；之后的登记在调用线程上直接写库
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopped = true;
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        drainRemaining();
+    }
+
+    /**
+     * 提交一条登记，写库完成（或最终失败）时 future 结束
+     */
+    public CompletableFuture<Void> submit(PatientFile entity) {
+        Pending p = new Pending(entity, new CompletableFuture<>());
+        if (stopped) {
+            flush(List.of(p));
+        } else {
+            queue.add(p);
+        }
+        return p.future();
+    }
+
+    /**
+     * 队列中尚未写入的记录数
+     */
+    public int backlog() {
+        return queue.size();
+    }
+
+    private void loop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (lingerMs > 0 && queue.size() < batchSize - 1 && !stopped) {
+                    Thread.sleep(lingerMs);
+                }
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("PatientFile 批量写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void drainRemaining() {
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        // 同一主键只写最后一次登记，但所有 future 都随本批结束
+        Map<PatientFileId, PatientFile> merged = new LinkedHashMap<>();
+        for (Pending p : batch) {
+            merged.put(p.entity().getId(), p.entity());
+        }
+        List<PatientFile> rows = new ArrayList<>(merged.values());
+
+        Exception last = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            try {
+                upsert(rows);
+                batch.forEach(p -> p.future().complete(null));
+                return;
+            } catch (Exception e) {
+                last = e;
+                log.warn("PatientFile 批量写入失败（第 {} 次，{} 条）: {}", attempt + 1, rows.size(), e.getMessage());
+                if (attempt < maxRetries && !sleepQuietly(500L << attempt)) {
+                    break;
+                }
+            }
+        }
+        log.error("PatientFile 批量写入最终失败，丢弃 {} 条登记", rows.size(), last);
+        Exception cause = last;
+        batch.forEach(p -> p.future().completeExceptionally(cause));
+    }
+
+    private void upsert(List<PatientFile> rows) {
+        StringBuilder sql = new StringBuilder(UPSERT_HEAD);
+        List<Object> args = new ArrayList<>(rows.size() * 6);
+        for (int i = 0; i < rows.size(); i++) {
+            PatientFile pf = rows.get(i);
+            sql.append(i == 0 ? "" : ",").append("(?,?,?,?,?,?)");
+            args.add(pf.getPatientId());
+            args.add(pf.getFilePath());
+            args.add(pf.getFileType());
+            args.add(Timestamp.valueOf(pf.getSavedAt()));
+            args.add(pf.getSessionKey());
+            args.add(pf.getCompressedPath());
+        }
+        sql.append(UPSERT_TAIL);
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private static boolean sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record Pending(PatientFile entity, CompletableFuture<Void> future) {}
+}
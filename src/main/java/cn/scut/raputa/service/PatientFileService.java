@@ -4,16 +4,25 @@ package cn.scut.raputa.service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import cn.scut.raputa.entity.PatientFile;
 import cn.scut.raputa.vo.PatientFilesOverviewVO;
+import org.springframework.data.domain.Page;
 
 public interface PatientFileService {
-    // 写入一条记录
-    void record(String patientId, String absolutePath, String fileType, LocalDateTime savedAt);
+    // 写入一条记录（异步批量写库，调用方无需等待；future 在写库完成后结束）
+    CompletableFuture<Void> record(String patientId, String absolutePath, String fileType, LocalDateTime savedAt);
 
-    // 概览（把所有患者都返回，哪怕没有记录）
-    List<PatientFilesOverviewVO> overview(
+    // 写入一条记录，并登记其压缩副本路径（后台压缩完成后调用）
+    CompletableFuture<Void> record(String patientId, String absolutePath, String fileType, LocalDateTime savedAt, String compressedPath);
+
+    // 按文件路径查询记录（同一文件可能登记在多个患者下）
+    List<PatientFile> findByPath(String absolutePath);
+
+    // 概览（按患者分页，没有记录的患者也返回；page 从 1 开始）
+    Page<PatientFilesOverviewVO> overview(
+        int page, int size,
         LocalDate date,                 // 可空；如果有，只取当天
         List<String> filterPatientIds,  // 可空
         List<String> fileTypes,         // 可空
@@ -7,9 +7,14 @@ import cn.scut.raputa.entity.key.PatientFileId;
 import cn.scut.raputa.repository.PatientFileRepository;
 import cn.scut.raputa.repository.PatientRepository;
 import cn.scut.raputa.service.PatientFileService;
+import cn.scut.raputa.utils.SessionManifest;
 import cn.scut.raputa.vo.PatientFilesOverviewVO;
 import jakarta.persistence.criteria.Predicate;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
@@ -17,6 +22,8 @@ import java.nio.file.Path;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,11 +32,33 @@ public class PatientFileServiceImpl implements PatientFileService {
 
     private final PatientRepository patientRepository;
     private final PatientFileRepository patientFileRepository;
+    private final SessionSegmentService sessionSegmentService;
+    private final PatientFileRecordWriter recordWriter;
 
     private static final DateTimeFormatter SESSION_TS = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
 
+    // 概览投影缓存上限（按患者计，LRU 淘汰）
+    @Value("${raputa.overview.cache-size:2000}")
+    private int overviewCacheSize;
+
+    // patientId -> 该患者全部文件的概览投影（未筛选）；record() 时按患者失效
+    private final Map<String, List<OverviewRow>> overviewCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<OverviewRow>> eldest) {
+                    return size() > overviewCacheSize;
+                }
+            });
+    private final ConcurrentHashMap<String, Long> overviewVersions = new ConcurrentHashMap<>();
+
+    @Override
+    public CompletableFuture<Void> record(String patientId, String absolutePath, String fileType, LocalDateTime savedAt) {
+        return record(patientId, absolutePath, fileType, savedAt, null);
+    }
+
     @Override
-    public void record(String patientId, String absolutePath, String fileType, LocalDateTime savedAt) {
+    public CompletableFuture<Void> record(String patientId, String absolutePath, String fileType, LocalDateTime savedAt,
+                                          String compressedPath) {
         // 解析会话目录名作为 sessionKey（…/P0001_张三_20251109_094129/imu.csv）
         String sessionKey = extractSessionKey(absolutePath);
         PatientFile entity = new PatientFile();
@@ -39,8 +68,18 @@ public class PatientFileServiceImpl implements PatientFileService {
         entity.setFileType(fileType.toLowerCase());
         entity.setSavedAt(savedAt != null ? savedAt : LocalDateTime.now());
         entity.setSessionKey(sessionKey);
+        entity.setCompressedPath(compressedPath);
 
-        patientFileRepository.save(entity);
+        // 写库后概览投影按患者增量失效（在写入线程上执行，之前开始的重建不会把旧数据写回缓存）
+        return recordWriter.submit(entity).thenRun(() -> {
+            overviewVersions.merge(patientId, 1L, Long::sum);
+            overviewCache.remove(patientId);
+        });
+    }
+
+    @Override
+    public List<PatientFile> findByPath(String absolutePath) {
+        return patientFileRepository.findByIdFilePath(absolutePath);
     }
 
     private String extractSessionKey(String absolutePath) {
@@ -54,109 +93,129 @@ public class PatientFileServiceImpl implements PatientFileService {
     }
 
     @Override
-    public List<PatientFilesOverviewVO> overview(LocalDate date, List<String> filterPatientIds, List<String> fileTypes, String fileNameLike) {
-        // 1) 所有患者（用于“无记录也返回”）
-        List<Patient> patients = patientRepository.findAll();
+    public Page<PatientFilesOverviewVO> overview(int page, int size, LocalDate date, List<String> filterPatientIds,
+                                                 List<String> fileTypes, String fileNameLike) {
+        // 1) 在库中分页取患者（无记录的患者也返回），排序与原先一致：patientId 倒序
+        Specification<Patient> spec = (root, q, cb) ->
+                filterPatientIds == null || filterPatientIds.isEmpty()
+                        ? cb.conjunction()
+                        : root.get("id").in(filterPatientIds);
+        Page<Patient> pg = patientRepository.findAll(spec,
+                PageRequest.of(Math.max(page - 1, 0), Math.max(size, 1), Sort.by(Sort.Order.desc("id"))));
 
-        // 建立 patientId -> name
-        Map<String, String> idName = patients.stream()
-                .collect(Collectors.toMap(Patient::getId, Patient::getName));
-
-        // 2) 构建筛选
-        Specification<PatientFile> spec = (root, q, cb) -> {
-            var ps = new java.util.ArrayList<Predicate>();
-
-            if (date != null) {
-                LocalDateTime start = date.atStartOfDay();
-                LocalDateTime end = start.plusDays(1);
-                ps.add(cb.between(root.get("savedAt"), start, end));
-            }
-            if (filterPatientIds != null && !filterPatientIds.isEmpty()) {
-                ps.add(root.get("id").get("patientId").in(filterPatientIds));
-            }
-            if (fileTypes != null && !fileTypes.isEmpty()) {
-                ps.add(root.get("fileType").in(fileTypes.stream().map(String::toLowerCase).toList()));
-            }
-            if (fileNameLike != null && !fileNameLike.isBlank()) {
-                ps.add(cb.like(root.get("id").get("filePath"), "%" + fileNameLike + "%"));
-            }
-            return ps.isEmpty() ? cb.conjunction() : cb.and(ps.toArray(new Predicate[0]));
-        };
-
-
-        // 3) 拉取匹配的文件
-        List<PatientFile> files = patientFileRepository.findAll(spec);
-
-        // 4) patientId -> (date -> (timeHHmmss -> files))
-        Map<String, Map<LocalDate, Map<String, List<PatientFile>>>> grouped =
-                files.stream().collect(Collectors.groupingBy(
-                        PatientFile::getPatientId,
-                        Collectors.groupingBy(
-                                pf -> pf.getSavedAt().toLocalDate(),
-                                Collectors.groupingBy(pf -> sessionTimeFromSessionKey(pf.getSessionKey()) // "09:41:29"
-                                )
-                        )
-                ));
-
-        // 5) 组装 VO（所有患者都要返回）
-        List<PatientFilesOverviewVO> out = new ArrayList<>();
-        for (Patient p : patients) {
-            if (filterPatientIds != null && !filterPatientIds.isEmpty()
-                    && !filterPatientIds.contains(p.getId())) {
-                continue;
-            }
-
-            Map<LocalDate, Map<String, List<PatientFile>>> byDate =
-                    grouped.getOrDefault(p.getId(), Collections.emptyMap());
+        // 2) 本页患者的文件投影：命中缓存直接用，其余一次 IN 查询补齐
+        Map<String, List<OverviewRow>> rows = projections(pg.map(Patient::getId).getContent());
 
+        // 3) 筛选条件作用在单个患者的投影上，耗时只与本页数据量有关
+        Set<String> types = fileTypes == null || fileTypes.isEmpty() ? null
+                : fileTypes.stream().map(String::toLowerCase).collect(Collectors.toSet());
+        String like = fileNameLike == null || fileNameLike.isBlank() ? null : fileNameLike.toLowerCase();
+        return pg.map(p -> {
+            List<OverviewRow> matched = rows.getOrDefault(p.getId(), List.of()).stream()
+                    .filter(r -> date == null || r.date().equals(date))
+                    .filter(r -> types == null || types.contains(r.item().getType()))
+                    .filter(r -> like == null || r.item().getPath().toLowerCase().contains(like))
+                    .toList();
             PatientFilesOverviewVO vo = new PatientFilesOverviewVO();
             vo.setId(p.getId());
             vo.setName(p.getName());
+            vo.setDates(group(matched));
+            return vo;
+        });
+    }
 
-            // === 用 keySet + 排序，避免比较器上的通配符陷阱 ===
-            List<LocalDate> dateKeys = new ArrayList<>(byDate.keySet());
-            // 日期倒序（最近在前）
-            dateKeys.sort(Comparator.reverseOrder());
-
-            List<PatientFilesOverviewVO.DateGroup> dates = new ArrayList<>();
-            for (LocalDate dKey : dateKeys) {
-                Map<String, List<PatientFile>> timesMap = byDate.getOrDefault(dKey, Collections.emptyMap());
-
-                // 时间（HH:mm:ss）升序
-                List<String> timeKeys = new ArrayList<>(timesMap.keySet());
-                Collections.sort(timeKeys);
-
-                List<PatientFilesOverviewVO.TimeGroup> times = new ArrayList<>();
-                for (String tKey : timeKeys) {
-                    List<PatientFile> fileList = timesMap.getOrDefault(tKey, Collections.emptyList());
-                    fileList.sort(Comparator.comparing(PatientFile::getFileType));
-
-                    List<PatientFilesOverviewVO.FileItem> filesVo = fileList.stream()
-                            .map(pf -> new PatientFilesOverviewVO.FileItem(
-                                    java.nio.file.Path.of(pf.getFilePath()).getFileName().toString(),
-                                    pf.getFileType(),
-                                    pf.getFilePath()
-                            )).toList();
-
-                    PatientFilesOverviewVO.TimeGroup tg = new PatientFilesOverviewVO.TimeGroup();
-                    tg.setTime(tKey);
-                    tg.setFiles(filesVo);
-                    times.add(tg);
-                }
+    /**
+     * 患者文件投影：每个文件一行，已解析出日期、会话时间与 manifest 统计，并按 日期倒序 / 时间升序 / 类型 排好
+     * 录制中的会话统计仍在变化，含这类会话的患者不进缓存
+     */
+    private Map<String, List<OverviewRow>> projections(List<String> patientIds) {
+        Map<String, List<OverviewRow>> out = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        Map<String, Long> versions = new HashMap<>();
+        for (String id : patientIds) {
+            List<OverviewRow> cached = overviewCache.get(id);
+            if (cached != null) {
+                out.put(id, cached);
+            } else {
+                missing.add(id);
+                versions.put(id, overviewVersions.getOrDefault(id, 0L));
+            }
+        }
+        if (missing.isEmpty()) {
+            return out;
+        }
 
-                PatientFilesOverviewVO.DateGroup dg = new PatientFilesOverviewVO.DateGroup();
-                dg.setDate(dKey.toString()); // yyyy-MM-dd
-                dg.setSlots(times);
-                dates.add(dg);
+        Map<String, List<PatientFile>> files = patientFileRepository.findByIdPatientIdIn(missing).stream()
+                .collect(Collectors.groupingBy(PatientFile::getPatientId));
+        // 会话目录 -> 清单，每个会话只读一次 manifest.json
+        Map<Path, Optional<SessionManifest>> manifests = new HashMap<>();
+        for (String id : missing) {
+            boolean recording = false;
+            List<OverviewRow> list = new ArrayList<>();
+            for (PatientFile pf : files.getOrDefault(id, List.of())) {
+                list.add(new OverviewRow(pf.getSavedAt().toLocalDate(), sessionTimeFromSessionKey(pf.getSessionKey()),
+                        toFileItem(pf, manifests)));
+                Path folder = Path.of(pf.getFilePath()).getParent();
+                recording |= folder != null && sessionSegmentService.isActive(folder);
             }
+            list.sort(Comparator.comparing(OverviewRow::date).reversed()
+                    .thenComparing(OverviewRow::time)
+                    .thenComparing(r -> r.item().getType()));
+            List<OverviewRow> rows = List.copyOf(list);
+            out.put(id, rows);
+            // 计算期间有新的 record() 时不写回，避免用旧数据覆盖失效
+            if (!recording && versions.get(id).equals(overviewVersions.getOrDefault(id, 0L))) {
+                overviewCache.put(id, rows);
+            }
+        }
+        return out;
+    }
 
-            vo.setDates(dates);
-            out.add(vo);
+    // 已排序的行 -> 日期组 / 时间段组
+    private static List<PatientFilesOverviewVO.DateGroup> group(List<OverviewRow> rows) {
+        List<PatientFilesOverviewVO.DateGroup> dates = new ArrayList<>();
+        PatientFilesOverviewVO.DateGroup dg = null;
+        PatientFilesOverviewVO.TimeGroup tg = null;
+        for (OverviewRow r : rows) {
+            String d = r.date().toString(); // yyyy-MM-dd
+            if (dg == null || !dg.getDate().equals(d)) {
+                dg = new PatientFilesOverviewVO.DateGroup(d, new ArrayList<>());
+                dates.add(dg);
+                tg = null;
+            }
+            if (tg == null || !tg.getTime().equals(r.time())) {
+                tg = new PatientFilesOverviewVO.TimeGroup(r.time(), new ArrayList<>());
+                dg.getSlots().add(tg);
+            }
+            tg.getFiles().add(r.item());
         }
+        return dates;
+    }
 
-        // 最终整体排序：patientId 倒序（也可以按 admit 或 name，看你需求）
-        out.sort(Comparator.comparing(PatientFilesOverviewVO::getId).reversed());
-        return out;
+    private record OverviewRow(LocalDate date, String time, PatientFilesOverviewVO.FileItem item) {}
+
+    private PatientFilesOverviewVO.FileItem toFileItem(PatientFile pf, Map<Path, Optional<SessionManifest>> manifests) {
+        Path path = Path.of(pf.getFilePath());
+        PatientFilesOverviewVO.FileItem item = new PatientFilesOverviewVO.FileItem(
+                path.getFileName().toString(), pf.getFileType(), pf.getFilePath());
+        Path folder = path.getParent();
+        if (folder == null) {
+            return item;
+        }
+        String name = path.getFileName().toString();
+        manifests.computeIfAbsent(folder, f -> Optional.ofNullable(sessionSegmentService.manifestOf(f)))
+                .flatMap(m -> m.getStreams().values().stream()
+                        .filter(st -> name.equals(st.getLogicalName()))
+                        .findFirst())
+                .ifPresent(st -> {
+                    item.setSampleCount(st.getSampleCount());
+                    item.setFirstTs(st.getFirstTs());
+                    item.setLastTs(st.getLastTs());
+                    item.setDroppedSamples(st.getDroppedSamples());
+                    item.setFrameCount(st.getFrameCount());
+                    item.setDurationSeconds(st.getDurationSeconds());
+                });
+        return item;
     }
 
     @Override
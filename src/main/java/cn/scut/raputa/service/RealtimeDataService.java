@@ -1,11 +1,14 @@
 package cn.scut.raputa.service;
 
 import cn.scut.raputa.entity.CheckRecord;
+import cn.scut.raputa.exception.BizException;
 import cn.scut.raputa.repository.CheckRecordRepository;
 import cn.scut.raputa.repository.PatientRepository;
-import cn.scut.raputa.utils.DataBuffer;
+import cn.scut.raputa.utils.ReplayClock;
+import cn.scut.raputa.utils.SampleJournal;
 import cn.scut.raputa.utils.SocketTools;
 import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.bytedeco.ffmpeg.global.avcodec;
@@ -19,6 +22,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -44,6 +49,7 @@ public class RealtimeDataService {
     private final CsvDataService csvDataService;
     private final WebSocketService webSocketService;
     private final ModelPredictionService modelPredictionService;
+    private final SessionSegmentService sessionSegmentService;
 
     // 设备连接状态管理
     private final ConcurrentHashMap<String, DeviceConnection> deviceConnections = new ConcurrentHashMap<>();
@@ -68,9 +74,9 @@ public class RealtimeDataService {
         private LocalDateTime lastHeartbeat;
         private String deviceId;
         
-        // CSV数据缓冲队列 - 参考原始项目
-        private final DataBuffer imuBuffer = new DataBuffer(99999999);
-        private final DataBuffer gasBuffer = new DataBuffer(99999999);
+        // 内存映射采集日志：接收线程写入解码后的样本，CSV 定时器读取并提交（崩溃后重启重放）
+        private volatile SampleJournal imuJournal;
+        private volatile SampleJournal gasJournal;
         
         // 数据计数器
         private int imuCount = 0;
@@ -91,10 +97,13 @@ public class RealtimeDataService {
         // 音频RTSP相关
         private FFmpegFrameGrabber audioGrabber;
         private FFmpegFrameRecorder audioRecorder;
+        private final Object audioLock = new Object(); // 保护 audioRecorder 的创建、滚动、写入与关闭（分段滚动会替换录制器，不能锁录制器本身）
+        private boolean audioRecordStopped = false;    // 分段滚动失败后不再录制音频
         private Thread audioThread;
         private final AtomicBoolean audioReceiving = new AtomicBoolean(false);
         private String deviceIp;
-        private String audioFilePath;
+        private String audioFilePath;      // 当前音频分段路径
+        private Path audioSessionFolder;   // 音频分段所在会话目录
         private int audioRetryCount = 0; // 音频重试次数
         private static final int MAX_AUDIO_RETRY = 5; // 最大重试次数
         private long audioStartTimestamp = 0; // 音频开始时间戳（毫秒）
@@ -116,6 +125,11 @@ public class RealtimeDataService {
         private java.util.concurrent.ScheduledFuture<?> predictionTask;
         private long lastPredictionTime = 0; // 上次预测的时间戳
 
+        // 会话回放：无 TCP 连接，样本由 SessionReplayService 注入，音频从本地文件读取
+        private boolean replay = false;
+        private String audioSource;       // 回放音频文件路径（null 表示无音频）
+        private ReplayClock replayClock;  // 与传感器注入共用的节拍器
+
         public DeviceConnection(String deviceId) {
             this.deviceId = deviceId;
             this.lastHeartbeat = LocalDateTime.now();
@@ -240,6 +254,50 @@ public class RealtimeDataService {
         });
     }
 
+    /**
+     * 以回放模式登记一个虚拟设备：不建立 TCP 连接，样本由调用方通过 processSensorData 注入，
+     * 音频从 audioSource 文件按 clock 节拍抓取；CSV 写入、预测与 WebSocket 推送与实时采集走同一套逻辑
+     */
+    public void startReplay(String deviceId, String deviceName, String patientId, String patientName,
+                            String audioSource, ReplayClock clock) {
+        DeviceConnection connection = new DeviceConnection(deviceId);
+        connection.replay = true;
+        connection.audioSource = audioSource;
+        connection.replayClock = clock;
+        // 录制文件中的首条 IMU/GAS 在采集时已被舍弃，回放时不再舍弃
+        connection.imuFirstData = false;
+        connection.gasFirstData = false;
+        if (deviceConnections.putIfAbsent(deviceId, connection) != null) {
+            throw new BizException(409, "设备 " + deviceId + " 正在采集");
+        }
+
+        csvDataService.setSessionMeta(deviceId, patientId, patientName, deviceName);
+        connection.isConnected.set(true);
+        connection.isReceiving.set(true);
+
+        startCsvWriteTimers(connection);
+        if (audioSource != null) {
+            startAudioReceiving(connection);
+        } else {
+            // 没有音频可回放时不等待音频就绪
+            connection.audioReady.set(true);
+        }
+        startPredictionTimer(connection);
+        log.info("设备 {} 开始会话回放 (音频: {})", deviceId, audioSource == null ? "无" : audioSource);
+    }
+
+    /**
+     * 等待回放音频读完（音频线程自然退出），超时返回 false
+     */
+    public boolean awaitAudio(String deviceId, long timeoutMs) throws InterruptedException {
+        DeviceConnection connection = deviceConnections.get(deviceId);
+        if (connection == null || connection.audioThread == null) {
+            return true;
+        }
+        connection.audioThread.join(timeoutMs);
+        return !connection.audioThread.isAlive();
+    }
+
     /**
      * 启动CSV写入定时器 - 参考原始项目的setTimerWIMU和setTimerWGas
      */
@@ -354,14 +412,12 @@ public class RealtimeDataService {
      */
     private void writeImuDataToCsv(DeviceConnection connection) {
         // 检查所有数据是否就绪，未就绪则不保存
-        if (!connection.allDataReady.get()) {
+        if (!connection.allDataReady.get() || connection.imuJournal == null) {
             return;
         }
         
-        List<String[]> valList = new ArrayList<>();
-        
         // 动态调整处理量 - 参考原项目的动态调整逻辑
-        int bufferSize = connection.imuBuffer.getSize();
+        long bufferSize = connection.imuJournal.pending();
         int lsize = 400; // 默认处理 400 条
         
         // 如果积压严重,增加单次处理量
@@ -372,25 +428,7 @@ public class RealtimeDataService {
             lsize = 1000; // 增加到 500 条
         }
         
-        for (int i = 0; i < lsize; i++) {
-            if (connection.imuBuffer.getSize() > 0) {
-                Object obj = connection.imuBuffer.poll();
-                if (obj != null) {
-                    String imuStr = (String) obj;
-                    String[] valArr = getValForJsonStr(imuStr, 2); // type=2表示IMU数据
-                    if (valArr != null) {
-                        connection.imuCount++;
-                        valList.add(valArr);
-                    }
-                }
-            } else {
-                break;
-            }
-        }
-        
-        if (!valList.isEmpty()) {
-            csvDataService.writeImuData(connection.deviceId, valList);
-        }
+        connection.imuCount += drainJournal(connection, connection.imuJournal, true, lsize);
     }
     
     /**
@@ -398,14 +436,12 @@ public class RealtimeDataService {
      */
     private void writeGasDataToCsv(DeviceConnection connection) {
         // 检查所有数据是否就绪，未就绪则不保存
-        if (!connection.allDataReady.get()) {
+        if (!connection.allDataReady.get() || connection.gasJournal == null) {
             return;
         }
         
-        List<String[]> valList = new ArrayList<>();
-        
         // 动态调整处理量
-        int bufferSize = connection.gasBuffer.getSize();
+        long bufferSize = connection.gasJournal.pending();
         int lsize = 20; // 默认处理 20 条
         
         // 如果积压严重,增加单次处理量
@@ -415,70 +451,63 @@ public class RealtimeDataService {
             lsize = 30; // 增加到 30 条
         }
         
-        for (int i = 0; i < lsize; i++) {
-            if (connection.gasBuffer.getSize() > 0) {
-                Object obj = connection.gasBuffer.poll();
-                if (obj != null) {
-                    String gasStr = (String) obj;
-                    String[] valArr = getValForJsonStr(gasStr, 3); // type=3表示GAS数据
-                    if (valArr != null) {
-                        connection.gasCount++;
-                        valList.add(valArr);
-                    }
-                }
-            } else {
-                break;
-            }
+        connection.gasCount += drainJournal(connection, connection.gasJournal, false, lsize);
+    }
+    
+    /**
+     * 从采集日志读取一批样本写入CSV，写入成功才提交读位置；失败时回退，下一轮重试
+     *
+     * @return 写入的样本数
+     */
+    private int drainJournal(DeviceConnection connection, SampleJournal journal, boolean imu, int max) {
+        List<String[]> rows = journal.read(max);
+        if (rows.isEmpty()) {
+            return 0;
         }
-        
-        if (!valList.isEmpty()) {
-            csvDataService.writeGasData(connection.deviceId, valList);
+        boolean ok = imu
+                ? csvDataService.writeImuData(connection.deviceId, rows)
+                : csvDataService.writeGasData(connection.deviceId, rows);
+        if (!ok) {
+            journal.rollback();
+            return 0;
         }
+        journal.commit();
+        return rows.size();
     }
     
     /**
-     * 解析JSON字符串获取数据数组 - 参考原始项目的getValForJsonStr方法
+     * 写入一个解码后的样本；日志无法打开或已满时计为丢弃
      */
-    private String[] getValForJsonStr(String json, int type) {
-        if (json == null || json.isEmpty()) {
-            return null;
+    private void appendSample(DeviceConnection connection, boolean imu, long ts, int... values) {
+        SampleJournal journal = journalFor(connection, imu);
+        if (journal == null || !journal.append(ts, values)) {
+            csvDataService.recordDropped(connection.deviceId,
+                    imu ? SessionSegmentService.IMU : SessionSegmentService.GAS, 1);
+        }
+    }
+    
+    /**
+     * 当前会话某个流的采集日志，首个样本到达时打开
+     */
+    private SampleJournal journalFor(DeviceConnection connection, boolean imu) {
+        SampleJournal journal = imu ? connection.imuJournal : connection.gasJournal;
+        if (journal != null) {
+            return journal;
         }
-        
         try {
-            JsonNode jsonNode = SocketTools.getJsonObject(json);
-            if (jsonNode == null || jsonNode.isNull()) {
-                return null;
-            }
-            
-            String timestamp = String.valueOf(jsonNode.get("timestamp").asLong());
-            String timestampus = String.valueOf(jsonNode.get("timestampus").asLong());
-            
-            if (type == 2) { // IMU数据
-                JsonNode accNode = jsonNode.get("acc");
-                if (accNode != null && !accNode.isNull()) {
-                    String[] valList = new String[4];
-                    valList[0] = setSTimeToLTime(timestamp, timestampus);
-                    valList[1] = String.valueOf(accNode.get("x").asInt());
-                    valList[2] = String.valueOf(accNode.get("y").asInt());
-                    valList[3] = String.valueOf(accNode.get("z").asInt());
-                    return valList;
-                }
-            } else if (type == 3) { // GAS数据
-                String flow = "0";
-                if (jsonNode.get("flow") != null && !jsonNode.get("flow").isNull()) {
-                    flow = String.valueOf(jsonNode.get("flow").asInt());
-                }
-                String[] valList = new String[2];
-                valList[0] = setSTimeToLTime(timestamp, timestampus);
-                valList[1] = flow;
-                return valList;
+            if (imu) {
+                journal = csvDataService.openJournal(connection.deviceId, SessionSegmentService.IMU, 3);
+                connection.imuJournal = journal;
+            } else {
+                journal = csvDataService.openJournal(connection.deviceId, SessionSegmentService.GAS, 1);
+                connection.gasJournal = journal;
             }
-            
-        } catch (Exception e) {
-            log.error("解析JSON数据失败: {}", json, e);
+            log.info("设备 {} 打开采集日志: {}", connection.deviceId, journal.getPath());
+            return journal;
+        } catch (IOException e) {
+            log.error("设备 {} 打开采集日志失败", connection.deviceId, e);
+            return null;
         }
-        
-        return null;
     }
     
     /**
@@ -486,23 +515,20 @@ public class RealtimeDataService {
      * timestamp: 秒级时间戳
      * timestampus: 微秒部分 (0-999999)
      */
-    private String setSTimeToLTime(String timestamp, String timestampus) {
-        try {
-            // 完全按照原项目的方式实现
-            float utile = Integer.valueOf(timestampus); // 原项目用 Integer.valueOf
-            float rlt = utile / 1000000f; // 换算成秒 (0.000000 - 0.999999)
-            int mtime = (int) (rlt * 1000); // 转换为毫秒部分 (0-999)
-            long timestp = Long.valueOf(timestamp) * 1000 + mtime;
-            
-            // 调试日志 - 可以暂时开启查看转换情况
-            // log.debug("时间戳转换: timestamp={}, timestampus={}, mtime={}, result={}", 
-            //          timestamp, timestampus, mtime, timestp);
-            
-            return String.valueOf(timestp);
-        } catch (Exception e) {
-            log.error("时间戳转换失败: timestamp={}, timestampus={}", timestamp, timestampus, e);
-            return String.valueOf(System.currentTimeMillis());
-        }
+    private long setSTimeToLTime(long timestamp, long timestampus) {
+        // 完全按照原项目的方式实现（微秒部分按 float 换算，截断到毫秒）
+        float utile = (int) timestampus;
+        float rlt = utile / 1000000f; // 换算成秒 (0.000000 - 0.999999)
+        int mtime = (int) (rlt * 1000); // 转换为毫秒部分 (0-999)
+        return timestamp * 1000 + mtime;
+    }
+
+    /**
+     * 应用关闭时停止 CSV 写入与预测定时器（线程池为非守护线程）
+     */
+    @PreDestroy
+    public void shutdown() {
+        csvWriteScheduler.shutdownNow();
     }
 
     /**
@@ -514,11 +540,13 @@ public class RealtimeDataService {
                 DeviceConnection connection = deviceConnections.get(deviceId);
                 if (connection != null && connection.isConnected.get()) {
                     
-                    // 发送停止命令
-                    String command = "false";
-                    byte[] commandData = SocketTools.packSFream(command);
-                    connection.outputStream.write(commandData);
-                    connection.outputStream.flush();
+                    // 发送停止命令（回放没有设备连接）
+                    if (connection.outputStream != null) {
+                        String command = "false";
+                        byte[] commandData = SocketTools.packSFream(command);
+                        connection.outputStream.write(commandData);
+                        connection.outputStream.flush();
+                    }
                     
                     // 关闭连接
                     connection.isReceiving.set(false);
@@ -557,7 +585,9 @@ public class RealtimeDataService {
                         String pname = csvDataService.getSessionPatientName(deviceId);
                         String staff = csvDataService.getSessionDeviceName(deviceId); // 没有操作者就用设备名；也可换成当前登录用户
 
-                        if (pid != null && !pid.isBlank()) {
+                        if (connection.replay) {
+                            log.info("设备 {} 为会话回放，跳过检查记录写入", deviceId);
+                        } else if (pid != null && !pid.isBlank()) {
                             // 2) 追加一条 check_record
                             CheckRecord rec = new CheckRecord();
                             rec.setPatientId(pid);
@@ -715,37 +745,17 @@ public class RealtimeDataService {
     private void saveRemainingData(DeviceConnection connection) {
         try {
             // 保存剩余的IMU数据
-            List<String[]> imuList = new ArrayList<>();
-            while (connection.imuBuffer.getSize() > 0) {
-                Object obj = connection.imuBuffer.poll();
-                if (obj != null) {
-                    String imuStr = (String) obj;
-                    String[] valArr = getValForJsonStr(imuStr, 2);
-                    if (valArr != null) {
-                        imuList.add(valArr);
-                    }
-                }
-            }
-            if (!imuList.isEmpty()) {
-                csvDataService.writeImuData(connection.deviceId, imuList);
-                log.info("保存剩余 {} 条IMU数据", imuList.size());
+            int imuSaved = drainAll(connection, connection.imuJournal, true);
+            if (imuSaved > 0) {
+                connection.imuCount += imuSaved;
+                log.info("保存剩余 {} 条IMU数据", imuSaved);
             }
             
             // 保存剩余的GAS数据
-            List<String[]> gasList = new ArrayList<>();
-            while (connection.gasBuffer.getSize() > 0) {
-                Object obj = connection.gasBuffer.poll();
-                if (obj != null) {
-                    String gasStr = (String) obj;
-                    String[] valArr = getValForJsonStr(gasStr, 3);
-                    if (valArr != null) {
-                        gasList.add(valArr);
-                    }
-                }
-            }
-            if (!gasList.isEmpty()) {
-                csvDataService.writeGasData(connection.deviceId, gasList);
-                log.info("保存剩余 {} 条GAS数据", gasList.size());
+            int gasSaved = drainAll(connection, connection.gasJournal, false);
+            if (gasSaved > 0) {
+                connection.gasCount += gasSaved;
+                log.info("保存剩余 {} 条GAS数据", gasSaved);
             }
             
             log.info("设备 {} CSV数据统计: IMU={}, GAS={}", 
@@ -755,9 +765,31 @@ public class RealtimeDataService {
             log.error("保存剩余数据失败: {}", connection.deviceId, e);
         }
     }
+    
+    private int drainAll(DeviceConnection connection, SampleJournal journal, boolean imu) {
+        if (journal == null) {
+            return 0;
+        }
+        int total = 0;
+        int n;
+        while ((n = drainJournal(connection, journal, imu, 5000)) > 0) {
+            total += n;
+        }
+        // 全部写入CSV后日志不再需要；仍有未提交样本（写入失败）时保留，重启后重放
+        if (journal.pending() == 0) {
+            journal.closeAndDelete();
+        } else {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("关闭采集日志失败: {}", journal.getPath(), e);
+            }
+        }
+        return total;
+    }
 
     /**
-     * 处理传感器数据 - 放入CSV缓冲队列 + 推送到WebSocket
+     * 处理传感器数据 - 写入采集日志 + 推送到WebSocket
      * 参考原项目 TerminalRTData.anlyTcpData - 原项目不保存数据库,只写CSV
      */
     public void processSensorData(String jsonData, String deviceId) {
@@ -783,6 +815,9 @@ public class RealtimeDataService {
             Long timestampus = jsonNode.has("timestampus") ? jsonNode.get("timestampus").asLong() : 0L;
             // 计算完整时间戳(毫秒)
             Long fullTimestamp = timestamp * 1000 + (timestampus / 1000);
+            // CSV 中的样本时间戳（沿用原项目的换算方式）
+            boolean hasTime = jsonNode.has("timestamp") && jsonNode.has("timestampus");
+            long sampleTs = setSTimeToLTime(timestamp, timestampus);
             
             // 处理IMU数据 - 舍弃第一条,后续数据放入缓冲队列 + 推送WebSocket
             JsonNode accNode = jsonNode.get("acc");
@@ -799,8 +834,13 @@ public class RealtimeDataService {
                         checkAndStartRecording(connection);
                     }
                     
-                    // 放入CSV缓冲队列 (所有数据都保存)
-                    connection.imuBuffer.put(jsonData);
+                    // 解码后写入采集日志 (所有数据都保存，字段缺失的计为丢弃)
+                    if (hasTime && accNode.has("x") && accNode.has("y") && accNode.has("z")) {
+                        appendSample(connection, true, sampleTs,
+                                accNode.get("x").asInt(), accNode.get("y").asInt(), accNode.get("z").asInt());
+                    } else {
+                        csvDataService.recordDropped(deviceId, SessionSegmentService.IMU, 1);
+                    }
                     
                     // 推送到WebSocket - 抽样推送,降低频率 (每20个推送1个,从2000Hz降到100Hz)
                     connection.imuPushCount++;
@@ -828,8 +868,12 @@ public class RealtimeDataService {
                         checkAndStartRecording(connection);
                     }
                     
-                    // 放入CSV缓冲队列 (所有数据都保存)
-                    connection.gasBuffer.put(jsonData);
+                    // 解码后写入采集日志 (所有数据都保存)
+                    if (hasTime) {
+                        appendSample(connection, false, sampleTs, flowNode.asInt());
+                    } else {
+                        csvDataService.recordDropped(deviceId, SessionSegmentService.GAS, 1);
+                    }
                     
                     // 推送到WebSocket - 抽样推送 (每2个推送1个,降低一半频率)
                     connection.gasPushCount++;
@@ -922,8 +966,8 @@ public class RealtimeDataService {
                 deviceId,
                 connection.imuCount,
                 connection.gasCount,
-                connection.imuBuffer.getSize(),
-                connection.gasBuffer.getSize()
+                connection.imuJournal == null ? 0 : (int) connection.imuJournal.pending(),
+                connection.gasJournal == null ? 0 : (int) connection.gasJournal.pending()
             );
         }
         return new DeviceDataStats(deviceId, 0, 0, 0, 0);
@@ -939,13 +983,17 @@ public class RealtimeDataService {
             while (connection.isConnected.get() && connection.audioRetryCount < DeviceConnection.MAX_AUDIO_RETRY) {
                 boolean shouldRetry = false; // 标记是否需要重试
                 try {
-                    // 构建RTSP URL
-                    String rtspUrl = "rtsp://" + connection.deviceIp + ":8554/stream/audio";
+                    // 构建RTSP URL（回放时为本地音频文件）
+                    String rtspUrl = connection.replay
+                            ? connection.audioSource
+                            : "rtsp://" + connection.deviceIp + ":8554/stream/audio";
                     log.info("开始连接音频RTSP: {} (尝试 {}/{})", rtspUrl, connection.audioRetryCount + 1, DeviceConnection.MAX_AUDIO_RETRY);
                     
                     // 创建FFmpeg音频抓取器
                     connection.audioGrabber = FFmpegFrameGrabber.createDefault(rtspUrl);
-                    connection.audioGrabber.setOption("rtsp_transport", "tcp");
+                    if (!connection.replay) {
+                        connection.audioGrabber.setOption("rtsp_transport", "tcp");
+                    }
                     connection.audioGrabber.setTimeout(5000);
                     connection.audioGrabber.start();
                     
@@ -974,13 +1022,17 @@ public class RealtimeDataService {
                         while (connection.audioReceiving.get() && !Thread.currentThread().isInterrupted()) {
                             Frame frame = connection.audioGrabber.grabSamples();
                             if (frame != null && frame.audioChannels > 0) {
+                                // 回放：按帧时间戳与传感器注入保持同一节拍
+                                if (connection.replayClock != null) {
+                                    connection.replayClock.await(connection.audioGrabber.getTimestamp() / 1000);
+                                }
                                 // 立即推送到WebSocket（不受录制状态影响）
                                 pushAudioToWebSocket(connection, frame);
                                 // 录制音频帧（仅在所有数据就绪后）
                                 recordAudioFrame(connection, frame);
                             } else {
-                                // 检查是否是因为用户主动停止
-                                if (connection.audioReceiving.get() && connection.isConnected.get()) {
+                                // 检查是否是因为用户主动停止（回放读到文件末尾属于正常结束）
+                                if (!connection.replay && connection.audioReceiving.get() && connection.isConnected.get()) {
                                     log.warn("设备 {} 音频流中断，尝试重连", connection.deviceId);
                                     shouldRetry = true;
                                 } else {
@@ -1057,8 +1109,8 @@ public class RealtimeDataService {
             }
             
             // 关闭录制器（丢弃未保存的数据）
-            if (connection.audioRecorder != null) {
-                synchronized (connection.audioRecorder) {
+            synchronized (connection.audioLock) {
+                if (connection.audioRecorder != null) {
                     try {
                         connection.audioRecorder.release();
                         connection.audioRecorder.stop();
@@ -1097,23 +1149,30 @@ public class RealtimeDataService {
      * 初始化音频录制器 - 参考原始项目的setWaveRecorder方法
      */
     private void initAudioRecorder(DeviceConnection connection, Frame firstFrame) {
+        synchronized (connection.audioLock) {
+            initAudioRecorderLocked(connection, firstFrame);
+        }
+    }
+
+    private void initAudioRecorderLocked(DeviceConnection connection, Frame firstFrame) {
         try {
-            // 检查是否已经初始化过
-            if (connection.audioRecorder != null) {
+            // 检查是否已经初始化过（或已因分段滚动失败停止录制）
+            if (connection.audioRecorder != null || connection.audioRecordStopped) {
                 return;
             }
             
-            // 生成文件名: audio.wav （保存到会话文件夹中）
-            String fileName = "audio.wav";
-            
             // 获取会话文件夹
             String sessionFolder = csvDataService.getSessionFolder(connection.deviceId);
             if (sessionFolder == null) {
                 log.error("设备 {} 的会话文件夹不存在，无法保存音频文件", connection.deviceId);
                 return;
             }
-            File audioFile = new File(sessionFolder, fileName);
-            connection.audioFilePath = audioFile.getAbsolutePath();
+            
+            // 音频按时长分段保存: audio_000.wav、audio_001.wav …（逻辑上仍是会话文件夹中的 audio.wav）
+            connection.audioSessionFolder = Paths.get(sessionFolder);
+            Path segment = sessionSegmentService.openSegment(connection.audioSessionFolder, SessionSegmentService.AUDIO, "wav");
+            connection.audioFilePath = segment.toAbsolutePath().toString();
+            String fileName = segment.getFileName().toString();
             
             // 记录原始声道数
             int originalChannels = connection.audioGrabber.getAudioChannels();
@@ -1124,22 +1183,8 @@ public class RealtimeDataService {
             // 强制使用单声道 - 解决RTSP流双声道但数据不匹配的问题
             int channelsToUse = 1;
             
-            // 创建录制器 - 强制使用单声道
-            connection.audioRecorder = new FFmpegFrameRecorder(
-                connection.audioFilePath, 
-                channelsToUse  // 强制单声道
-            );
-            
-            // 设置音频参数 - 参考原始项目
-            connection.audioRecorder.setAudioOption("crf", "0");
-            connection.audioRecorder.setAudioQuality(0);
-            connection.audioRecorder.setAudioChannels(channelsToUse);  // 强制单声道
-            connection.audioRecorder.setSampleRate(originalSampleRate);
-            connection.audioRecorder.setFormat("wav");
-            connection.audioRecorder.setAudioCodec(avcodec.AV_CODEC_ID_PCM_S16LE);
-            
-            // 启动录制器
-            connection.audioRecorder.start();
+            // 创建并启动录制器 - 强制使用单声道
+            connection.audioRecorder = createAudioRecorder(connection.audioFilePath, channelsToUse, originalSampleRate);
             
             // 录制第一帧
             connection.audioRecorder.setTimestamp(firstFrame.timestamp);
@@ -1153,6 +1198,44 @@ public class RealtimeDataService {
         }
     }
     
+    /**
+     * 创建并启动 WAV 录制器（PCM s16le）
+     */
+    private FFmpegFrameRecorder createAudioRecorder(String filePath, int channels, int sampleRate) throws Exception {
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(filePath, channels);
+        
+        // 设置音频参数 - 参考原始项目
+        recorder.setAudioOption("crf", "0");
+        recorder.setAudioQuality(0);
+        recorder.setAudioChannels(channels);
+        recorder.setSampleRate(sampleRate);
+        recorder.setFormat("wav");
+        recorder.setAudioCodec(avcodec.AV_CODEC_ID_PCM_S16LE);
+        
+        // 启动录制器
+        recorder.start();
+        return recorder;
+    }
+    
+    /**
+     * 滚动到下一个音频分段：结束当前 WAV（写入文件尾）并以相同参数开启新分段
+     * 调用方需持有 audioLock；失败时 audioRecorder 保持为 null
+     */
+    private void rollAudioSegment(DeviceConnection connection) throws Exception {
+        FFmpegFrameRecorder old = connection.audioRecorder;
+        connection.audioRecorder = null;
+        int channels = old.getAudioChannels();
+        int sampleRate = old.getSampleRate();
+        old.stop();
+        old.release();
+        old.close();
+        
+        Path segment = sessionSegmentService.openSegment(connection.audioSessionFolder, SessionSegmentService.AUDIO, "wav");
+        connection.audioFilePath = segment.toAbsolutePath().toString();
+        connection.audioRecorder = createAudioRecorder(connection.audioFilePath, channels, sampleRate);
+        log.info("设备 {} 音频滚动到新分段: {}", connection.deviceId, segment.getFileName());
+    }
+    
     /**
      * 录制音频帧 - 参考原始项目的waveRecorderSt方法
      */
@@ -1174,14 +1257,23 @@ public class RealtimeDataService {
                 return;
             }
             
-            if (connection.audioRecorder != null) {
-                synchronized (connection.audioRecorder) {
-                    // 再次检查，防止在等待锁期间被关闭
-                    if (connection.audioRecorder != null && connection.audioReceiving.get()) {
-                        connection.audioRecorder.setTimestamp(frame.timestamp);
-                        connection.audioRecorder.recordSamples(frame.samples);
-                        connection.audioFrameCount++;
+            synchronized (connection.audioLock) {
+                // 在锁内检查，防止在等待锁期间被关闭
+                if (connection.audioRecorder != null && connection.audioReceiving.get()) {
+                    if (sessionSegmentService.shouldRoll(connection.audioSessionFolder, SessionSegmentService.AUDIO)) {
+                        try {
+                            rollAudioSegment(connection);
+                        } catch (Exception e) {
+                            connection.audioRecordStopped = true;
+                            log.error("设备 {} 音频分段滚动失败，停止录制音频", connection.deviceId, e);
+                            return;
+                        }
                     }
+                    connection.audioRecorder.setTimestamp(frame.timestamp);
+                    connection.audioRecorder.recordSamples(frame.samples);
+                    connection.audioFrameCount++;
+                    sessionSegmentService.recordAudioFrame(connection.audioSessionFolder, System.currentTimeMillis(),
+                            samplesPerChannel(frame), connection.audioRecorder.getSampleRate());
                 }
             }
         } catch (Exception e) {
@@ -1190,6 +1282,17 @@ public class RealtimeDataService {
         }
     }
     
+    /**
+     * 每声道采样点数（交错存储时总长度需除以声道数）
+     */
+    private static int samplesPerChannel(Frame frame) {
+        if (frame.samples == null || frame.samples.length == 0 || frame.samples[0] == null) {
+            return 0;
+        }
+        int n = frame.samples[0].limit();
+        return frame.samples.length == 1 ? n / Math.max(1, frame.audioChannels) : n;
+    }
+    
     /**
      * 提取音频数据并降采样推送到WebSocket
      */
@@ -1283,10 +1386,12 @@ public class RealtimeDataService {
             }
             
             // 5. 安全关闭录制器（确保数据刷新到磁盘）
-            boolean hasRecorder = connection.audioRecorder != null;
-            String audioFilePath = connection.audioFilePath; // 保存路径，防止被清空
-            if (connection.audioRecorder != null) {
-                synchronized (connection.audioRecorder) {
+            boolean hasRecorder;
+            String audioFilePath;
+            synchronized (connection.audioLock) {
+                hasRecorder = connection.audioRecorder != null;
+                audioFilePath = connection.audioFilePath; // 保存路径，防止被清空
+                if (connection.audioRecorder != null) {
                     try {
                         // 正确的关闭顺序：stop() -> release() -> close()
                         // stop() 停止编码并写入文件尾
@@ -1362,7 +1467,9 @@ public class RealtimeDataService {
                     connection.audioReady.get(),
                     connection.allDataReady.get());
                 
-                if (connection.audioRetryCount >= DeviceConnection.MAX_AUDIO_RETRY) {
+                if (connection.audioRecordStopped) {
+                    log.warn("原因: 音频分段滚动失败，已停止录制音频");
+                } else if (connection.audioRetryCount >= DeviceConnection.MAX_AUDIO_RETRY) {
                     log.warn("原因: 音频连接失败次数超过最大重试次数 {}", DeviceConnection.MAX_AUDIO_RETRY);
                 } else if (!connection.audioReady.get()) {
                     log.warn("原因: 音频数据未就绪 - 可能是RTSP连接失败或未抓取到音频帧");
@@ -0,0 +1,137 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.entity.GasData;
+import cn.scut.raputa.entity.ImuData;
+import cn.scut.raputa.exception.BizException;
+import cn.scut.raputa.repository.GasDataRepository;
+import cn.scut.raputa.repository.ImuDataRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * 传感器数据流式导出服务
+ * 通过 JPA Stream 逐行读取并直接写出 NDJSON/CSV，内存占用与结果集大小无关
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SensorExportService {
+
+    private final ImuDataRepository imuDataRepository;
+    private final GasDataRepository gasDataRepository;
+    private final EntityManager entityManager;
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format of(String s) {
+            if (s == null || s.isBlank()) {
+                return NDJSON;
+            }
+            try {
+                return Format.valueOf(s.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new BizException(400, "不支持的导出格式: " + s);
+            }
+        }
+    }
+
+    /**
+     * 流式写出IMU数据（时间升序）
+     * 必须在 StreamingResponseBody 线程内调用，事务与结果集游标随方法结束关闭
+     */
+    @Transactional(readOnly = true)
+    public long writeImu(String deviceId, long startMicros, long endMicros, Format format, OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            w.write("ts_micros,timestamp,timestampus,x,y,z\n");
+        }
+        long[] rows = {0};
+        try (Stream<ImuData> stream = imuDataRepository.streamByDeviceIdAndTsMicrosRange(deviceId, startMicros, endMicros)) {
+            stream.forEach(d -> {
+                try {
+                    if (format == Format.CSV) {
+                        w.write(d.getTsMicros() + "," + d.getTimestamp() + "," + d.getTimestampus() + ","
+                                + d.getX() + "," + d.getY() + "," + d.getZ() + "\n");
+                    } else {
+                        w.write("{\"tsMicros\":" + d.getTsMicros() + ",\"timestamp\":" + d.getTimestamp()
+                                + ",\"timestampus\":" + d.getTimestampus() + ",\"x\":" + d.getX()
+                                + ",\"y\":" + d.getY() + ",\"z\":" + d.getZ() + "}\n");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                // 逐行脱离持久化上下文，避免一级缓存随结果集增长
+                entityManager.detach(d);
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        w.flush();
+        log.info("流式导出IMU数据: deviceId={}, rows={}, format={}", deviceId, rows[0], format);
+        return rows[0];
+    }
+
+    /**
+     * 流式写出气体数据（时间升序）
+     */
+    @Transactional(readOnly = true)
+    public long writeGas(String deviceId, long startMicros, long endMicros, Format format, OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            w.write("ts_micros,timestamp,timestampus,flow\n");
+        }
+        long[] rows = {0};
+        try (Stream<GasData> stream = gasDataRepository.streamByDeviceIdAndTsMicrosRange(deviceId, startMicros, endMicros)) {
+            stream.forEach(d -> {
+                String flow = d.getFlow() == null ? (format == Format.CSV ? "" : "null") : String.valueOf(d.getFlow());
+                try {
+                    if (format == Format.CSV) {
+                        w.write(d.getTsMicros() + "," + d.getTimestamp() + "," + d.getTimestampus() + "," + flow + "\n");
+                    } else {
+                        w.write("{\"tsMicros\":" + d.getTsMicros() + ",\"timestamp\":" + d.getTimestamp()
+                                + ",\"timestampus\":" + d.getTimestampus() + ",\"flow\":" + flow + "}\n");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                entityManager.detach(d);
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        w.flush();
+        log.info("流式导出气体数据: deviceId={}, rows={}, format={}", deviceId, rows[0], format);
+        return rows[0];
+    }
+}
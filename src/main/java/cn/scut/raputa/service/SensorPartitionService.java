@@ -0,0 +1,193 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.exception.BizException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 传感器表按月分区与数据保留
+ * imu_data / gas_data / audio_data 按 ts_micros 做 RANGE 分区（每月一个分区 pYYYYMM，外加 p_future 兜底），
+ * 过期数据通过 DROP PARTITION 整块删除，而不是逐行 DELETE
+ *
+ * 注意：MySQL 要求分区键包含在主键中，首次转换时主键会从 (id) 改为 (id, ts_micros)；
+ * id 仍为自增且唯一，JPA 映射不受影响
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SensorPartitionService {
+
+    public static final List<String> TABLES = List.of("imu_data", "gas_data", "audio_data");
+
+    private static final ZoneId ZONE_CN = ZoneId.of("Asia/Shanghai");
+    private static final DateTimeFormatter PART_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String FUTURE = "p_future";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AudioStoreService audioStoreService;
+    private final SensorRollupService sensorRollupService;
+
+    @Value("${raputa.data.partition.enabled:false}")
+    private boolean enabled;
+
+    // 提前创建的月份分区数
+    @Value("${raputa.data.partition.months-ahead:2}")
+    private int monthsAhead;
+
+    // 保留月数（<= 0 表示不清理）
+    @Value("${raputa.data.retention.months:12}")
+    private int retentionMonths;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 分区维护：补齐未来分区，并删除超出保留期的分区；尚未转换的表跳过（首次转换见 {@link #convert}）
+     */
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth current = YearMonth.now(ZONE_CN);
+        for (String table : TABLES) {
+            try {
+                if (!isPartitioned(table)) {
+                    continue;
+                }
+                ensureFuturePartitions(table, current.plusMonths(monthsAhead));
+                if (retentionMonths > 0) {
+                    dropExpired(table, current.minusMonths(retentionMonths));
+                }
+            } catch (Exception e) {
+                log.error("分区维护失败: table={}", table, e);
+            }
+        }
+    }
+
+    public boolean isPartitioned(String table) {
+        return !listPartitions(table).isEmpty();
+    }
+
+    /**
+     * 查询表的分区信息 [PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS]
+     */
+    public List<Map<String, Object>> listPartitions(String table) {
+        checkTable(table);
+        return jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION, TABLE_ROWS FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                        "ORDER BY PARTITION_ORDINAL_POSITION", table);
+    }
+
+    /**
+     * 返回设备区间查询的执行计划，partitions 列用于确认分区裁剪是否生效
+     */
+    public List<Map<String, Object>> explainRange(String table, String deviceId, long startMicros, long endMicros) {
+        checkTable(table);
+        return jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM " + table + " WHERE device_id = ? AND ts_micros BETWEEN ? AND ? ORDER BY ts_micros",
+                deviceId, startMicros, endMicros);
+    }
+
+    /**
+     * 首次转换：收紧 ts_micros，调整主键，按月建立分区（当前月之前的数据归入 p_old）
+     * 三条 ALTER 都会重建整表，只应由一次性迁移在后台线程调用；调用前 ts_micros 须已分批回填完毕
+     */
+    public void convert(String table) {
+        checkTable(table);
+        YearMonth current = YearMonth.now(ZONE_CN);
+        log.info("开始将 {} 转换为按月分区表", table);
+        jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY ts_micros BIGINT NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, ts_micros)");
+        jdbcTemplate.execute("ALTER TABLE " + table + " PARTITION BY RANGE (ts_micros) (" +
+                "PARTITION p_old VALUES LESS THAN (" + monthStartMicros(current) + "), " +
+                partitionDef(current) + ", " +
+                "PARTITION " + FUTURE + " VALUES LESS THAN MAXVALUE)");
+        log.info("{} 分区转换完成", table);
+    }
+
+    private void ensureFuturePartitions(String table, YearMonth until) {
+        List<String> names = listPartitions(table).stream()
+                .map(p -> String.valueOf(p.get("PARTITION_NAME")))
+                .toList();
+        YearMonth last = names.stream()
+                .filter(n -> n.matches("p\\d{6}"))
+                .map(n -> YearMonth.parse(n.substring(1), DateTimeFormatter.ofPattern("yyyyMM")))
+                .max(YearMonth::compareTo)
+                .orElse(YearMonth.now(ZONE_CN).minusMonths(1));
+
+        List<String> defs = new ArrayList<>();
+        for (YearMonth m = last.plusMonths(1); !m.isAfter(until); m = m.plusMonths(1)) {
+            defs.add(partitionDef(m));
+        }
+        if (defs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " REORGANIZE PARTITION " + FUTURE + " INTO (" +
+                String.join(", ", defs) + ", PARTITION " + FUTURE + " VALUES LESS THAN MAXVALUE)");
+        log.info("{} 新增分区 {} 个（至 {}）", table, defs.size(), until);
+    }
+
+    // 删除上界不晚于 cutoff 月初的分区；DROP PARTITION 为元数据操作，与分区内行数无关
+    // audio_data 的样本字节在按天的 .pcm 文件中，分区删除后一并删除已删除区间内的日期文件；imu/gas 的预聚合同时清理
+    private void dropExpired(String table, YearMonth cutoff) {
+        long cutoffMicros = monthStartMicros(cutoff);
+        long droppedUntil = Long.MIN_VALUE;
+        List<String> expired = new ArrayList<>();
+        for (Map<String, Object> p : listPartitions(table)) {
+            String name = String.valueOf(p.get("PARTITION_NAME"));
+            String desc = String.valueOf(p.get("PARTITION_DESCRIPTION"));
+            if (FUTURE.equals(name) || "MAXVALUE".equalsIgnoreCase(desc)) {
+                continue;
+            }
+            long upper = Long.parseLong(desc);
+            if (upper <= cutoffMicros) {
+                expired.add(name);
+                droppedUntil = Math.max(droppedUntil, upper);
+            }
+        }
+        // 预聚合按同一截止时间清理（其中也有实时采集、回放写入的数据，与是否删除了分区无关）
+        if (!"audio_data".equals(table)) {
+            sensorRollupService.pruneBefore("imu_data".equals(table) ? "imu" : "gas", cutoffMicros / 1000L);
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + String.join(", ", expired));
+        log.info("{} 删除过期分区: {}", table, expired);
+        if ("audio_data".equals(table)) {
+            audioStoreService.deleteDaysBefore(
+                    Instant.ofEpochMilli(droppedUntil / 1000L).atZone(ZONE_CN).toLocalDate());
+        }
+    }
+
+    private static String partitionDef(YearMonth m) {
+        return "PARTITION " + m.format(PART_NAME) + " VALUES LESS THAN (" + monthStartMicros(m.plusMonths(1)) + ")";
+    }
+
+    private static long monthStartMicros(YearMonth m) {
+        LocalDate first = m.atDay(1);
+        return first.atStartOfDay(ZONE_CN).toInstant().toEpochMilli() * 1000L;
+    }
+
+    private static void checkTable(String table) {
+        if (!TABLES.contains(table)) {
+            throw new BizException(400, "不支持的数据表: " + table);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.entity.GasData;
+import cn.scut.raputa.entity.ImuData;
+import cn.scut.raputa.repository.SensorRollupRepository;
+import cn.scut.raputa.utils.TsMicros;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 传感器预聚合服务
+ * 写入原始数据时按 1s / 10s / 1min 增量维护 sensor_rollup，查询时选择合适的分辨率；
+ * 来源包括 REST 写库接口，以及实时采集、回放写入会话文件的同一批数据
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SensorRollupService {
+
+    /** 预聚合分辨率（毫秒），由细到粗 */
+    public static final int[] RESOLUTIONS_MS = {1_000, 10_000, 60_000};
+
+    private static final int PRUNE_CHUNK = 10_000;
+
+    private final SensorRollupRepository sensorRollupRepository;
+
+    /**
+     * 将一批IMU数据合并进预聚合表
+     */
+    @Transactional
+    public void accumulateImu(String deviceId, List<ImuData> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        Map<BucketKey, Acc> accs = new LinkedHashMap<>();
+        for (ImuData d : batch) {
+            long ms = TsMicros.ofSeconds(d.getTimestamp(), d.getTimestampus()) / 1000L;
+            for (int res : RESOLUTIONS_MS) {
+                accs.computeIfAbsent(new BucketKey(res, ms - Math.floorMod(ms, res)), k -> new Acc(3))
+                        .add(d.getX(), d.getY(), d.getZ());
+            }
+        }
+        flush(deviceId, "imu", accs);
+    }
+
+    /**
+     * 将一批GAS数据合并进预聚合表（flow 为空的样本不计入）
+     */
+    @Transactional
+    public void accumulateGas(String deviceId, List<GasData> batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        Map<BucketKey, Acc> accs = new LinkedHashMap<>();
+        for (GasData d : batch) {
+            if (d.getFlow() == null) {
+                continue;
+            }
+            long ms = TsMicros.ofSeconds(d.getTimestamp(), d.getTimestampus()) / 1000L;
+            for (int res : RESOLUTIONS_MS) {
+                accs.computeIfAbsent(new BucketKey(res, ms - Math.floorMod(ms, res)), k -> new Acc(1))
+                        .add(d.getFlow());
+            }
+        }
+        flush(deviceId, "gas", accs);
+    }
+
+    /**
+     * 将一批会话数据行（[毫秒时间戳, 通道值...]，与写入会话文件的行相同）合并进预聚合表；无法解析的行不计入
+     */
+    @Transactional
+    public void accumulateRows(String deviceId, String stream, List<String[]> rows) {
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        int channels = "imu".equals(stream) ? 3 : 1;
+        Map<BucketKey, Acc> accs = new LinkedHashMap<>();
+        int[] values = new int[channels];
+        for (String[] row : rows) {
+            if (row.length < channels + 1) {
+                continue;
+            }
+            long ms;
+            try {
+                ms = Long.parseLong(row[0].trim());
+                for (int c = 0; c < channels; c++) {
+                    values[c] = Integer.parseInt(row[c + 1].trim());
+                }
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            for (int res : RESOLUTIONS_MS) {
+                accs.computeIfAbsent(new BucketKey(res, ms - Math.floorMod(ms, res)), k -> new Acc(channels))
+                        .add(values);
+            }
+        }
+        flush(deviceId, stream, accs);
+    }
+
+    /**
+     * 分块删除 beforeMs 之前的预聚合桶（随原始数据的过期分区一起清理），返回删除的行数
+     */
+    public long pruneBefore(String stream, long beforeMs) {
+        long total = 0;
+        int n;
+        do {
+            n = sensorRollupRepository.deleteChunkBefore(stream, beforeMs, PRUNE_CHUNK);
+            total += n;
+        } while (n >= PRUNE_CHUNK);
+        if (total > 0) {
+            log.info("删除过期预聚合: stream={}, before={}, rows={}", stream, beforeMs, total);
+        }
+        return total;
+    }
+
+    /**
+     * 选择不超过桶宽的最粗分辨率；桶宽小于最细分辨率时返回 null（需要查原始表）
+     */
+    public Integer chooseResolution(long bucketMs) {
+        Integer chosen = null;
+        for (int res : RESOLUTIONS_MS) {
+            if (res <= bucketMs) {
+                chosen = res;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * 在预聚合表上按 bucketMs 二次分桶，行格式与原始表聚合一致
+     */
+    public List<Object[]> aggregate(String deviceId, String stream, int resolutionMs,
+                                    long startMs, long endMs, long bucketMs) {
+        return sensorRollupRepository.aggregateByBucket(deviceId, stream, resolutionMs, startMs, endMs, bucketMs);
+    }
+
+    /**
+     * 预聚合覆盖的起点（毫秒）：预聚合只在写入时维护，之前写入的原始数据没有对应的桶；没有任何预聚合时返回 null
+     */
+    public Long coverageStart(String deviceId, String stream, int resolutionMs) {
+        return sensorRollupRepository.findFirstBucketStart(deviceId, stream, resolutionMs);
+    }
+
+    private void flush(String deviceId, String stream, Map<BucketKey, Acc> accs) {
+        for (Map.Entry<BucketKey, Acc> e : accs.entrySet()) {
+            Acc a = e.getValue();
+            sensorRollupRepository.upsert(deviceId, stream, e.getKey().resolutionMs(), e.getKey().bucketStart(), a.cnt,
+                    a.min(0), a.max(0), a.sum(0),
+                    a.min(1), a.max(1), a.sum(1),
+                    a.min(2), a.max(2), a.sum(2));
+        }
+        log.debug("更新预聚合: deviceId={}, stream={}, buckets={}", deviceId, stream, accs.size());
+    }
+
+    private record BucketKey(int resolutionMs, long bucketStart) {}
+
+    /**
+     * 单个桶的批内累加器
+     */
+    private static class Acc {
+        private final int[] min;
+        private final int[] max;
+        private final long[] sum;
+        private long cnt = 0;
+
+        Acc(int channels) {
+            min = new int[channels];
+            max = new int[channels];
+            sum = new long[channels];
+            Arrays.fill(min, Integer.MAX_VALUE);
+            Arrays.fill(max, Integer.MIN_VALUE);
+        }
+
+        void add(int... values) {
+            for (int c = 0; c < values.length; c++) {
+                min[c] = Math.min(min[c], values[c]);
+                max[c] = Math.max(max[c], values[c]);
+                sum[c] += values[c];
+            }
+            cnt++;
+        }
+
+        Integer min(int c) {
+            return c < min.length ? min[c] : null;
+        }
+
+        Integer max(int c) {
+            return c < max.length ? max[c] : null;
+        }
+
+        Long sum(int c) {
+            return c < sum.length ? sum[c] : null;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.entity.PatientFile;
+import cn.scut.raputa.utils.ColumnarBlockFile;
+import cn.scut.raputa.utils.CsvTimeIndex;
+import cn.scut.raputa.utils.SessionManifest;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 已结束会话的后台压缩
+ * 将会话中的逻辑文件（imu.csv / gas.csv / audio.wav，含全部分段）压缩为同目录的 *.gz，登记到 patient_file 后删除原文件；
+ * 二进制列式分段（*.rbin）保持原格式，只把未压缩的数据块改写为 Deflate 压缩；
+ * 单线程、低优先级执行，每个文件之间休眠限流，避免与在线采集争用 CPU 和磁盘
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionCompressionService {
+
+    private static final List<String> LOGICAL_NAMES = List.of("imu.csv", "gas.csv", "audio.wav");
+
+    private final CsvDataService csvDataService;
+    private final SessionSegmentService segmentService;
+    private final PatientFileService patientFileService;
+
+    @Value("${raputa.session.compress.enabled:true}")
+    private boolean enabled;
+
+    // gzip 压缩级别（1 最快 ~ 9 最小）
+    @Value("${raputa.session.compress.level:6}")
+    private int level;
+
+    // 没有 manifest 的旧会话：目录最后修改超过该时长才视为已结束
+    @Value("${raputa.session.compress.min-idle-minutes:60}")
+    private long minIdleMinutes;
+
+    // 每个文件压缩后的休眠
+    @Value("${raputa.session.compress.throttle-ms:500}")
+    private long throttleMs;
+
+    @Value("${raputa.session.compress.max-sessions-per-run:10}")
+    private int maxSessionsPerRun;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "session-compress");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * 提交一轮压缩（上一轮未结束时忽略）
+     */
+    public void compressPending() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        executor.submit(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                log.error("会话压缩任务异常", e);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void runOnce() throws IOException, InterruptedException {
+        Path root = Paths.get(csvDataService.getCsvDirectory());
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        List<Path> folders;
+        try (Stream<Path> dirs = Files.list(root)) {
+            folders = dirs.filter(Files::isDirectory).sorted().toList();
+        }
+        int done = 0;
+        for (Path folder : folders) {
+            if (done >= maxSessionsPerRun || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            List<String> pending = pendingFiles(folder);
+            if (pending.isEmpty()) {
+                continue;
+            }
+            for (String name : pending) {
+                compress(folder, name);
+                if (throttleMs > 0) {
+                    Thread.sleep(throttleMs);
+                }
+            }
+            done++;
+        }
+        if (done > 0) {
+            log.info("本轮压缩会话 {} 个", done);
+        }
+    }
+
+    // 已结束且尚未压缩的逻辑文件
+    private List<String> pendingFiles(Path folder) throws IOException {
+        if (segmentService.isActive(folder)) {
+            return List.of();
+        }
+        SessionManifest m = SessionManifest.read(folder);
+        List<String> names = new ArrayList<>();
+        if (m != null) {
+            if (!m.isFinalized()) {
+                return List.of();
+            }
+            m.getStreams().values().forEach(s -> names.add(s.getLogicalName()));
+        } else {
+            long idleMs = System.currentTimeMillis() - Files.getLastModifiedTime(folder).toMillis();
+            if (idleMs < minIdleMinutes * 60_000L) {
+                return List.of();
+            }
+            names.addAll(LOGICAL_NAMES);
+        }
+        return names.stream()
+                .filter(n -> {
+                    Path logical = folder.resolve(n);
+                    if (segmentService.compressedPath(logical) != null) {
+                        return false;
+                    }
+                    List<Path> sources = segmentService.resolve(logical);
+                    return !sources.isEmpty() && (!allColumnar(sources) || sources.stream().anyMatch(p -> !deflated(p)));
+                })
+                .toList();
+    }
+
+    private void compress(Path folder, String name) throws IOException {
+        Path logical = folder.resolve(name);
+        List<Path> sources = segmentService.resolve(logical);
+        if (allColumnar(sources)) {
+            deflateSegments(sources);
+            return;
+        }
+        Path gz = folder.resolve(name + ".gz");
+        Path tmp = folder.resolve(name + ".gz.tmp");
+
+        long started = System.currentTimeMillis();
+        CRC32 crc = new CRC32();
+        try (OutputStream file = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024), crc);
+             OutputStream gzip = new LeveledGzipOutputStream(file, level)) {
+            segmentService.transferLogical(logical, gzip);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long bytes = Files.size(gz);
+
+        // 登记压缩位置（逻辑路径不变，下载与概览仍按原路径查找）；等写库完成后再删除原文件
+        String logicalPath = logical.toAbsolutePath().toString();
+        List<CompletableFuture<Void>> registered = new ArrayList<>();
+        for (PatientFile pf : patientFileService.findByPath(logicalPath)) {
+            registered.add(patientFileService.record(pf.getPatientId(), logicalPath, pf.getFileType(), pf.getSavedAt(),
+                    gz.toAbsolutePath().toString()));
+        }
+        try {
+            CompletableFuture.allOf(registered.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            // 登记失败：删除压缩副本、保留原分段，下一轮重新压缩（读取方在 .gz 不存在时回退到分段）
+            Files.deleteIfExists(gz);
+            throw new IOException("登记压缩文件失败: " + logical, e.getCause());
+        }
+        segmentService.markCompressed(folder, name, gz, bytes, crc.getValue());
+
+        long original = 0;
+        for (Path src : sources) {
+            original += Files.size(src);
+            Files.deleteIfExists(src);
+            Files.deleteIfExists(CsvTimeIndex.indexPathFor(src));
+        }
+        log.info("压缩完成: {} ({} -> {} bytes, {} ms)", gz, original, bytes, System.currentTimeMillis() - started);
+    }
+
+    // 二进制列式分段在原格式内压缩（Deflate 数据块后原地替换），不展开为 CSV 再 gzip；文件名与读取方式都不变
+    private void deflateSegments(List<Path> sources) throws IOException {
+        for (Path src : sources) {
+            if (deflated(src)) {
+                continue;
+            }
+            long started = System.currentTimeMillis();
+            long original = Files.size(src);
+            Path tmp = src.resolveSibling(src.getFileName() + ".tmp");
+            try {
+                ColumnarBlockFile.deflate(src, tmp, level);
+            } catch (IOException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+            Files.move(tmp, src, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("压缩完成: {} ({} -> {} bytes, {} ms)", src, original, Files.size(src),
+                    System.currentTimeMillis() - started);
+        }
+    }
+
+    private static boolean allColumnar(List<Path> sources) {
+        return !sources.isEmpty() && sources.stream().allMatch(ColumnarBlockFile::isColumnar);
+    }
+
+    private static boolean deflated(Path segment) {
+        try {
+            return !ColumnarBlockFile.isColumnar(segment) || ColumnarBlockFile.isDeflated(segment);
+        } catch (IOException e) {
+            log.warn("读取分段文件头失败，跳过压缩: {}", segment, e);
+            return true;
+        }
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 64 * 1024);
+            def.setLevel(level);
+        }
+    }
+}
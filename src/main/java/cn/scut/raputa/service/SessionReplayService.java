@@ -0,0 +1,447 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.exception.BizException;
+import cn.scut.raputa.utils.Ids;
+import cn.scut.raputa.utils.ReplayClock;
+import cn.scut.raputa.vo.ReplayJobVO;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 会话回放：把已录制的会话目录（imu.csv / gas.csv / audio.wav）重新送入实时处理链路，
+ * 用于脱离树莓派复现现场问题、对比改动前后的处理性能
+ *
+ * 传感器样本按时间戳归并后重建为设备上报的 JSON，逐条交给 RealtimeDataService.processSensorData；
+ * 音频由实时链路的抓取循环直接读本地 wav。两者共用一个 ReplayClock：
+ * REALTIME 按原速、ACCELERATED 按 speed 倍速、MAX 不限速。回放写出一个新的会话目录（患者ID 为 replay），
+ * 不写检查记录；结束时给出吞吐与单样本处理延迟
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SessionReplayService {
+
+    private static final long[] EOF = new long[0];
+    private static final int RESERVOIR = 65536;
+    private static final int PROGRESS_EVERY = 4096;
+
+    private final RealtimeDataService realtimeDataService;
+    private final CsvDataService csvDataService;
+    private final SessionSegmentService segmentService;
+
+    // 同时进行的回放数
+    @Value("${raputa.replay.max-concurrent:2}")
+    private int maxConcurrent;
+
+    // 读文件线程与注入线程之间的缓冲样本数
+    @Value("${raputa.replay.queue-size:8192}")
+    private int queueSize;
+
+    // 传感器注入结束后等待音频读完的上限
+    @Value("${raputa.replay.audio-wait-ms:60000}")
+    private long audioWaitMs;
+
+    private ExecutorService executor;
+
+    private final ConcurrentHashMap<String, ReplayJobVO> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Future<?>> running = new ConcurrentHashMap<>();
+
+    /**
+     * 提交回放任务，立即返回任务快照
+     *
+     * @param folderName 会话目录名（相对 CSV 根目录）
+     * @param mode       REALTIME / ACCELERATED / MAX
+     * @param speed      ACCELERATED 模式的倍速
+     */
+    public ReplayJobVO submit(String folderName, String mode, Double speed) {
+        Path folder = resolveFolder(folderName);
+        String m = mode == null ? "REALTIME" : mode.toUpperCase();
+        double s = switch (m) {
+            case "REALTIME" -> 1;
+            case "ACCELERATED" -> {
+                if (speed == null || speed <= 0) {
+                    throw new BizException(400, "ACCELERATED 模式需要指定大于 0 的 speed");
+                }
+                yield speed;
+            }
+            case "MAX" -> 0;
+            default -> throw new BizException(400, "不支持的回放模式: " + mode);
+        };
+        Path imu = SessionSegmentService.logicalPath(folder, SessionSegmentService.IMU, "csv");
+        Path gas = SessionSegmentService.logicalPath(folder, SessionSegmentService.GAS, "csv");
+        Path audio = SessionSegmentService.logicalPath(folder, SessionSegmentService.AUDIO, "wav");
+        if (!segmentService.exists(imu) && !segmentService.exists(gas)) {
+            throw new BizException(404, "会话目录中没有 IMU/GAS 数据");
+        }
+
+        pruneFinished();
+        String replayId = Ids.randomId(16);
+        ReplayJobVO job = ReplayJobVO.builder()
+                .replayId(replayId)
+                .deviceId("replay-" + replayId)
+                .source(folder.getFileName().toString())
+                .mode(m)
+                .speed(s)
+                .status("PENDING")
+                .audio(segmentService.exists(audio))
+                .submittedAt(LocalDateTime.now())
+                .build();
+        jobs.put(replayId, job);
+        // 先登记再执行：任务结束时从 running 移除，不能早于登记
+        FutureTask<Void> task = new FutureTask<>(() -> run(job, imu, gas, audio), null);
+        running.put(replayId, task);
+        executor().execute(task);
+        log.info("提交会话回放: replayId={}, source={}, mode={}, speed={}", replayId, job.getSource(), m, s);
+        return snapshot(job);
+    }
+
+    /**
+     * 查询回放进度/结果
+     */
+    public ReplayJobVO get(String replayId) {
+        return snapshot(find(replayId));
+    }
+
+    /**
+     * 取消回放；已写出的数据保留在目标会话目录
+     */
+    public ReplayJobVO cancel(String replayId) {
+        ReplayJobVO job = find(replayId);
+        Future<?> f = running.get(replayId);
+        if (f != null) {
+            boolean pending;
+            synchronized (job) {
+                pending = "PENDING".equals(job.getStatus());
+                // 已结束的任务不再改为取消
+                if (!pending && !"RUNNING".equals(job.getStatus())) {
+                    return snapshot(job);
+                }
+                job.setStatus("CANCELLED");
+            }
+            f.cancel(true);
+            // 尚在排队的任务不会再执行，直接结束
+            if (pending) {
+                finish(job, "CANCELLED", null);
+                running.remove(replayId);
+            }
+        }
+        return snapshot(job);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void run(ReplayJobVO job, Path imu, Path gas, Path audio) {
+        String deviceId = job.getDeviceId();
+        BlockingQueue<long[]> imuQueue = new ArrayBlockingQueue<>(Math.max(queueSize, 16));
+        BlockingQueue<long[]> gasQueue = new ArrayBlockingQueue<>(Math.max(queueSize, 16));
+        AtomicReference<Exception> readError = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>(2);
+        Path tempAudio = null;
+        boolean started = false;
+        Stats stats = new Stats();
+        try {
+            String audioSource = null;
+            if (job.isAudio()) {
+                List<Path> segments = segmentService.resolve(audio);
+                if (segments.size() == 1) {
+                    audioSource = segments.get(0).toString();
+                } else {
+                    // 多分段或已压缩：先拼成一个完整 wav
+                    tempAudio = Files.createTempFile("replay-", ".wav");
+                    try (OutputStream out = Files.newOutputStream(tempAudio)) {
+                        segmentService.transferLogical(audio, out);
+                    }
+                    audioSource = tempAudio.toString();
+                }
+            }
+
+            readers.add(reader(imu, imuQueue, readError, deviceId + "-imu"));
+            readers.add(reader(gas, gasQueue, readError, deviceId + "-gas"));
+
+            ReplayClock clock = new ReplayClock(job.getSpeed());
+            long startNanos = System.nanoTime();
+            // 回放会话归属源会话的患者，patient_file 登记不会出现不存在的患者id
+            realtimeDataService.startReplay(deviceId, "replay", CsvDataService.patientIdOf(imu.getParent()),
+                    job.getSource(), audioSource, clock);
+            started = true;
+            synchronized (job) {
+                if ("CANCELLED".equals(job.getStatus())) {
+                    throw new InterruptedException();
+                }
+                job.setStatus("RUNNING");
+                job.setTargetFolder(csvDataService.getSessionFolder(deviceId));
+            }
+
+            long[] i = imuQueue.take();
+            long[] g = gasQueue.take();
+            long base = Math.min(i == EOF ? Long.MAX_VALUE : i[0], g == EOF ? Long.MAX_VALUE : g[0]);
+            long last = base;
+            StringBuilder json = new StringBuilder(128);
+            while (i != EOF || g != EOF) {
+                boolean isImu = g == EOF || (i != EOF && i[0] <= g[0]);
+                long[] sample = isImu ? i : g;
+                clock.await(sample[0] - base);
+                toJson(json, sample, isImu);
+                String payload = json.toString();
+
+                long t0 = System.nanoTime();
+                realtimeDataService.processSensorData(payload, deviceId);
+                stats.add(System.nanoTime() - t0);
+
+                last = Math.max(last, sample[0]);
+                if (isImu) {
+                    stats.imu++;
+                    i = imuQueue.take();
+                } else {
+                    stats.gas++;
+                    g = gasQueue.take();
+                }
+                if (stats.count % PROGRESS_EVERY == 0) {
+                    report(job, stats, last - base, System.nanoTime() - startNanos, clock, false);
+                }
+            }
+            if (readError.get() != null) {
+                throw readError.get();
+            }
+
+            // 传感器注入完毕，等音频按同一节拍读完后再结束会话
+            if (!realtimeDataService.awaitAudio(deviceId, audioWaitMs)) {
+                log.warn("回放 {} 的音频未能在 {} ms 内读完", job.getReplayId(), audioWaitMs);
+            }
+            report(job, stats, last - base, System.nanoTime() - startNanos, clock, true);
+            realtimeDataService.stopDataReceiving(deviceId).join();
+            started = false;
+            finish(job, "DONE", null);
+            log.info("会话回放完成: replayId={}, imu={}, gas={}, {} 样本/秒, p99={}us, 耗时 {} ms",
+                    job.getReplayId(), stats.imu, stats.gas, job.getSamplesPerSecond(),
+                    job.getLatencyP99Us(), job.getElapsedMs());
+        } catch (InterruptedException | CancellationException e) {
+            finish(job, "CANCELLED", null);
+            log.info("会话回放已取消: replayId={}", job.getReplayId());
+        } catch (Exception e) {
+            log.error("会话回放失败: replayId={}", job.getReplayId(), e);
+            finish(job, "FAILED", e.getMessage());
+        } finally {
+            readers.forEach(Thread::interrupt);
+            if (started) {
+                // 取消或失败时也要停掉定时器并关闭写入器
+                try {
+                    realtimeDataService.stopDataReceiving(deviceId).join();
+                } catch (Exception e) {
+                    log.warn("结束回放会话失败: {}", deviceId, e);
+                }
+            }
+            if (tempAudio != null) {
+                try {
+                    Files.deleteIfExists(tempAudio);
+                } catch (Exception e) {
+                    log.warn("删除回放临时音频失败: {}", tempAudio);
+                }
+            }
+            running.remove(job.getReplayId());
+        }
+    }
+
+    // 读文件线程：逐行解析为 [ts, v...] 放入队列，结束时放入 EOF
+    private Thread reader(Path logical, BlockingQueue<long[]> queue, AtomicReference<Exception> error, String name) {
+        Thread t = new Thread(() -> {
+            try {
+                if (segmentService.exists(logical)) {
+                    csvDataService.scanRange(logical, Long.MIN_VALUE, Long.MAX_VALUE, line -> {
+                        long[] row = parseRow(line);
+                        if (row == null) {
+                            return;
+                        }
+                        try {
+                            queue.put(row);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new CancellationException();
+                        }
+                    });
+                }
+            } catch (CancellationException e) {
+                return;
+            } catch (Exception e) {
+                error.compareAndSet(null, e);
+            }
+            try {
+                queue.put(EOF);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    // "ts","x","y","z" / "ts","value"；字段不是整数的行跳过
+    static long[] parseRow(String line) {
+        String[] parts = line.replace("\"", "").split(",");
+        if (parts.length < 2) {
+            return null;
+        }
+        long[] row = new long[parts.length];
+        try {
+            for (int k = 0; k < parts.length; k++) {
+                row[k] = Long.parseLong(parts[k].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return row;
+    }
+
+    /**
+     * 重建设备上报格式：timestamp 为秒、timestampus 为微秒部分；
+     * 微秒取毫秒中点，保证经 setSTimeToLTime 的 float 换算后还原出原毫秒值
+     */
+    private static void toJson(StringBuilder sb, long[] sample, boolean imu) {
+        long ts = sample[0];
+        sb.setLength(0);
+        sb.append("{\"timestamp\":").append(Math.floorDiv(ts, 1000L))
+                .append(",\"timestampus\":").append(Math.floorMod(ts, 1000L) * 1000 + 500);
+        if (imu) {
+            sb.append(",\"acc\":{\"x\":").append(sample.length > 1 ? sample[1] : 0)
+                    .append(",\"y\":").append(sample.length > 2 ? sample[2] : 0)
+                    .append(",\"z\":").append(sample.length > 3 ? sample[3] : 0).append('}');
+        } else {
+            sb.append(",\"flow\":").append(sample[1]);
+        }
+        sb.append('}');
+    }
+
+    private void report(ReplayJobVO job, Stats stats, long recordedMs, long elapsedNanos, ReplayClock clock, boolean last) {
+        long elapsedMs = Math.max(TimeUnit.NANOSECONDS.toMillis(elapsedNanos), 1);
+        synchronized (job) {
+            job.setImuSamples(stats.imu);
+            job.setGasSamples(stats.gas);
+            job.setRecordedMs(recordedMs);
+            job.setElapsedMs(elapsedMs);
+            job.setAchievedSpeed(recordedMs / (double) elapsedMs);
+            job.setSamplesPerSecond(stats.count * 1000.0 / elapsedMs);
+            job.setMaxLagMs(clock.maxLagMs());
+            job.setLatencyAvgUs(stats.count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(stats.sum / stats.count));
+            job.setLatencyMaxUs(TimeUnit.NANOSECONDS.toMicros(stats.max));
+            if (last) {
+                job.setLatencyP50Us(TimeUnit.NANOSECONDS.toMicros(stats.percentile(0.50)));
+                job.setLatencyP99Us(TimeUnit.NANOSECONDS.toMicros(stats.percentile(0.99)));
+            }
+        }
+    }
+
+    private void finish(ReplayJobVO job, String status, String error) {
+        synchronized (job) {
+            job.setStatus(status);
+            job.setError(error);
+            job.setFinishedAt(LocalDateTime.now());
+        }
+    }
+
+    private Path resolveFolder(String folderName) {
+        if (folderName == null || folderName.isBlank()) {
+            throw new BizException(400, "会话目录不能为空");
+        }
+        Path root = Paths.get(csvDataService.getCsvDirectory()).toAbsolutePath().normalize();
+        Path folder = root.resolve(folderName).normalize();
+        if (!folder.startsWith(root) || folder.equals(root) || !Files.isDirectory(folder)) {
+            throw new BizException(404, "会话目录不存在");
+        }
+        if (segmentService.isActive(folder)) {
+            throw new BizException(409, "会话仍在录制，不能回放");
+        }
+        return folder;
+    }
+
+    private ReplayJobVO find(String replayId) {
+        ReplayJobVO job = jobs.get(replayId);
+        if (job == null) {
+            throw new BizException(404, "回放任务不存在");
+        }
+        return job;
+    }
+
+    private ReplayJobVO snapshot(ReplayJobVO job) {
+        synchronized (job) {
+            return job.toBuilder().build();
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(maxConcurrent, 1), r -> {
+                Thread t = new Thread(r, "session-replay");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    // 已结束超过 1 小时的任务不再保留
+    private void pruneFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(1);
+        List<String> expired = new ArrayList<>();
+        jobs.forEach((id, j) -> {
+            if (j.getFinishedAt() != null && j.getFinishedAt().isBefore(cutoff)) {
+                expired.add(id);
+            }
+        });
+        expired.forEach(jobs::remove);
+    }
+
+    /**
+     * 单样本处理耗时统计：均值/最大值精确，分位数来自固定大小的蓄水池抽样
+     */
+    private static final class Stats {
+        long imu, gas, count, sum, max;
+        final long[] reservoir = new long[RESERVOIR];
+
+        void add(long nanos) {
+            if (count < RESERVOIR) {
+                reservoir[(int) count] = nanos;
+            } else {
+                long k = ThreadLocalRandom.current().nextLong(count + 1);
+                if (k < RESERVOIR) {
+                    reservoir[(int) k] = nanos;
+                }
+            }
+            count++;
+            sum += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        long percentile(double p) {
+            int n = (int) Math.min(count, RESERVOIR);
+            if (n == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(reservoir, n);
+            Arrays.sort(sorted);
+            int idx = (int) Math.ceil(p * n) - 1;
+            return sorted[Math.max(0, Math.min(n - 1, idx))];
+        }
+    }
+}
@@ -0,0 +1,603 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.utils.ColumnarBlockFile;
+import cn.scut.raputa.utils.SessionManifest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 会话分段文件管理
+ * 长会话按固定时长滚动写入 imu_000.csv、imu_001.csv …（audio 同理），分段信息记录在 manifest.json；
+ * 对外仍以逻辑路径（会话目录/imu.csv）登记和下载，读取时由本服务解析为有序分段并拼接成一个数据流
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@Slf4j
+public class SessionSegmentService {
+
+    public static final String IMU = "imu";
+    public static final String GAS = "gas";
+    public static final String AUDIO = "audio";
+
+    @Value("${raputa.session.segment-seconds:300}")
+    private long segmentSeconds;
+
+    // 录制中的会话清单，key 为会话目录绝对路径
+    private final ConcurrentHashMap<String, SessionManifest> active = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lastPersisted = new ConcurrentHashMap<>();
+
+    private static final long PERSIST_INTERVAL_MS = 5000;
+
+    /**
+     * 逻辑文件路径，如 会话目录/imu.csv
+     */
+    public static Path logicalPath(Path folder, String stream, String ext) {
+        return folder.resolve(stream + "." + ext);
+    }
+
+    /**
+     * 当前流已有的分段数
+     */
+    public int segmentCount(Path folder, String stream) {
+        SessionManifest m = peek(folder);
+        if (m == null) {
+            return 0;
+        }
+        synchronized (m) {
+            SessionManifest.Stream s = m.getStreams().get(stream);
+            return s == null ? 0 : s.getSegments().size();
+        }
+    }
+
+    /**
+     * 开启下一个分段：关闭当前分段并登记新分段，返回新分段的物理路径
+     */
+    public Path openSegment(Path folder, String stream, String ext) {
+        return openSegment(folder, stream, ext, ext);
+    }
+
+    /**
+     * 逻辑格式与物理格式不同的分段（如逻辑 imu.csv、物理 imu_000.rbin）
+     */
+    public Path openSegment(Path folder, String stream, String logicalExt, String ext) {
+        SessionManifest m = register(folder);
+        synchronized (m) {
+            SessionManifest.Stream s = m.getStreams().computeIfAbsent(stream, k -> {
+                SessionManifest.Stream created = new SessionManifest.Stream();
+                created.setLogicalName(stream + "." + logicalExt);
+                return created;
+            });
+            List<SessionManifest.Segment> segments = s.getSegments();
+            if (!segments.isEmpty()) {
+                segments.get(segments.size() - 1).setClosed(true);
+            }
+            SessionManifest.Segment seg = new SessionManifest.Segment();
+            seg.setFile(String.format("%s_%03d.%s", stream, segments.size(), ext));
+            seg.setOpenedAt(System.currentTimeMillis());
+            segments.add(seg);
+            persist(folder, m);
+            log.info("会话 {} 开启分段: {}", folder.getFileName(), seg.getFile());
+            return folder.resolve(seg.getFile());
+        }
+    }
+
+    /**
+     * 当前分段是否已写满设定时长，需要滚动
+     */
+    public boolean shouldRoll(Path folder, String stream) {
+        if (segmentSeconds <= 0) {
+            return false;
+        }
+        SessionManifest.Segment seg = current(folder, stream);
+        return seg != null && System.currentTimeMillis() - seg.getOpenedAt() >= segmentSeconds * 1000L;
+    }
+
+    /**
+     * 当前分段的物理路径（没有分段时返回 null）
+     */
+    public Path currentSegment(Path folder, String stream) {
+        SessionManifest.Segment seg = current(folder, stream);
+        return seg == null ? null : folder.resolve(seg.getFile());
+    }
+
+    /**
+     * 累计一批已写入的样本：更新当前分段与整个流的样本数和首末时间戳
+     */
+    public void recordSamples(Path folder, String stream, Long firstTs, Long lastTs, int samples) {
+        SessionManifest m = active.get(key(folder));
+        if (m == null) {
+            return;
+        }
+        synchronized (m) {
+            SessionManifest.Stream s = m.getStreams().get(stream);
+            SessionManifest.Segment seg = lastSegment(m, stream);
+            if (s == null || seg == null) {
+                return;
+            }
+            seg.setSampleCount(seg.getSampleCount() + samples);
+            if (seg.getFirstTs() == null && firstTs != null) {
+                seg.setFirstTs(firstTs);
+            }
+            if (lastTs != null && (seg.getLastTs() == null || lastTs > seg.getLastTs())) {
+                seg.setLastTs(lastTs);
+            }
+            s.setSampleCount(s.getSampleCount() + samples);
+            if (s.getFirstTs() == null && firstTs != null) {
+                s.setFirstTs(firstTs);
+            }
+            if (lastTs != null && (s.getLastTs() == null || lastTs > s.getLastTs())) {
+                s.setLastTs(lastTs);
+            }
+            if (s.getFrameCount() == null && s.getFirstTs() != null && s.getLastTs() != null) {
+                s.setDurationSeconds((s.getLastTs() - s.getFirstTs()) / 1000.0);
+            }
+            persistIfDue(folder, m);
+        }
+    }
+
+    /**
+     * 累计一帧音频：帧数、采样点数与时长
+     */
+    public void recordAudioFrame(Path folder, long timestampMs, int samplesPerChannel, int sampleRate) {
+        SessionManifest m = active.get(key(folder));
+        if (m == null) {
+            return;
+        }
+        synchronized (m) {
+            SessionManifest.Stream s = m.getStreams().get(AUDIO);
+            if (s == null) {
+                return;
+            }
+            s.setFrameCount(s.getFrameCount() == null ? 1 : s.getFrameCount() + 1);
+            if (sampleRate > 0) {
+                s.setSampleRate(sampleRate);
+            }
+            recordSamples(folder, AUDIO, timestampMs, timestampMs, samplesPerChannel);
+            if (s.getSampleRate() != null && s.getSampleRate() > 0) {
+                s.setDurationSeconds((double) s.getSampleCount() / s.getSampleRate());
+            }
+        }
+    }
+
+    /**
+     * 累计被丢弃的样本数（解析失败等）
+     */
+    public void recordDropped(Path folder, String stream, int dropped) {
+        if (dropped <= 0) {
+            return;
+        }
+        SessionManifest m = active.get(key(folder));
+        if (m == null) {
+            return;
+        }
+        synchronized (m) {
+            SessionManifest.Stream s = m.getStreams().get(stream);
+            if (s != null) {
+                s.setDroppedSamples(s.getDroppedSamples() + dropped);
+            }
+        }
+    }
+
+    /**
+     * 读取会话清单：录制中的会话取内存中的最新状态，已结束的会话读 manifest.json；没有清单返回 null
+     */
+    public SessionManifest manifestOf(Path folder) {
+        SessionManifest m = active.get(key(folder));
+        if (m != null) {
+            synchronized (m) {
+                return m.copy();
+            }
+        }
+        try {
+            return SessionManifest.read(folder);
+        } catch (IOException e) {
+            log.warn("读取会话清单失败: {}", folder, e);
+            return null;
+        }
+    }
+
+    /**
+     * 会话结束：关闭所有分段并落盘最终清单
+     */
+    public void finalizeSession(Path folder) {
+        SessionManifest m = active.remove(key(folder));
+        if (m == null) {
+            return;
+        }
+        synchronized (m) {
+            m.getStreams().values().forEach(s -> s.getSegments().forEach(seg -> seg.setClosed(true)));
+            m.setFinalized(true);
+            persist(folder, m);
+        }
+        lastPersisted.remove(key(folder));
+    }
+
+    /**
+     * 逻辑文件 → 有序的物理分段列表
+     * 物理文件本身存在（未分段的历史会话）时直接返回它
+     */
+    public List<Path> resolve(Path logical) {
+        if (Files.isRegularFile(logical)) {
+            return List.of(logical);
+        }
+        Path folder = logical.getParent();
+        if (folder == null) {
+            return List.of();
+        }
+        SessionManifest m = manifestOf(folder);
+        if (m == null) {
+            return List.of();
+        }
+        String name = logical.getFileName().toString();
+        List<Path> out = new ArrayList<>();
+        synchronized (m) {
+            for (SessionManifest.Stream s : m.getStreams().values()) {
+                if (name.equals(s.getLogicalName())) {
+                    for (SessionManifest.Segment seg : s.getSegments()) {
+                        Path p = folder.resolve(seg.getFile());
+                        if (Files.isRegularFile(p)) {
+                            out.add(p);
+                        }
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    public boolean exists(Path logical) {
+        return !resolve(logical).isEmpty() || compressedPath(logical) != null;
+    }
+
+    /**
+     * 逻辑文件的 gzip 压缩副本（会话目录/imu.csv.gz），不存在返回 null
+     */
+    public Path compressedPath(Path logical) {
+        Path gz = logical.resolveSibling(logical.getFileName() + ".gz");
+        return Files.isRegularFile(gz) ? gz : null;
+    }
+
+    /**
+     * 会话是否仍在录制
+     */
+    public boolean isActive(Path folder) {
+        return active.containsKey(key(folder));
+    }
+
+    /**
+     * 登记流的压缩文件信息（仅用于已结束的会话）
+     */
+    public void markCompressed(Path folder, String logicalName, Path gz, long bytes, long crc32) throws IOException {
+        SessionManifest m = SessionManifest.read(folder);
+        if (m == null) {
+            return;
+        }
+        for (SessionManifest.Stream s : m.getStreams().values()) {
+            if (logicalName.equals(s.getLogicalName())) {
+                s.setCompressedFile(gz.getFileName().toString());
+                s.setCompressedBytes(bytes);
+                s.setCompressedCrc32(crc32);
+            }
+        }
+        m.write(folder);
+    }
+
+    /**
+     * 将逻辑文件的全部分段作为一个连续文件写出
+     * CSV：后续分段跳过表头，二进制列式分段即时转换为 CSV；WAV：重写一个合并后的 RIFF 头，再依次输出各分段的 data 区
+     */
+    public void transferLogical(Path logical, OutputStream out) throws IOException {
+        ByteLayout layout = byteLayout(logical);
+        if (layout != null) {
+            layout.transfer(0, layout.length(), out);
+            return;
+        }
+        List<Path> segments = resolve(logical);
+        if (segments.isEmpty()) {
+            // 已压缩的会话：解压输出
+            Path gz = compressedPath(logical);
+            if (gz != null) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(gz), 64 * 1024)) {
+                    in.transferTo(out);
+                }
+            }
+            return;
+        }
+        // 含二进制列式分段：逐段即时还原为 CSV
+        WritableByteChannel target = Channels.newChannel(out);
+        for (int i = 0; i < segments.size(); i++) {
+            if (ColumnarBlockFile.isColumnar(segments.get(i))) {
+                ColumnarBlockFile.toCsv(segments.get(i), i == 0, out);
+                continue;
+            }
+            try (FileChannel ch = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                long from = i > 0 ? headerEnd(ch) : 0L;
+                transfer(ch, from, ch.size() - from, target);
+            }
+        }
+    }
+
+    /**
+     * 逻辑文件的字节布局（各分段在拼接结果中的位置），用于 Range 请求与 Content-Length；
+     * 含二进制列式分段（需即时转换）或只剩压缩文件时无法按字节寻址，返回 null
+     */
+    public ByteLayout byteLayout(Path logical) throws IOException {
+        List<Path> segments = resolve(logical);
+        if (segments.isEmpty()) {
+            return null;
+        }
+        String name = logical.getFileName().toString().toLowerCase();
+        List<Part> parts = new ArrayList<>();
+        long lastModified = 0;
+        for (Path seg : segments) {
+            lastModified = Math.max(lastModified, Files.getLastModifiedTime(seg).toMillis());
+        }
+        if (name.endsWith(".wav") && segments.size() > 1) {
+            List<WavLayout> layouts = new ArrayList<>();
+            long total = 0;
+            for (Path p : segments) {
+                try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+                    WavLayout w = WavLayout.parse(p, ch);
+                    if (w != null) {
+                        layouts.add(w);
+                        total += w.dataLength();
+                    }
+                }
+            }
+            if (!layouts.isEmpty()) {
+                parts.add(new Part(null, 0, 0, wavHeader(layouts.get(0).fmt(), total)));
+                for (WavLayout w : layouts) {
+                    parts.add(new Part(w.path(), w.dataOffset(), w.dataLength(), null));
+                }
+            }
+            return new ByteLayout(parts, lastModified);
+        }
+        boolean csv = name.endsWith(".csv");
+        for (int i = 0; i < segments.size(); i++) {
+            Path seg = segments.get(i);
+            if (csv && ColumnarBlockFile.isColumnar(seg)) {
+                return null;
+            }
+            // 录制中的分段仍在增长，这里按当前大小截取，保证与 Content-Length 一致
+            try (FileChannel ch = FileChannel.open(seg, StandardOpenOption.READ)) {
+                long from = (csv && i > 0) ? headerEnd(ch) : 0L;
+                parts.add(new Part(seg, from, ch.size() - from, null));
+            }
+        }
+        return new ByteLayout(parts, lastModified);
+    }
+
+    /**
+     * 拼接结果中的一段：物理文件的 [offset, offset+length)，或一段内存字节（合并后的 WAV 头）
+     */
+    public record Part(Path file, long offset, long length, byte[] bytes) {
+        public Part {
+            if (bytes != null) {
+                length = bytes.length;
+            }
+        }
+    }
+
+    /**
+     * 逻辑文件的字节布局
+     */
+    public record ByteLayout(List<Part> parts, long lastModified) {
+
+        public long length() {
+            return parts.stream().mapToLong(Part::length).sum();
+        }
+
+        /**
+         * 只有一个物理文件且无附加字节时返回该文件（可交给容器 sendfile），否则返回 null
+         */
+        public Part singleFile() {
+            return parts.size() == 1 && parts.get(0).file() != null ? parts.get(0) : null;
+        }
+
+        /**
+         * 输出拼接结果中 [from, from+count) 的字节
+         */
+        public void transfer(long from, long count, OutputStream out) throws IOException {
+            WritableByteChannel target = Channels.newChannel(out);
+            long skip = from;
+            long remaining = count;
+            for (Part p : parts) {
+                if (remaining <= 0) {
+                    break;
+                }
+                if (skip >= p.length()) {
+                    skip -= p.length();
+                    continue;
+                }
+                long n = Math.min(p.length() - skip, remaining);
+                if (p.bytes() != null) {
+                    ByteBuffer buf = ByteBuffer.wrap(p.bytes(), (int) skip, (int) n);
+                    while (buf.hasRemaining()) {
+                        target.write(buf);
+                    }
+                } else {
+                    try (FileChannel ch = FileChannel.open(p.file(), StandardOpenOption.READ)) {
+                        SessionSegmentService.transfer(ch, p.offset() + skip, n, target);
+                    }
+                }
+                skip = 0;
+                remaining -= n;
+            }
+        }
+    }
+
+    // ---------- 内部 ----------
+
+    /**
+     * 开启分段时登记为录制中的会话；只有这里会向 active 插入
+     */
+    private SessionManifest register(Path folder) {
+        return active.computeIfAbsent(key(folder), k -> {
+            SessionManifest m = null;
+            try {
+                // 服务重启后继续写同一会话时沿用已有清单
+                m = SessionManifest.read(folder);
+            } catch (IOException e) {
+                log.warn("读取会话清单失败，重新创建: {}", folder, e);
+            }
+            if (m == null) {
+                m = new SessionManifest();
+                m.setSegmentSeconds(segmentSeconds);
+            }
+            return m;
+        });
+    }
+
+    /**
+     * 只读查询：录制中的会话取内存清单，否则读磁盘清单但不登记（没有清单返回 null）
+     */
+    private SessionManifest peek(Path folder) {
+        SessionManifest m = active.get(key(folder));
+        if (m != null) {
+            return m;
+        }
+        try {
+            return SessionManifest.read(folder);
+        } catch (IOException e) {
+            log.warn("读取会话清单失败: {}", folder, e);
+            return null;
+        }
+    }
+
+    private SessionManifest.Segment current(Path folder, String stream) {
+        SessionManifest m = peek(folder);
+        if (m == null) {
+            return null;
+        }
+        synchronized (m) {
+            return lastSegment(m, stream);
+        }
+    }
+
+    private static SessionManifest.Segment lastSegment(SessionManifest m, String stream) {
+        SessionManifest.Stream s = m.getStreams().get(stream);
+        if (s == null || s.getSegments().isEmpty()) {
+            return null;
+        }
+        return s.getSegments().get(s.getSegments().size() - 1);
+    }
+
+    // 录制中每隔几秒落盘一次统计，避免每批数据都重写文件
+    private void persistIfDue(Path folder, SessionManifest m) {
+        long now = System.currentTimeMillis();
+        Long last = lastPersisted.get(key(folder));
+        if (last == null || now - last >= PERSIST_INTERVAL_MS) {
+            persist(folder, m);
+        }
+    }
+
+    private void persist(Path folder, SessionManifest m) {
+        lastPersisted.put(key(folder), System.currentTimeMillis());
+        try {
+            m.write(folder);
+        } catch (IOException e) {
+            log.error("写入会话清单失败: {}", folder, e);
+        }
+    }
+
+    private static String key(Path folder) {
+        return folder.toAbsolutePath().normalize().toString();
+    }
+
+    private static long headerEnd(FileChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        ch.read(buf, 0);
+        for (int i = 0; i < buf.position(); i++) {
+            if (buf.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0L;
+    }
+
+    private static void transfer(FileChannel ch, long position, long count, WritableByteChannel target) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long n = ch.transferTo(position, end - position, target);
+            if (n <= 0) {
+                break;
+            }
+            position += n;
+        }
+    }
+
+    private static byte[] wavHeader(byte[] fmt, long dataLength) {
+        ByteBuffer header = ByteBuffer.allocate(12 + 8 + fmt.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII))
+                .putInt((int) (4 + 8 + fmt.length + 8 + dataLength))
+                .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+                .put("fmt ".getBytes(StandardCharsets.US_ASCII))
+                .putInt(fmt.length)
+                .put(fmt)
+                .put("data".getBytes(StandardCharsets.US_ASCII))
+                .putInt((int) dataLength);
+        return header.array();
+    }
+
+    /**
+     * WAV 分段的 fmt 块与 data 区位置（FFmpeg 写出的头部可能带 LIST 等附加块，需按块遍历）
+     */
+    private record WavLayout(Path path, byte[] fmt, long dataOffset, long dataLength) {
+
+        static WavLayout parse(Path path, FileChannel ch) throws IOException {
+            long size = ch.size();
+            ByteBuffer head = ByteBuffer.allocate(12);
+            if (ch.read(head, 0) < 12 || !"RIFF".equals(ascii(head, 0)) || !"WAVE".equals(ascii(head, 8))) {
+                return null;
+            }
+            byte[] fmt = null;
+            long pos = 12;
+            ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            while (pos + 8 <= size) {
+                chunk.clear();
+                ch.read(chunk, pos);
+                String id = ascii(chunk, 0);
+                long len = Integer.toUnsignedLong(chunk.getInt(4));
+                if ("fmt ".equals(id)) {
+                    ByteBuffer f = ByteBuffer.allocate((int) len);
+                    ch.read(f, pos + 8);
+                    fmt = f.array();
+                } else if ("data".equals(id)) {
+                    long offset = pos + 8;
+                    // 录制中的分段尚未回填 data 长度，按文件实际大小计算
+                    long length = (len == 0 || offset + len > size) ? size - offset : len;
+                    return fmt == null ? null : new WavLayout(path, fmt, offset, length);
+                }
+                pos += 8 + len + (len & 1);
+            }
+            return null;
+        }
+
+        private static String ascii(ByteBuffer buf, int index) {
+            byte[] b = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                b[i] = buf.get(index + i);
+            }
+            return new String(b, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package cn.scut.raputa.service;
 
 import cn.scut.raputa.dto.CsvMappingRequestDTO;
+import cn.scut.raputa.vo.CsvInspectVO;
 import cn.scut.raputa.vo.TempFileUploadVO;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface TempFileService {
     TempFileUploadVO upload(MultipartFile file);
 
+    // 服务端探测 CSV：分隔符、表头、列类型、采样率估算与前 previewRows 行预览
+    CsvInspectVO inspect(String tempId, int previewRows);
+
     void setMapping(String tempId, CsvMappingRequestDTO req);
 
     void delete(String tempId);
@@ -4,7 +4,9 @@ import cn.scut.raputa.dto.CsvMappingRequestDTO;
 import cn.scut.raputa.entity.TempFile;
 import cn.scut.raputa.exception.BizException;
 import cn.scut.raputa.repository.TempFileRepository;
+import cn.scut.raputa.utils.CsvSniffer;
 import cn.scut.raputa.utils.Ids;
+import cn.scut.raputa.vo.CsvInspectVO;
 import cn.scut.raputa.vo.TempFileUploadVO;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +16,11 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.nio.file.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +31,18 @@ public class TempFileServiceImpl implements TempFileService {
     @Value("${raputa.storage.tmp-dir:${java.io.tmpdir}/raputa/tmp}")
     private String tmpRoot;
 
+    // CSV 探测最多读取的字节数（探测耗时与文件总大小无关）
+    @Value("${raputa.temp.inspect.scan-bytes:1048576}")
+    private int inspectScanBytes;
+
+    private static final int MAX_PREVIEW_ROWS = 200;
+
+    private static final Pattern AXIS_X = Pattern.compile("(?i)^(imu|acc|accel|a)?[_ .-]?x$");
+    private static final Pattern AXIS_Y = Pattern.compile("(?i)^(imu|acc|accel|a)?[_ .-]?y$");
+    private static final Pattern AXIS_Z = Pattern.compile("(?i)^(imu|acc|accel|a)?[_ .-]?z$");
+    private static final Pattern GAS = Pattern.compile("(?i).*(gas|flow|气流|气体).*");
+    private static final Pattern AUDIO = Pattern.compile("(?i).*(audio|sound|mic|声音|音频).*");
+
     @Override
     public TempFileUploadVO upload(MultipartFile file) {
         if (file == null || file.isEmpty()) {
@@ -79,11 +98,64 @@ public class TempFileServiceImpl implements TempFileService {
         return new TempFileUploadVO(id);
     }
 
+    @Override
+    public CsvInspectVO inspect(String tempId, int previewRows) {
+        TempFile t = repo.findById(tempId)
+                .orElseThrow(() -> new BizException(404, "临时文件不存在"));
+        CsvSniffer.Result r = sniff(t, Math.min(Math.max(previewRows, 0), MAX_PREVIEW_ROWS));
+
+        List<CsvInspectVO.ColumnInfo> columns = r.columns().stream()
+                .map(c -> new CsvInspectVO.ColumnInfo(c.name(), c.type().name().toLowerCase(), c.blanks()))
+                .toList();
+        List<String> numeric = r.columns().stream()
+                .filter(c -> c.type() == CsvSniffer.ColumnType.INTEGER || c.type() == CsvSniffer.ColumnType.DECIMAL)
+                .map(CsvSniffer.Column::name)
+                .toList();
+        CsvMappingRequestDTO suggested = CsvMappingRequestDTO.builder()
+                .sampleRate(r.sampleRate() == null ? null : (int) Math.max(1, Math.round(r.sampleRate())))
+                .imuAxisMap(new CsvMappingRequestDTO.ImuAxisMap(
+                        firstMatch(numeric, AXIS_X), firstMatch(numeric, AXIS_Y), firstMatch(numeric, AXIS_Z)))
+                .gasCol(firstMatch(numeric, GAS))
+                .audioCol(firstMatch(numeric, AUDIO))
+                .build();
+
+        return CsvInspectVO.builder()
+                .tempId(tempId)
+                .delimiter(String.valueOf(r.delimiter()))
+                .charset(r.charset())
+                .header(r.header())
+                .columns(columns)
+                .timestampColumn(r.timestampColumn() < 0 ? null : r.columns().get(r.timestampColumn()).name())
+                .sampleRate(r.sampleRate())
+                .scannedRows(r.scannedRows())
+                .estimatedRows(r.estimatedRows())
+                .complete(r.complete())
+                .preview(r.preview())
+                .suggestedMapping(suggested)
+                .build();
+    }
+
     @Override
     public void setMapping(String tempId, CsvMappingRequestDTO req) {
         TempFile t = repo.findById(tempId)
                 .orElseThrow(() -> new BizException(404, "临时文件不存在"));
 
+        // 映射的列必须真实存在于文件中
+        Set<String> names = new HashSet<>(sniff(t, 0).columns().stream().map(CsvSniffer.Column::name).toList());
+        List<String> requested = new ArrayList<>();
+        if (req.getImuAxisMap() != null) {
+            requested.add(req.getImuAxisMap().getX());
+            requested.add(req.getImuAxisMap().getY());
+            requested.add(req.getImuAxisMap().getZ());
+        }
+        requested.add(req.getGasCol());
+        requested.add(req.getAudioCol());
+        for (String col : requested) {
+            if (col != null && !col.isBlank() && !names.contains(col)) {
+                throw new BizException(400, "列不存在: " + col);
+            }
+        }
+
         t.setSampleRate(req.getSampleRate());
         if (req.getImuAxisMap() != null) {
             t.setImuX(emptyToNull(req.getImuAxisMap().getX()));
@@ -116,6 +188,20 @@ public class TempFileServiceImpl implements TempFileService {
 
     // ---------- helpers ----------
 
+    private CsvSniffer.Result sniff(TempFile t, int previewRows) {
+        try {
+            return CsvSniffer.inspect(Paths.get(t.getLocation()), previewRows, inspectScanBytes);
+        } catch (NoSuchFileException e) {
+            throw new BizException(404, "临时文件已被清理");
+        } catch (IOException e) {
+            throw new BizException(500, "读取临时文件失败: " + e.getMessage());
+        }
+    }
+
+    private static String firstMatch(List<String> names, Pattern p) {
+        return names.stream().filter(n -> p.matcher(n).matches()).findFirst().orElse(null);
+    }
+
     private static String sanitize(String name) {
         if (name == null)
             return "unknown.csv";
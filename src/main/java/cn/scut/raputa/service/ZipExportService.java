@@ -0,0 +1,333 @@
+package cn.scut.raputa.service;
+
+import cn.scut.raputa.entity.PatientFile;
+import cn.scut.raputa.exception.BizException;
+import cn.scut.raputa.utils.Ids;
+import cn.scut.raputa.utils.ZipStreamWriter;
+import cn.scut.raputa.vo.ZipExportVO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * 患者文件 ZIP 导出
+ * 条目在有界线程池中并行预处理（DEFLATE 到临时文件，或为 STORED 条目预先计算 CRC），
+ * 输出线程按原顺序依次写出；同时预处理的条目数有上限，临时文件占用随之有界。
+ * 已压缩的类型（wav、pdf 等）以 STORED 方式写入，不再重复压缩；后台压缩过的会话文件解压后按原文件名写入
+ *
+ * @author RAPUTA Team
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ZipExportService {
+
+    private static final Set<String> STORED_TYPES = Set.of("wav", "pdf", "gz", "zip", "png", "jpg", "jpeg", "mp3", "mp4");
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH-mm-ss");
+
+    private final SessionSegmentService segmentService;
+
+    // 所有导出共享的压缩线程数
+    @Value("${raputa.export.zip.threads:4}")
+    private int threads;
+
+    // 单个导出最多同时预处理的条目数
+    @Value("${raputa.export.zip.prefetch:8}")
+    private int prefetch;
+
+    @Value("${raputa.export.zip.level:6}")
+    private int level;
+
+    @Value("${raputa.storage.tmp-dir:${java.io.tmpdir}/raputa/tmp}")
+    private String tmpDir;
+
+    private ExecutorService pool;
+
+    private final ConcurrentHashMap<String, ZipExportVO> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, List<Entry>> plans = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger seq = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "zip-export-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // 上次运行遗留的临时文件（进程退出时未写完的导出）
+        Path workDir = Paths.get(tmpDir, "zip-export");
+        if (Files.isDirectory(workDir)) {
+            try (var stale = Files.list(workDir)) {
+                stale.forEach(f -> {
+                    try {
+                        Files.deleteIfExists(f);
+                    } catch (IOException ignored) {
+                        // 被占用的文件留到下次启动
+                    }
+                });
+            } catch (IOException e) {
+                log.warn("清理 ZIP 导出临时目录失败: {}", workDir, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 登记一次导出：确定条目顺序、名称与压缩方式，返回任务快照（exportId 用于查询进度）
+     * 数据在随后调用 write() 时才读取
+     */
+    public ZipExportVO submit(List<PatientFile> files, String zipName) {
+        List<Entry> entries = new ArrayList<>();
+        for (PatientFile pf : files) {
+            Path real = Paths.get(pf.getFilePath()).normalize();
+            if (Files.isDirectory(real) || !segmentService.exists(real)) {
+                continue;
+            }
+            // ZIP 内的目录结构：patientId/yyyy-MM-dd/HH-mm-ss/文件名
+            String date = pf.getSavedAt().toLocalDate().format(DATE);
+            String time = pf.getSavedAt().toLocalTime().format(TIME);
+            String baseName = real.getFileName().toString(); // imu.csv / gas.csv / audio.wav
+            String entryName = pf.getPatientId() + "/" + date + "/" + time + "/" + baseName;
+
+            // 已压缩的会话文件同样以原文件名写出（读取时解压），ZIP 内容与压缩前一致
+            entries.add(new Entry(entryName, real, pf.getSavedAt(), STORED_TYPES.contains(extension(baseName))));
+        }
+
+        pruneFinished();
+        ZipExportVO job = ZipExportVO.builder()
+                .exportId(Ids.randomId(16))
+                .zipName(zipName)
+                .status("PENDING")
+                .totalEntries(entries.size())
+                .submittedAt(LocalDateTime.now())
+                .build();
+        jobs.put(job.getExportId(), job);
+        plans.put(job.getExportId(), entries);
+        return snapshot(job);
+    }
+
+    /**
+     * 查询导出进度
+     */
+    public ZipExportVO get(String exportId) {
+        ZipExportVO job = jobs.get(exportId);
+        if (job == null) {
+            throw new BizException(404, "导出任务不存在");
+        }
+        return snapshot(job);
+    }
+
+    /**
+     * 写出 ZIP（在 StreamingResponseBody 线程内调用）
+     */
+    public void write(String exportId, OutputStream out) throws IOException {
+        List<Entry> entries = plans.remove(exportId);
+        ZipExportVO job = jobs.get(exportId);
+        if (entries == null || job == null) {
+            throw new IOException("导出任务不存在或已执行: " + exportId);
+        }
+        synchronized (job) {
+            job.setStatus("RUNNING");
+        }
+        Path workDir = Files.createDirectories(Paths.get(tmpDir, "zip-export"));
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        ArrayDeque<Future<Prepared>> window = new ArrayDeque<>();
+        ZipStreamWriter zip = new ZipStreamWriter(new BufferedOutputStream(out, 64 * 1024));
+        int next = 0;
+        try {
+            while (next < entries.size() && window.size() < Math.max(1, prefetch)) {
+                window.add(submitPrepare(entries.get(next++), workDir, aborted));
+            }
+            while (!window.isEmpty()) {
+                Future<Prepared> head = window.poll();
+                if (next < entries.size()) {
+                    window.add(submitPrepare(entries.get(next++), workDir, aborted));
+                }
+                Prepared p;
+                try {
+                    p = head.get();
+                } catch (ExecutionException e) {
+                    log.warn("ZIP 条目预处理失败，跳过: {}", e.getCause().getMessage());
+                    synchronized (job) {
+                        job.setSkippedEntries(job.getSkippedEntries() + 1);
+                    }
+                    continue;
+                }
+                try {
+                    zip.putEntry(p.entry().name(), p.method(), p.crc(), p.size(), p.compressedSize(),
+                            p.entry().time(), p::writeTo);
+                } finally {
+                    p.cleanup();
+                }
+                synchronized (job) {
+                    job.setWrittenEntries(job.getWrittenEntries() + 1);
+                    job.setBytesWritten(zip.getWritten());
+                }
+            }
+            zip.finish();
+            synchronized (job) {
+                job.setBytesWritten(zip.getWritten());
+                job.setStatus("DONE");
+                job.setFinishedAt(LocalDateTime.now());
+            }
+            log.info("ZIP 打包完成: exportId={}, 条目 {}/{}, {} bytes", exportId,
+                    job.getWrittenEntries(), job.getTotalEntries(), zip.getWritten());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, "任务被中断");
+            throw new IOException("ZIP 导出被中断", e);
+        } catch (IOException | RuntimeException e) {
+            // 多数情况是客户端中途断开
+            fail(job, e.getMessage());
+            throw e;
+        } finally {
+            aborted.set(true);
+            for (Future<Prepared> f : window) {
+                if (!f.cancel(false) && f.isDone()) {
+                    try {
+                        f.get().cleanup();
+                    } catch (Exception ignored) {
+                        // 预处理失败的条目没有临时文件
+                    }
+                }
+            }
+        }
+    }
+
+    private Future<Prepared> submitPrepare(Entry entry, Path workDir, AtomicBoolean aborted) {
+        return pool.submit(() -> {
+            Prepared p = prepare(entry, workDir);
+            // 导出已中止：结果不会再被取走，临时文件就地清理
+            if (aborted.get()) {
+                p.cleanup();
+            }
+            return p;
+        });
+    }
+
+    private Prepared prepare(Entry e, Path workDir) throws IOException {
+        if (e.stored()) {
+            // 按字节布局快照计算 CRC，写出时输出同一区间，录制中的文件继续增长也不影响一致性
+            SessionSegmentService.ByteLayout layout = segmentService.byteLayout(e.logical());
+            if (layout != null) {
+                long size = layout.length();
+                CRC32 crc = new CRC32();
+                layout.transfer(0, size, new CheckedOutputStream(OutputStream.nullOutputStream(), crc));
+                return new Prepared(e, ZipEntry.STORED, crc.getValue(), size, size, null, layout);
+            }
+        }
+
+        Path tmp = Files.createTempFile(workDir, "entry-", ".deflate");
+        Deflater deflater = new Deflater(level, true);
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024);
+                 DeflaterOutputStream deflate = new DeflaterOutputStream(file, deflater, 64 * 1024);
+                 OutputStream checked = new CheckedOutputStream(deflate, crc)) {
+                segmentService.transferLogical(e.logical(), checked);
+            }
+            return new Prepared(e, ZipEntry.DEFLATED, crc.getValue(), deflater.getBytesRead(), Files.size(tmp), tmp, null);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase();
+    }
+
+    private void fail(ZipExportVO job, String error) {
+        synchronized (job) {
+            job.setStatus("FAILED");
+            job.setError(error);
+            job.setFinishedAt(LocalDateTime.now());
+        }
+    }
+
+    private ZipExportVO snapshot(ZipExportVO job) {
+        synchronized (job) {
+            return job.toBuilder().build();
+        }
+    }
+
+    // 已结束超过 1 小时的任务不再保留；登记后长时间未开始输出的计划一并清理
+    private void pruneFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(1);
+        List<String> expired = new ArrayList<>();
+        jobs.forEach((id, j) -> {
+            LocalDateTime at = j.getFinishedAt() != null ? j.getFinishedAt() : j.getSubmittedAt();
+            if (at.isBefore(cutoff) && (j.getFinishedAt() != null || plans.containsKey(id))) {
+                expired.add(id);
+            }
+        });
+        expired.forEach(id -> {
+            jobs.remove(id);
+            plans.remove(id);
+        });
+    }
+
+    private record Entry(String name, Path logical, LocalDateTime time, boolean stored) {}
+
+    /**
+     * 预处理结果：DEFLATED 条目的数据在临时文件中；STORED 条目写出时再读源文件
+     */
+    private record Prepared(Entry entry, int method, long crc, long size, long compressedSize,
+                            Path tmp, SessionSegmentService.ByteLayout layout) {
+
+        void writeTo(OutputStream out) throws IOException {
+            if (tmp != null) {
+                Files.copy(tmp, out);
+            } else {
+                layout.transfer(0, size, out);
+            }
+        }
+
+        void cleanup() {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // 删除失败的临时文件在下次启动时清理
+                }
+            }
+        }
+    }
+}
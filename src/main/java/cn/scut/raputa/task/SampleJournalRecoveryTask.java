@@ -0,0 +1,19 @@
+package cn.scut.raputa.task;
+
+import cn.scut.raputa.service.CsvDataService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class SampleJournalRecoveryTask {
+
+    private final CsvDataService csvDataService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        csvDataService.recoverJournals();
+    }
+}
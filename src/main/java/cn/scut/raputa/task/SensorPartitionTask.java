@@ -0,0 +1,70 @@
+package cn.scut.raputa.task;
+
+import cn.scut.raputa.service.SensorPartitionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分区维护任务
+ * 首次转换为一次性迁移：启动后在后台线程中对尚未分区的表分批回填 ts_micros 并执行重建整表的 ALTER，
+ * 不阻塞启动；全部完成后在 raputa_migration 登记，之后启动直接跳过。每日任务只维护已分区的表
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SensorPartitionTask {
+
+    private static final String MIGRATION = "sensor_partition_convert";
+
+    private final SensorPartitionService partitionService;
+    private final SensorTsBackfill tsBackfill;
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!partitionService.isEnabled()) {
+            return;
+        }
+        Thread t = new Thread(() -> {
+            migrate();
+            partitionService.maintain();
+        }, "sensor-partition-migrate");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Scheduled(cron = "0 10 3 * * ?")
+    public void daily() {
+        partitionService.maintain();
+    }
+
+    private void migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS raputa_migration (" +
+                "name VARCHAR(64) PRIMARY KEY, done_at DATETIME NOT NULL)");
+        Integer done = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM raputa_migration WHERE name = ?", Integer.class, MIGRATION);
+        if (done != null && done > 0) {
+            return;
+        }
+        for (String table : SensorPartitionService.TABLES) {
+            try {
+                if (partitionService.isPartitioned(table)) {
+                    continue;
+                }
+                // NOT NULL 之前先补齐 ts_micros，按 id 区间分批提交，不形成一个大事务
+                tsBackfill.backfill(table);
+                partitionService.convert(table);
+            } catch (Exception e) {
+                // 不登记，下次启动重试未完成的表
+                log.error("分区转换失败: table={}", table, e);
+                return;
+            }
+        }
+        jdbcTemplate.update("INSERT INTO raputa_migration (name, done_at) VALUES (?, NOW())", MIGRATION);
+    }
+}
@@ -0,0 +1,76 @@
+package cn.scut.raputa.task;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一次性迁移：回填 ts_micros 派生列（新增列之前写入的历史数据为 NULL，区间查询会漏掉）
+ * ts_micros IS NULL 用不上 (device_id, ts_micros) 索引，因此按主键 id 区间分批 UPDATE，每批自动提交，
+ * 不持有长事务；新写入的行在写入时就计算 ts_micros，所以完成一次后在 raputa_migration 登记，之后启动直接跳过
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SensorTsBackfill implements ApplicationRunner {
+
+    private static final String MIGRATION = "sensor_ts_micros_backfill";
+
+    private static final Map<String, String> EXPRESSIONS = Map.of(
+            "imu_data", "timestamp * 1000000 + timestampus",
+            "gas_data", "timestamp * 1000000 + timestampus",
+            "audio_data", "timestamp * 1000");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // 每批 UPDATE 覆盖的 id 区间长度
+    @Value("${raputa.data.backfill.batch-size:10000}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS raputa_migration (" +
+                "name VARCHAR(64) PRIMARY KEY, done_at DATETIME NOT NULL)");
+        Integer done = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM raputa_migration WHERE name = ?", Integer.class, MIGRATION);
+        if (done != null && done > 0) {
+            return;
+        }
+        long total = 0;
+        for (String table : List.of("imu_data", "gas_data", "audio_data")) {
+            total += backfill(table);
+        }
+        jdbcTemplate.update("INSERT INTO raputa_migration (name, done_at) VALUES (?, NOW())", MIGRATION);
+        log.info("ts_micros 回填完成，共 {} 行", total);
+    }
+
+    /**
+     * 按 id 区间分批回填一张表；只处理调用时已存在的 id 区间，MIN/MAX(id) 走主键
+     */
+    public long backfill(String table) {
+        String expression = EXPRESSIONS.get(table);
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(id) AS lo, MAX(id) AS hi FROM " + table);
+        if (range.get("lo") == null) {
+            return 0;
+        }
+        long lo = ((Number) range.get("lo")).longValue();
+        long hi = ((Number) range.get("hi")).longValue();
+        long step = Math.max(batchSize, 1);
+        long updated = 0;
+        for (long from = lo; from <= hi; from += step) {
+            updated += jdbcTemplate.update("UPDATE " + table + " SET ts_micros = " + expression +
+                    " WHERE id BETWEEN ? AND ? AND ts_micros IS NULL", from, Math.min(from + step - 1, hi));
+        }
+        if (updated > 0) {
+            log.info("回填 {}.ts_micros: {} 行", table, updated);
+        }
+        return updated;
+    }
+}
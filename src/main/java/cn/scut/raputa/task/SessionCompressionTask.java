@@ -0,0 +1,18 @@
+package cn.scut.raputa.task;
+
+import cn.scut.raputa.service.SessionCompressionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class SessionCompressionTask {
+
+    private final SessionCompressionService compressionService;
+
+    @Scheduled(cron = "0 0/10 * * * ?")
+    public void compress() {
+        compressionService.compressPending();
+    }
+}
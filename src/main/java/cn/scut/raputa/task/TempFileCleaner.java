@@ -2,40 +2,135 @@ package cn.scut.raputa.task;
 
 import cn.scut.raputa.entity.TempFile;
 import cn.scut.raputa.repository.TempFileRepository;
+import cn.scut.raputa.service.ChunkedUploadService;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * 过期临时文件清理
+ * 只按 expire_at 索引分页取已过期的行，文件在有界线程池中并行删除，数据库行按页一条语句批量删除；
+ * 每轮耗时只与过期条数有关，与 temp_file 总行数无关
+ */
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class TempFileCleaner {
 
     private final TempFileRepository repo;
+    private final ChunkedUploadService chunkedUploadService;
+
+    // 每页处理的过期行数
+    @Value("${raputa.temp.clean.page-size:500}")
+    private int pageSize;
+
+    // 并行删除文件的线程数
+    @Value("${raputa.temp.clean.threads:4}")
+    private int threads;
+
+    private ExecutorService pool;
+
+    // 最近一轮的统计
+    private volatile SweepReport lastReport;
+
+    public record SweepReport(LocalDateTime finishedAt, int rows, int files, int failures, long bytes, long durationMs) {}
 
     @Scheduled(cron = "0 0/30 * * * ?")
     public void clean() {
-        List<TempFile> all = repo.findAll();
+        long started = System.currentTimeMillis();
         LocalDateTime now = LocalDateTime.now(TempFile.ZONE_CN);
-        for (TempFile t : all) {
-            if (t.getExpireAt() != null && t.getExpireAt().isBefore(now)) {
+        int rows = 0, files = 0, failures = 0;
+        long bytes = 0;
+
+        while (true) {
+            // 已处理的行会被删掉，所以总是取第一页
+            List<TempFile> page = repo.findByExpireAtBeforeOrderByExpireAtAsc(now, PageRequest.of(0, Math.max(pageSize, 1)));
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Future<Long>> results = new ArrayList<>(page.size());
+            for (TempFile t : page) {
+                results.add(pool().submit(() -> deleteFile(t.getLocation())));
+            }
+            for (Future<Long> f : results) {
                 try {
-                    Path path = Paths.get(t.getLocation());
-                    Path dir = path.getParent();
-                    Files.deleteIfExists(path);
-                    if (dir != null && Files.isDirectory(dir)) {
-                        try (var ds = Files.newDirectoryStream(dir)) {
-                            if (!ds.iterator().hasNext())
-                                Files.deleteIfExists(dir);
-                        }
+                    long n = f.get();
+                    if (n >= 0) {
+                        files++;
+                        bytes += n;
                     }
-                } catch (Exception ignored) {
+                } catch (Exception e) {
+                    failures++;
                 }
-                repo.deleteById(t.getId());
+            }
+            // 与原逻辑一致：文件删除失败也删除记录，避免每轮重复处理
+            int deleted = repo.deleteByIdIn(page.stream().map(TempFile::getId).toList());
+            rows += deleted;
+            if (deleted == 0 || page.size() < pageSize) {
+                break;
+            }
+        }
+
+        // 闲置过久的未完成分块上传（尚无 temp_file 记录）
+        int stale = chunkedUploadService.purgeStale();
+        if (stale > 0) {
+            log.info("清理未完成的分块上传 {} 个", stale);
+        }
+
+        SweepReport report = new SweepReport(now, rows, files, failures, bytes, System.currentTimeMillis() - started);
+        lastReport = report;
+        if (rows > 0 || failures > 0) {
+            log.info("临时文件清理: 记录 {} 条, 文件 {} 个, 失败 {} 个, {} bytes, 耗时 {} ms",
+                    rows, files, failures, bytes, report.durationMs());
+        }
+    }
+
+    public SweepReport getLastReport() {
+        return lastReport;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private synchronized ExecutorService pool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(Math.max(threads, 1), r -> {
+                Thread t = new Thread(r, "temp-file-clean");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return pool;
+    }
+
+    // 删除文件及其空目录（每个临时文件独占一个目录），返回释放的字节数；文件已不存在时返回 -1
+    private static long deleteFile(String location) throws Exception {
+        Path path = Paths.get(location);
+        Path dir = path.getParent();
+        long size = Files.isRegularFile(path) ? Files.size(path) : -1;
+        Files.deleteIfExists(path);
+        if (dir != null && Files.isDirectory(dir)) {
+            try (var ds = Files.newDirectoryStream(dir)) {
+                if (!ds.iterator().hasNext())
+                    Files.deleteIfExists(dir);
             }
         }
+        return size;
     }
 }
@@ -0,0 +1,511 @@
+package cn.scut.raputa.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 二进制列式会话文件（*.rbin），CSV 的紧凑替代格式
+ *
+ * 文件头：magic "RPTB" | version u8 | 通道数 u8 | 压缩方式 u8 | 保留 u8 | 表头长度 u16 | 表头（UTF-8，逗号分隔）
+ * 数据块：行数 i32 | minTs i64 | maxTs i64 | 每通道 min i32 / max i32 | 原始长度 i32 | 载荷长度 i32 | 载荷
+ * 载荷：时间戳列（首值相对 minTs，其后逐行差分）+ 各通道列（逐行差分），均为 zigzag varint；可选 Deflate 压缩
+ *
+ * 块头带时间与数值范围，区间读取时不解码即可跳过整块；读取端可即时还原为与 CSVWriter 输出一致的 CSV 行
+ *
+ * @author RAPUTA Team
+ */
+public final class ColumnarBlockFile {
+
+    public static final String EXT = "rbin";
+
+    public static final byte COMPRESSION_NONE = 0;
+    public static final byte COMPRESSION_DEFLATE = 1;
+
+    private static final int MAGIC = 0x52505442; // "RPTB"
+    private static final byte VERSION = 1;
+    private static final int MAX_BLOCK_ROWS = 4096;
+
+    private ColumnarBlockFile() {}
+
+    public static boolean isColumnar(Path file) {
+        return file.getFileName().toString().endsWith("." + EXT);
+    }
+
+    // ========== 写入 ==========
+
+    public static final class Writer implements SessionStreamWriter {
+
+        private final FileChannel ch;
+        private final int channels;
+        private byte compression;
+        private final Deflater deflater;
+
+        public Writer(Path file, int channels, boolean deflate) throws IOException {
+            this.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+            this.channels = channels;
+            this.compression = deflate ? COMPRESSION_DEFLATE : COMPRESSION_NONE;
+            if (ch.size() > 0) {
+                // 续写已有文件：沿用其文件头中的压缩方式，并截掉异常中断留下的不完整尾块，
+                // 否则新块接在残缺数据之后，读取端停在残缺处，之后写入的数据全部读不到
+                Header h = ch.size() < 10 ? null : readHeader(ch);
+                if (h == null || h.length() > ch.size()) {
+                    ch.truncate(0);
+                } else {
+                    this.compression = h.compression();
+                    ch.truncate(completeLength(ch, h));
+                }
+            }
+            this.deflater = compression == COMPRESSION_DEFLATE ? new Deflater(Deflater.BEST_SPEED) : null;
+            ch.position(ch.size());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            try {
+                return ch.size() == 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void writeHeader(String[] header) throws IOException {
+            byte[] names = String.join(",", header).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buf = ByteBuffer.allocate(10 + names.length);
+            buf.putInt(MAGIC).put(VERSION).put((byte) channels).put(compression).put((byte) 0)
+                    .putShort((short) names.length).put(names);
+            writeFully(buf.flip());
+        }
+
+        /**
+         * 首列为毫秒时间戳，其余列为整数通道值；无法解析的行被跳过，不计入返回的行数与首末时间戳
+         */
+        @Override
+        public Written writeRows(List<String[]> rows) throws IOException {
+            long[] ts = new long[Math.min(rows.size(), MAX_BLOCK_ROWS)];
+            int[][] values = new int[channels][ts.length];
+            int n = 0;
+            int written = 0;
+            Long firstTs = null;
+            Long lastTs = null;
+            for (String[] row : rows) {
+                if (row.length < channels + 1) {
+                    continue;
+                }
+                try {
+                    long t = Long.parseLong(row[0].trim());
+                    for (int c = 0; c < channels; c++) {
+                        values[c][n] = Integer.parseInt(row[c + 1].trim());
+                    }
+                    ts[n++] = t;
+                    if (firstTs == null) {
+                        firstTs = t;
+                    }
+                    lastTs = t;
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (n == ts.length) {
+                    writeBlock(ts, values, n);
+                    written += n;
+                    n = 0;
+                }
+            }
+            if (n > 0) {
+                writeBlock(ts, values, n);
+                written += n;
+            }
+            ch.force(false);
+            return new Written(written, firstTs, lastTs);
+        }
+
+        private void writeBlock(long[] ts, int[][] values, int n) throws IOException {
+            long minTs = ts[0], maxTs = ts[0];
+            for (int i = 1; i < n; i++) {
+                minTs = Math.min(minTs, ts[i]);
+                maxTs = Math.max(maxTs, ts[i]);
+            }
+
+            VarintBuffer raw = new VarintBuffer(n * (channels + 1) * 2 + 16);
+            long prevTs = minTs;
+            for (int i = 0; i < n; i++) {
+                raw.putZigZag(ts[i] - prevTs);
+                prevTs = ts[i];
+            }
+            int[] min = new int[channels];
+            int[] max = new int[channels];
+            for (int c = 0; c < channels; c++) {
+                int[] col = values[c];
+                int prev = 0;
+                min[c] = col[0];
+                max[c] = col[0];
+                for (int i = 0; i < n; i++) {
+                    raw.putZigZag((long) col[i] - prev);
+                    prev = col[i];
+                    min[c] = Math.min(min[c], col[i]);
+                    max[c] = Math.max(max[c], col[i]);
+                }
+            }
+
+            byte[] payload = raw.bytes();
+            int payloadLen = raw.length();
+            if (deflater != null) {
+                deflater.reset();
+                deflater.setInput(payload, 0, payloadLen);
+                deflater.finish();
+                byte[] out = new byte[payloadLen + 64];
+                int len = 0;
+                while (!deflater.finished()) {
+                    if (len == out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    len += deflater.deflate(out, len, out.length - len);
+                }
+                payload = out;
+                payloadLen = len;
+            }
+
+            ByteBuffer head = ByteBuffer.allocate(blockHeaderBytes(channels));
+            head.putInt(n).putLong(minTs).putLong(maxTs);
+            for (int c = 0; c < channels; c++) {
+                head.putInt(min[c]).putInt(max[c]);
+            }
+            head.putInt(raw.length()).putInt(payloadLen);
+            writeFully(head.flip());
+            writeFully(ByteBuffer.wrap(payload, 0, payloadLen));
+        }
+
+        private void writeFully(ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (deflater != null) {
+                deflater.end();
+            }
+            ch.close();
+        }
+    }
+
+    // ========== 读取 ==========
+
+    /**
+     * 与 CSVWriter 输出一致的表头行（不含换行）
+     */
+    public static String headerLine(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return quote(readHeader(ch).names());
+        }
+    }
+
+    /**
+     * 读取 [startTs, endTs] 内的数据行并转换为 CSV 行；块时间范围不相交的块直接跳过，不解码
+     */
+    public static void scan(Path file, long startTs, long endTs, Consumer<String> sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header h = readHeader(ch);
+            long pos = h.length();
+            BlockHeader b;
+            while ((b = readBlockHeader(ch, pos, h.channels())) != null) {
+                long payloadPos = pos + blockHeaderBytes(h.channels());
+                pos = payloadPos + b.payloadLen();
+                if (b.maxTs() < startTs) {
+                    continue;
+                }
+                if (b.minTs() > endTs) {
+                    break;
+                }
+                decode(ch, payloadPos, b, h, (ts, vals) -> {
+                    if (ts >= startTs && ts <= endTs) {
+                        sink.accept(csvLine(ts, vals));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * 整个文件转换为 CSV 写出
+     */
+    public static void toCsv(Path file, boolean withHeader, OutputStream out) throws IOException {
+        if (withHeader) {
+            out.write((headerLine(file) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        IOException[] error = new IOException[1];
+        scan(file, Long.MIN_VALUE, Long.MAX_VALUE, line -> {
+            if (error[0] != null) {
+                return;
+            }
+            try {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                error[0] = e;
+            }
+        });
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    /**
+     * 最后一个数据块的 maxTs，只读块头
+     */
+    public static Long lastTimestamp(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header h = readHeader(ch);
+            long pos = h.length();
+            Long last = null;
+            BlockHeader b;
+            while ((b = readBlockHeader(ch, pos, h.channels())) != null) {
+                last = b.maxTs();
+                pos += blockHeaderBytes(h.channels()) + b.payloadLen();
+            }
+            return last;
+        }
+    }
+
+    /**
+     * 文件的数据块是否为 Deflate 压缩
+     */
+    public static boolean isDeflated(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(ch).compression() == COMPRESSION_DEFLATE;
+        }
+    }
+
+    /**
+     * 将未压缩的文件重写为 Deflate 压缩格式写到 target：块头（行数、时间与数值范围）不变，只压缩各块载荷，
+     * 读取端无需改动；文件尾部不完整的块不写出
+     */
+    public static void deflate(Path source, Path target, int level) throws IOException {
+        Deflater deflater = new Deflater(level);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            Header h = readHeader(in);
+            if (h.compression() != COMPRESSION_NONE) {
+                throw new IOException("数据块已压缩: " + source);
+            }
+            ByteBuffer head = ByteBuffer.allocate((int) h.length());
+            in.read(head, 0);
+            head.put(6, COMPRESSION_DEFLATE);
+            writeFully(out, head.flip());
+
+            int headerBytes = blockHeaderBytes(h.channels());
+            long pos = h.length();
+            BlockHeader b;
+            while ((b = readBlockHeader(in, pos, h.channels())) != null) {
+                ByteBuffer blockHead = ByteBuffer.allocate(headerBytes);
+                in.read(blockHead, pos);
+                ByteBuffer payload = ByteBuffer.allocate(b.payloadLen());
+                in.read(payload, pos + headerBytes);
+                pos += headerBytes + b.payloadLen();
+
+                deflater.reset();
+                deflater.setInput(payload.array());
+                deflater.finish();
+                byte[] packed = new byte[b.payloadLen() + 64];
+                int len = 0;
+                while (!deflater.finished()) {
+                    if (len == packed.length) {
+                        packed = Arrays.copyOf(packed, packed.length * 2);
+                    }
+                    len += deflater.deflate(packed, len, packed.length - len);
+                }
+                blockHead.putInt(headerBytes - 4, len);
+                writeFully(out, blockHead.flip());
+                writeFully(out, ByteBuffer.wrap(packed, 0, len));
+            }
+            out.force(false);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    // ---------- 内部 ----------
+
+    private record Header(int channels, byte compression, String[] names, long length) {}
+
+    private record BlockHeader(int rows, long minTs, long maxTs, int rawLen, int payloadLen) {}
+
+    private interface RowSink {
+        void accept(long ts, int[] values);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+
+    private static int blockHeaderBytes(int channels) {
+        return 4 + 8 + 8 + channels * 8 + 4 + 4;
+    }
+
+    private static Header readHeader(FileChannel ch) throws IOException {
+        ByteBuffer fixed = ByteBuffer.allocate(10);
+        if (ch.read(fixed, 0) < 10 || fixed.getInt(0) != MAGIC) {
+            throw new IOException("不是有效的二进制会话文件");
+        }
+        int channels = fixed.get(5) & 0xFF;
+        byte compression = fixed.get(6);
+        int nameLen = fixed.getShort(8) & 0xFFFF;
+        ByteBuffer names = ByteBuffer.allocate(nameLen);
+        ch.read(names, 10);
+        String[] cols = new String(names.array(), StandardCharsets.UTF_8).split(",");
+        return new Header(channels, compression, cols, 10L + nameLen);
+    }
+
+    // 文件头与所有完整数据块的总长度
+    private static long completeLength(FileChannel ch, Header h) throws IOException {
+        long pos = h.length();
+        BlockHeader b;
+        while ((b = readBlockHeader(ch, pos, h.channels())) != null) {
+            pos += blockHeaderBytes(h.channels()) + b.payloadLen();
+        }
+        return pos;
+    }
+
+    // 文件尾部不完整的块（写入中或异常中断）视为结束
+    private static BlockHeader readBlockHeader(FileChannel ch, long pos, int channels) throws IOException {
+        int size = blockHeaderBytes(channels);
+        if (pos + size > ch.size()) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        ch.read(buf, pos);
+        buf.flip();
+        int rows = buf.getInt();
+        long minTs = buf.getLong();
+        long maxTs = buf.getLong();
+        buf.position(buf.position() + channels * 8);
+        int rawLen = buf.getInt();
+        int payloadLen = buf.getInt();
+        if (pos + size + payloadLen > ch.size()) {
+            return null;
+        }
+        return new BlockHeader(rows, minTs, maxTs, rawLen, payloadLen);
+    }
+
+    private static void decode(FileChannel ch, long payloadPos, BlockHeader b, Header h, RowSink sink) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(b.payloadLen());
+        ch.read(payload, payloadPos);
+        byte[] raw = payload.array();
+        if (h.compression() == COMPRESSION_DEFLATE) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(raw);
+                byte[] out = new byte[b.rawLen()];
+                int len = 0;
+                while (len < out.length && !inflater.finished()) {
+                    len += inflater.inflate(out, len, out.length - len);
+                }
+                raw = out;
+            } catch (DataFormatException e) {
+                throw new IOException("数据块解压失败", e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        int n = b.rows();
+        int channels = h.channels();
+        int[] cursor = {0};
+        long[] ts = new long[n];
+        long prevTs = b.minTs();
+        for (int i = 0; i < n; i++) {
+            prevTs += readZigZag(raw, cursor);
+            ts[i] = prevTs;
+        }
+        int[][] values = new int[channels][n];
+        for (int c = 0; c < channels; c++) {
+            long prev = 0;
+            for (int i = 0; i < n; i++) {
+                prev += readZigZag(raw, cursor);
+                values[c][i] = (int) prev;
+            }
+        }
+        int[] row = new int[channels];
+        for (int i = 0; i < n; i++) {
+            for (int c = 0; c < channels; c++) {
+                row[c] = values[c][i];
+            }
+            sink.accept(ts[i], row);
+        }
+    }
+
+    private static long readZigZag(byte[] buf, int[] cursor) {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf[cursor[0]++];
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static String csvLine(long ts, int[] values) {
+        StringBuilder sb = new StringBuilder(16 + values.length * 8);
+        sb.append('"').append(ts).append('"');
+        for (int v : values) {
+            sb.append(",\"").append(v).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String quote(String[] names) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(names[i]).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static final class VarintBuffer {
+        private byte[] buf;
+        private int len;
+
+        VarintBuffer(int capacity) {
+            this.buf = new byte[Math.max(16, capacity)];
+        }
+
+        void putZigZag(long v) {
+            long z = (v << 1) ^ (v >> 63);
+            if (len + 10 > buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            while ((z & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((z & 0x7F) | 0x80);
+                z >>>= 7;
+            }
+            buf[len++] = (byte) z;
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        int length() {
+            return len;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package cn.scut.raputa.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 上传 CSV 的快速探测：只读取文件开头的有限字节（默认 1MB），
+ * 推断编码、分隔符、表头、列类型，并根据时间戳列的相邻差值估算采样率，返回前 N 行预览
+ *
+ * 耗时只与扫描上限有关，与文件总大小无关；未读完整个文件时总行数按已扫描部分的平均行长估算
+ *
+ * @author RAPUTA Team
+ */
+public final class CsvSniffer {
+
+    public enum ColumnType { EMPTY, INTEGER, DECIMAL, DATETIME, TEXT }
+
+    public record Column(String name, ColumnType type, int blanks) {}
+
+    /**
+     * @param timestampColumn 推断的时间戳列下标，-1 表示没有
+     * @param sampleRate      估算的采样率（Hz），无法估算时为 null
+     * @param complete        是否已扫描完整个文件（此时 estimatedRows 为精确值）
+     */
+    public record Result(char delimiter, String charset, boolean header, List<Column> columns,
+                         List<List<String>> preview, int timestampColumn, Double sampleRate,
+                         long scannedRows, long estimatedRows, boolean complete) {}
+
+    private static final char[] DELIMITERS = {',', ';', '\t', '|'};
+    private static final int SNIFF_LINES = 64;
+
+    private static final Pattern INTEGER = Pattern.compile("[-+]?\\d{1,18}");
+    private static final Pattern DECIMAL = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+    private static final Pattern DATETIME = Pattern.compile("\\d{4}[-/]\\d{1,2}[-/]\\d{1,2}[ T]\\d{1,2}:\\d{2}:\\d{2}(\\.\\d{1,9})?");
+    private static final Pattern TIME = Pattern.compile("\\d{1,2}:\\d{2}:\\d{2}(\\.\\d{1,9})?");
+    private static final Pattern TS_NAME = Pattern.compile("(?i).*(time|timestamp|^ts|ts$|date|时间|时刻).*");
+
+    private static final DateTimeFormatter DATETIME_FMT = new DateTimeFormatterBuilder()
+            .appendPattern("yyyy-M-d'T'H:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter();
+    private static final DateTimeFormatter TIME_FMT = new DateTimeFormatterBuilder()
+            .appendPattern("H:mm:ss")
+            .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+            .toFormatter();
+
+    private CsvSniffer() {}
+
+    public static Result inspect(Path file, int previewRows, int maxScanBytes) throws IOException {
+        long size = Files.size(file);
+        int len = (int) Math.min(size, Math.max(maxScanBytes, 1024));
+        byte[] buf = new byte[len];
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer bb = ByteBuffer.wrap(buf);
+            while (bb.hasRemaining() && ch.read(bb) >= 0) {
+                // 读满扫描上限或到文件末尾
+            }
+        }
+        boolean complete = len == size;
+        int end = len;
+        if (!complete) {
+            // 截到最后一个完整行，避免半行被误判
+            while (end > 0 && buf[end - 1] != '\n') {
+                end--;
+            }
+            if (end == 0) {
+                end = len;
+            }
+        }
+        int start = len >= 3 && (buf[0] & 0xFF) == 0xEF && (buf[1] & 0xFF) == 0xBB && (buf[2] & 0xFF) == 0xBF ? 3 : 0;
+        Charset cs = isUtf8(buf, start, end - start) ? StandardCharsets.UTF_8 : Charset.forName("GBK");
+        List<String> lines = new String(buf, start, end - start, cs).lines().filter(l -> !l.isBlank()).toList();
+
+        char delim = detectDelimiter(lines.subList(0, Math.min(SNIFF_LINES, lines.size())));
+        List<String[]> rows = new ArrayList<>(lines.size());
+        for (String l : lines) {
+            rows.add(split(l, delim));
+        }
+        boolean header = detectHeader(rows);
+        List<String[]> data = header ? rows.subList(1, rows.size()) : rows;
+
+        int width = rows.stream().mapToInt(r -> r.length).max().orElse(0);
+        List<Column> columns = new ArrayList<>(width);
+        for (int c = 0; c < width; c++) {
+            String name = header && c < rows.get(0).length && !rows.get(0)[c].isBlank() ? rows.get(0)[c] : "col" + (c + 1);
+            ColumnType type = ColumnType.EMPTY;
+            int blanks = 0;
+            for (String[] r : data) {
+                ColumnType t = classify(c < r.length ? r[c] : "");
+                if (t == ColumnType.EMPTY) {
+                    blanks++;
+                }
+                type = widen(type, t);
+            }
+            columns.add(new Column(name, type, blanks));
+        }
+
+        List<List<String>> preview = data.stream().limit(Math.max(previewRows, 0)).map(Arrays::asList).toList();
+        int tsCol = timestampColumn(columns, data);
+        Double rate = tsCol < 0 ? null : sampleRate(columns.get(tsCol), tsCol, data);
+        long estimated = complete || end == 0 ? data.size() : Math.round(data.size() * ((double) size / end));
+        return new Result(delim, cs.name(), header, columns, preview, tsCol, rate, data.size(), estimated, complete);
+    }
+
+    // 候选分隔符中，各行字段数最一致（且多于 1 列）的那个
+    static char detectDelimiter(List<String> lines) {
+        char best = ',';
+        double bestScore = 0;
+        for (char d : DELIMITERS) {
+            int[] counts = lines.stream().mapToInt(l -> split(l, d).length).toArray();
+            int mode = mode(counts);
+            if (mode <= 1) {
+                continue;
+            }
+            long same = Arrays.stream(counts).filter(n -> n == mode).count();
+            double score = (double) same / counts.length + mode * 1e-6;
+            if (score > bestScore) {
+                bestScore = score;
+                best = d;
+            }
+        }
+        return best;
+    }
+
+    // 首行没有数值 / 时间，而后续行有，则视为表头
+    static boolean detectHeader(List<String[]> rows) {
+        if (rows.isEmpty()) {
+            return false;
+        }
+        for (String cell : rows.get(0)) {
+            ColumnType t = classify(cell);
+            if (t != ColumnType.TEXT && t != ColumnType.EMPTY) {
+                return false;
+            }
+        }
+        if (rows.size() == 1) {
+            return true;
+        }
+        for (String[] r : rows.subList(1, Math.min(rows.size(), SNIFF_LINES))) {
+            for (String cell : r) {
+                ColumnType t = classify(cell);
+                if (t != ColumnType.TEXT && t != ColumnType.EMPTY) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按分隔符拆分一行，支持双引号包裹与 "" 转义（不支持引号内换行）
+     */
+    static String[] split(String line, char d) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        cur.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == d) {
+                out.add(cur.toString().trim());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        out.add(cur.toString().trim());
+        return out.toArray(new String[0]);
+    }
+
+    static ColumnType classify(String cell) {
+        if (cell == null || cell.isBlank()) {
+            return ColumnType.EMPTY;
+        }
+        if (INTEGER.matcher(cell).matches()) {
+            return ColumnType.INTEGER;
+        }
+        if (DECIMAL.matcher(cell).matches()) {
+            return ColumnType.DECIMAL;
+        }
+        if (DATETIME.matcher(cell).matches() || TIME.matcher(cell).matches()) {
+            return ColumnType.DATETIME;
+        }
+        return ColumnType.TEXT;
+    }
+
+    private static ColumnType widen(ColumnType a, ColumnType b) {
+        if (a == ColumnType.EMPTY || a == b) {
+            return b == ColumnType.EMPTY ? a : b;
+        }
+        if (b == ColumnType.EMPTY) {
+            return a;
+        }
+        if ((a == ColumnType.INTEGER && b == ColumnType.DECIMAL) || (a == ColumnType.DECIMAL && b == ColumnType.INTEGER)) {
+            return ColumnType.DECIMAL;
+        }
+        return ColumnType.TEXT;
+    }
+
+    // 时间戳列：优先按列名，其次第一个时间列，最后是单调递增的首个整数列
+    private static int timestampColumn(List<Column> columns, List<String[]> data) {
+        for (int c = 0; c < columns.size(); c++) {
+            Column col = columns.get(c);
+            if (col.type() != ColumnType.TEXT && col.type() != ColumnType.EMPTY && TS_NAME.matcher(col.name()).matches()) {
+                return c;
+            }
+        }
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).type() == ColumnType.DATETIME) {
+                return c;
+            }
+        }
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).type() == ColumnType.INTEGER && increasing(data, c)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean increasing(List<String[]> data, int c) {
+        long prev = Long.MIN_VALUE;
+        int n = 0;
+        for (String[] r : data) {
+            if (c >= r.length || r[c].isBlank()) {
+                continue;
+            }
+            long v = Long.parseLong(r[c].startsWith("+") ? r[c].substring(1) : r[c]);
+            if (v <= prev) {
+                return false;
+            }
+            prev = v;
+            n++;
+        }
+        return n >= 2;
+    }
+
+    // 相邻时间戳正差值的中位数 -> Hz（保留两位小数）
+    private static Double sampleRate(Column col, int c, List<String[]> data) {
+        List<Double> values = new ArrayList<>();
+        for (String[] r : data) {
+            if (c < r.length && !r[c].isBlank()) {
+                Double v = col.type() == ColumnType.DATETIME ? timeMicros(r[c]) : Double.valueOf(r[c]);
+                if (v != null) {
+                    values.add(v);
+                }
+            }
+        }
+        if (values.size() < 2) {
+            return null;
+        }
+        double unitMicros = col.type() == ColumnType.DATETIME ? 1 : unitMicros(col, Math.abs(values.get(0)));
+        double[] deltas = new double[values.size() - 1];
+        int n = 0;
+        for (int i = 1; i < values.size(); i++) {
+            double d = values.get(i) - values.get(i - 1);
+            if (d > 0) {
+                deltas[n++] = d;
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        Arrays.sort(deltas, 0, n);
+        double medianMicros = deltas[n / 2] * unitMicros;
+        return medianMicros <= 0 ? null : Math.round(1e6 / medianMicros * 100) / 100.0;
+    }
+
+    // 数值时间戳的单位（微秒数）：先看列名，再看量级（纪元秒/毫秒/微秒/纳秒），相对时间按 小数=秒、整数=毫秒
+    private static double unitMicros(Column col, double first) {
+        String name = col.name().toLowerCase();
+        if (name.contains("ns") || name.contains("nano")) return 1e-3;
+        if (name.contains("us") || name.contains("micro") || name.contains("微秒")) return 1;
+        if (name.contains("ms") || name.contains("milli") || name.contains("毫秒")) return 1e3;
+        if (name.endsWith("(s)") || name.endsWith("_s") || name.contains("sec") || name.endsWith("秒")) return 1e6;
+        if (first >= 1e17) return 1e-3;
+        if (first >= 1e14) return 1;
+        if (first >= 1e11) return 1e3;
+        if (first >= 1e8) return 1e6;
+        return col.type() == ColumnType.DECIMAL ? 1e6 : 1e3;
+    }
+
+    private static Double timeMicros(String s) {
+        try {
+            if (TIME.matcher(s).matches()) {
+                return LocalTime.parse(s, TIME_FMT).toNanoOfDay() / 1e3;
+            }
+            LocalDateTime t = LocalDateTime.parse(s.replace('/', '-').replace(' ', 'T'), DATETIME_FMT);
+            return t.toEpochSecond(ZoneOffset.UTC) * 1e6 + t.getNano() / 1e3;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int mode(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int best = 0, bestCount = 0;
+        for (int i = 0; i < sorted.length; ) {
+            int j = i;
+            while (j < sorted.length && sorted[j] == sorted[i]) {
+                j++;
+            }
+            if (j - i > bestCount) {
+                bestCount = j - i;
+                best = sorted[i];
+            }
+            i = j;
+        }
+        return best;
+    }
+
+    // 严格按 UTF-8 解码（扫描范围已截到整行），失败则按 GBK（Excel 导出的中文 CSV 常见）
+    private static boolean isUtf8(byte[] buf, int off, int len) {
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(buf, off, len));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+}
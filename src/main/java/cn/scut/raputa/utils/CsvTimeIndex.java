@@ -0,0 +1,180 @@
+package cn.scut.raputa.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * 会话 CSV 的稀疏时间索引（imu.csv -> imu.idx）
+ * 索引文件由定长 16 字节条目组成：[long 时间戳(首列), long 该行在 CSV 中的字节偏移]，每 N 行记录一条，
+ * 读取时间片时二分定位起点后直接 seek，无需从头扫描整个 CSV
+ *
+ * 前提：CSV 首列时间戳单调不减（会话写入顺序即时间顺序）
+ *
+ * @author RAPUTA Team
+ */
+public final class CsvTimeIndex {
+
+    private static final int ENTRY_BYTES = 16;
+
+    private CsvTimeIndex() {}
+
+    public static Path indexPathFor(Path csv) {
+        String name = csv.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return csv.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".idx");
+    }
+
+    /**
+     * 起始偏移：最后一个时间戳 < startTs 的索引条目；无索引或无合适条目时返回 0（从头扫描）
+     */
+    public static long seekOffset(Path csv, long startTs) throws IOException {
+        Path idx = indexPathFor(csv);
+        if (!Files.isRegularFile(idx)) {
+            return 0L;
+        }
+        try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.READ)) {
+            long n = ch.size() / ENTRY_BYTES;
+            long lo = 0, hi = n - 1, found = -1;
+            ByteBuffer buf = ByteBuffer.allocate(ENTRY_BYTES);
+            long foundOffset = 0L;
+            while (lo <= hi) {
+                long mid = (lo + hi) >>> 1;
+                buf.clear();
+                ch.read(buf, mid * ENTRY_BYTES);
+                long ts = buf.getLong(0);
+                // 严格小于：相同时间戳的行可能跨越条目边界，从前一条开始才不会漏行
+                if (ts < startTs) {
+                    found = mid;
+                    foundOffset = buf.getLong(8);
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found < 0 ? 0L : foundOffset;
+        }
+    }
+
+    /**
+     * 最后一个索引条目的偏移（用于只扫描文件尾部），无索引时返回 0
+     */
+    public static long lastOffset(Path csv) throws IOException {
+        Path idx = indexPathFor(csv);
+        if (!Files.isRegularFile(idx)) {
+            return 0L;
+        }
+        try (FileChannel ch = FileChannel.open(idx, StandardOpenOption.READ)) {
+            long n = ch.size() / ENTRY_BYTES;
+            if (n == 0) {
+                return 0L;
+            }
+            ByteBuffer buf = ByteBuffer.allocate(ENTRY_BYTES);
+            ch.read(buf, (n - 1) * ENTRY_BYTES);
+            return buf.getLong(8);
+        }
+    }
+
+    /**
+     * 读取 [startTs, endTs] 内的数据行（原始行文本，不含换行符）
+     * 首列无法解析为时间戳的行（表头等）被跳过；遇到 ts > endTs 即停止
+     */
+    public static void scan(Path csv, long startTs, long endTs, Consumer<String> sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ch.position(seekOffset(csv, startTs));
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(ch), StandardCharsets.UTF_8), 64 * 1024);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Long ts = leadingTimestamp(line);
+                if (ts == null || ts < startTs) {
+                    continue;
+                }
+                if (ts > endTs) {
+                    break;
+                }
+                sink.accept(line);
+            }
+        }
+    }
+
+    /**
+     * 文件中最后一个可解析的时间戳，借助索引只扫描尾部
+     */
+    public static Long lastTimestamp(Path csv) throws IOException {
+        try (FileChannel ch = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ch.position(lastOffset(csv));
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(ch), StandardCharsets.UTF_8), 64 * 1024);
+            Long last = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Long ts = leadingTimestamp(line);
+                if (ts != null) {
+                    last = ts;
+                }
+            }
+            return last;
+        }
+    }
+
+    /**
+     * 解析行首字段为时间戳（兼容引号与空白），失败返回 null
+     */
+    public static Long leadingTimestamp(String line) {
+        int comma = line.indexOf(',');
+        String field = (comma < 0 ? line : line.substring(0, comma)).trim().replace("\"", "");
+        try {
+            return Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 索引追加器：调用方在写入第 N 行之前 flush CSV 并传入当前字节偏移
+     */
+    public static final class Appender implements Closeable {
+
+        private final DataOutputStream out;
+        private final int stride;
+        private long rows;
+
+        public Appender(Path csv, int stride) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(indexPathFor(csv), StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            this.stride = stride;
+        }
+
+        /** 当前行是否需要登记索引 */
+        public boolean due() {
+            return rows % stride == 0;
+        }
+
+        public void row(String[] data, long offset) throws IOException {
+            if (due() && data.length > 0) {
+                Long ts = leadingTimestamp(data[0]);
+                if (ts != null) {
+                    out.writeLong(ts);
+                    out.writeLong(offset);
+                }
+            }
+            rows++;
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package cn.scut.raputa.utils;
+
+import com.opencsv.CSVWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 追加写入会话 CSV，并同步维护稀疏时间索引（见 {@link CsvTimeIndex}）
+ * 通过计数输出流获得每行的字节偏移；仅在需要登记索引的行之前额外 flush 一次
+ *
+ * @author RAPUTA Team
+ */
+public class IndexedCsvWriter implements SessionStreamWriter {
+
+    private final CountingOutputStream counter;
+    private final CSVWriter writer;
+    private final CsvTimeIndex.Appender index;
+
+    public IndexedCsvWriter(Path csv, int stride) throws IOException {
+        long existing = Files.exists(csv) ? Files.size(csv) : 0L;
+        this.counter = new CountingOutputStream(
+                Files.newOutputStream(csv, StandardOpenOption.CREATE, StandardOpenOption.APPEND), existing);
+        this.writer = new CSVWriter(new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8)));
+        this.index = new CsvTimeIndex.Appender(csv, stride);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return counter.count == 0;
+    }
+
+    /** 表头不计入索引 */
+    @Override
+    public void writeHeader(String[] header) throws IOException {
+        writer.writeNext(header);
+        writer.flush();
+    }
+
+    @Override
+    public Written writeRows(List<String[]> rows) throws IOException {
+        for (String[] row : rows) {
+            if (index.due()) {
+                writer.flush();
+            }
+            index.row(row, counter.count);
+            writer.writeNext(row);
+        }
+        writer.flush();
+        index.flush();
+        if (rows.isEmpty()) {
+            return new Written(0, null, null);
+        }
+        return new Written(rows.size(),
+                CsvTimeIndex.leadingTimestamp(rows.get(0)[0]),
+                CsvTimeIndex.leadingTimestamp(rows.get(rows.size() - 1)[0]));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out, long start) {
+            super(out);
+            this.count = start;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
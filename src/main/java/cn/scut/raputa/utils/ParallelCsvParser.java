@@ -0,0 +1,262 @@
+package cn.scut.raputa.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 大 CSV 的并行列式解析：按字节范围切块（边界对齐到行首），每块单独内存映射后在 ForkJoinPool 上并行解析，
+ * 只解析选中的列，直接写入 double 数组，最后按块顺序拼接
+ *
+ * 数值在字节层面解析，不创建逐字段的 String；支持双引号包裹的字段（会话 CSV 由 opencsv 写出，每个字段都带引号），
+ * 不支持引号内换行。空值或无法解析的值记为 NaN；时间戳按 double 存储（微秒级纪元时间仍在 2^53 内，精确）
+ *
+ * @author RAPUTA Team
+ */
+public final class ParallelCsvParser {
+
+    private static final long MIN_CHUNK = 1L << 20;        // 1MB
+    private static final long MAX_CHUNK = 256L << 20;      // 单块映射上限
+    private static final double[] POW10 = new double[19];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    /**
+     * 解析结果：columns[i] 对应请求的第 i 列，长度均为 rows
+     */
+    public record Result(int[] columnIndexes, double[][] columns, int rows) {
+        public double[] column(int i) {
+            return columns[i];
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    public ParallelCsvParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 解析文件中的指定列（下标从 0 开始，-1 表示该位置留空、结果全为 NaN）
+     *
+     * @param skipHeader 是否跳过首行
+     */
+    public Result parse(Path file, char delimiter, boolean skipHeader, int[] columnIndexes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long start = skipHeader ? nextLineStart(ch, 0, size) : 0;
+            List<long[]> ranges = split(ch, start, size);
+
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>(ranges.size());
+            for (long[] r : ranges) {
+                tasks.add(pool.submit(() -> parseRange(ch, r[0], r[1], delimiter, columnIndexes)));
+            }
+            List<Result> chunks = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<Result> t : tasks) {
+                chunks.add(t.join());
+            }
+            return concat(columnIndexes, chunks);
+        }
+    }
+
+    /**
+     * 按顺序拼接多个结果（各块的数组可能比 rows 长，只取前 rows 个）；也用于拼接同一会话的多个分段文件
+     */
+    public static Result concat(int[] columnIndexes, List<Result> parts) {
+        int rows = parts.stream().mapToInt(Result::rows).sum();
+        double[][] out = new double[columnIndexes.length][rows];
+        int pos = 0;
+        for (Result p : parts) {
+            for (int c = 0; c < columnIndexes.length; c++) {
+                System.arraycopy(p.columns()[c], 0, out[c], pos, p.rows());
+            }
+            pos += p.rows();
+        }
+        return new Result(columnIndexes, out, rows);
+    }
+
+    // 块数约为并行度的 4 倍以平衡负载，每块至少 1MB
+    private List<long[]> split(FileChannel ch, long start, long size) throws IOException {
+        long body = size - start;
+        int parallelism = pool.getParallelism();
+        long chunks = Math.max(1, Math.min(parallelism * 4L, body / MIN_CHUNK));
+        long chunkSize = Math.min(Math.max(body / chunks, MIN_CHUNK), MAX_CHUNK);
+
+        List<long[]> ranges = new ArrayList<>();
+        long from = start;
+        while (from < size) {
+            long nominal = from + chunkSize;
+            long to = nominal >= size ? size : nextLineStart(ch, nominal - 1, size);
+            ranges.add(new long[]{from, to});
+            from = to;
+        }
+        return ranges;
+    }
+
+    // pos 处或之后第一个换行符的下一个位置
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long p = pos;
+        while (p < size) {
+            buf.clear();
+            int n = ch.read(buf, p);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return p + i + 1;
+                }
+            }
+            p += n;
+        }
+        return size;
+    }
+
+    private static Result parseRange(FileChannel ch, long from, long to, char delimiter, int[] columnIndexes) throws IOException {
+        MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int maxCol = Arrays.stream(columnIndexes).max().orElse(-1);
+        // 列下标 -> 结果位置
+        int[] slot = new int[maxCol + 1];
+        Arrays.fill(slot, -1);
+        for (int i = 0; i < columnIndexes.length; i++) {
+            if (columnIndexes[i] >= 0) {
+                slot[columnIndexes[i]] = i;
+            }
+        }
+
+        int capacity = Math.max(16, (int) ((to - from) / 32));
+        double[][] cols = new double[columnIndexes.length][capacity];
+        int rows = 0;
+        int limit = map.limit();
+        int p = 0;
+        byte d = (byte) delimiter;
+        while (p < limit) {
+            // 空行跳过
+            byte first = map.get(p);
+            if (first == '\n' || first == '\r') {
+                p++;
+                continue;
+            }
+            if (rows == capacity) {
+                capacity *= 2;
+                for (int i = 0; i < cols.length; i++) {
+                    cols[i] = Arrays.copyOf(cols[i], capacity);
+                }
+            }
+            for (double[] c : cols) {
+                c[rows] = Double.NaN;
+            }
+            int col = 0;
+            while (p < limit) {
+                int target = col <= maxCol ? slot[col] : -1;
+                // 解析一个字段：[p, 字段结束)
+                boolean quoted = map.get(p) == '"';
+                int s = quoted ? p + 1 : p;
+                int e = s;
+                if (quoted) {
+                    while (e < limit) {
+                        if (map.get(e) == '"') {
+                            if (e + 1 < limit && map.get(e + 1) == '"') {
+                                e += 2; // "" 转义
+                                continue;
+                            }
+                            break;
+                        }
+                        e++;
+                    }
+                    p = Math.min(e + 1, limit);
+                    while (p < limit && map.get(p) != d && map.get(p) != '\n') {
+                        p++;
+                    }
+                } else {
+                    while (e < limit && map.get(e) != d && map.get(e) != '\n') {
+                        e++;
+                    }
+                    p = e;
+                }
+                if (target >= 0) {
+                    cols[target][rows] = parseDouble(map, s, e);
+                }
+                if (p >= limit || map.get(p) == '\n') {
+                    p++;
+                    break;
+                }
+                p++; // 分隔符
+                col++;
+            }
+            rows++;
+        }
+        return new Result(columnIndexes, cols, rows);
+    }
+
+    /**
+     * 字节区间 [s, e) 转 double；常见的十进制定点数直接计算，科学计数法等回退到 Double.parseDouble
+     */
+    static double parseDouble(ByteBuffer b, int s, int e) {
+        while (s < e && (b.get(s) == ' ' || b.get(s) == '\t')) s++;
+        while (e > s && (b.get(e - 1) == ' ' || b.get(e - 1) == '\t' || b.get(e - 1) == '\r')) e--;
+        if (s >= e) {
+            return Double.NaN;
+        }
+        int i = s;
+        boolean neg = false;
+        if (b.get(i) == '-' || b.get(i) == '+') {
+            neg = b.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, any = false;
+        for (; i < e; i++) {
+            byte c = b.get(i);
+            if (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits += mantissa == 0 ? 0 : 1;
+                    if (dot && ++scale >= POW10.length) {
+                        return slowParse(b, s, e);
+                    }
+                } else if (!dot) {
+                    return slowParse(b, s, e); // 超出 long 精度
+                }
+                any = true;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return slowParse(b, s, e);
+            }
+        }
+        if (!any) {
+            return Double.NaN;
+        }
+        double v = scale == 0 ? mantissa : mantissa / POW10[scale];
+        return neg ? -v : v;
+    }
+
+    private static double slowParse(ByteBuffer b, int s, int e) {
+        byte[] bytes = new byte[e - s];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = b.get(s + i);
+        }
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package cn.scut.raputa.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 会话回放的节拍器：把录制时间轴上的偏移（毫秒）映射到墙钟，speed 倍速推进；speed <= 0 表示不限速
+ * 传感器注入线程与音频抓取线程共用一个实例，两路数据按同一起点对齐
+ *
+ * 提前量不足 1ms 时不等待（Windows 上 sleep 粒度较粗，逐样本等待会明显拖慢高频 IMU），
+ * 已落后于时间轴时不等待并记录最大滞后
+ *
+ * @author RAPUTA Team
+ */
+public final class ReplayClock {
+
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final double speed;
+    private final long startNanos;
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    public ReplayClock(double speed) {
+        this.speed = speed;
+        this.startNanos = System.nanoTime();
+    }
+
+    public boolean isUnlimited() {
+        return speed <= 0;
+    }
+
+    /**
+     * 等待到时间轴偏移 offsetMs 对应的墙钟时刻
+     */
+    public void await(long offsetMs) throws InterruptedException {
+        if (speed <= 0) {
+            return;
+        }
+        long target = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(offsetMs) / speed);
+        long wait = target - System.nanoTime();
+        if (wait < 0) {
+            maxLagNanos.accumulateAndGet(-wait, Math::max);
+            return;
+        }
+        if (wait < MIN_WAIT_NANOS) {
+            return;
+        }
+        while ((wait = target - System.nanoTime()) > 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (wait > 2 * MIN_WAIT_NANOS) {
+                Thread.sleep(TimeUnit.NANOSECONDS.toMillis(wait) - 1);
+            } else {
+                LockSupport.parkNanos(wait);
+            }
+        }
+    }
+
+    /**
+     * 回放过程中落后于时间轴的最大值（毫秒）
+     */
+    public long maxLagMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+    }
+}
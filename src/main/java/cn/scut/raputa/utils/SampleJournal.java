@@ -0,0 +1,230 @@
+package cn.scut.raputa.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存映射的样本追加日志（会话目录/imu.jnl、gas.jnl）
+ * 接收线程把解码后的样本（long 时间戳 + N 个 int 通道值）直接写入映射内存，CSV 写入器按自己的节奏读取并提交读位置；
+ * 写入只落到页缓存、不做 fsync，进程崩溃后数据仍在文件中，重启时从已提交位置重放到 CSV
+ *
+ * 文件布局：64 字节头 [int 魔数, int 版本, int 通道数, int 记录长度, long 容量(条), long 写序号, long 已提交读序号]，
+ * 之后是定长记录组成的环形区；序号单调递增，槽位 = 序号 % 容量
+ *
+ * @author RAPUTA Team
+ */
+public final class SampleJournal implements Closeable {
+
+    public static final String EXT = "jnl";
+
+    private static final int MAGIC = 0x524A4E4C; // "RJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int OFF_WRITE = 24;
+    private static final int OFF_READ = 32;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private final int channels;
+    private final int recordSize;
+    private final long capacity;
+
+    private long writeSeq;
+    private long readSeq;      // 已提交（已落入 CSV）的位置
+    private long pendingSeq;   // 已读出但尚未提交的位置
+    private boolean closed;    // 关闭后不再持有映射，不能再访问 map
+
+    private SampleJournal(Path path, FileChannel channel, MappedByteBuffer map, int channels, long capacity) {
+        this.path = path;
+        this.channel = channel;
+        this.map = map;
+        this.channels = channels;
+        this.recordSize = 8 + 4 * channels;
+        this.capacity = capacity;
+    }
+
+    public static Path journalPathFor(Path folder, String stream) {
+        return folder.resolve(stream + "." + EXT);
+    }
+
+    /**
+     * 打开日志：文件已存在且头部有效时沿用其中的读写位置（崩溃恢复），否则按给定容量新建
+     */
+    public static SampleJournal open(Path path, int channels, long capacityBytes) throws IOException {
+        if (Files.isRegularFile(path) && Files.size(path) >= HEADER) {
+            SampleJournal existing = openExisting(path);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        int recordSize = 8 + 4 * channels;
+        long capacity = Math.max(1, Math.min(capacityBytes, Integer.MAX_VALUE - HEADER) / recordSize);
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + capacity * recordSize);
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putInt(8, channels);
+        map.putInt(12, recordSize);
+        map.putLong(16, capacity);
+        map.putLong(OFF_WRITE, 0L);
+        map.putLong(OFF_READ, 0L);
+        return new SampleJournal(path, ch, map, channels, capacity);
+    }
+
+    private static SampleJournal openExisting(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer head = readHeader(ch);
+        if (head == null) {
+            ch.close();
+            return null;
+        }
+        int channels = head.getInt(8);
+        long capacity = head.getLong(16);
+        MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + capacity * (8 + 4 * channels));
+        SampleJournal j = new SampleJournal(path, ch, map, channels, capacity);
+        j.writeSeq = map.getLong(OFF_WRITE);
+        j.readSeq = Math.min(map.getLong(OFF_READ), j.writeSeq);
+        j.pendingSeq = j.readSeq;
+        return j;
+    }
+
+    /**
+     * 日志中是否还有未提交的样本；只读取文件头而不映射文件，头部无效时视为没有
+     */
+    public static boolean hasUncommitted(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = readHeader(ch);
+            return head != null && head.getLong(OFF_READ) < head.getLong(OFF_WRITE);
+        }
+    }
+
+    // 读取并校验文件头，无效时返回 null
+    private static ByteBuffer readHeader(FileChannel ch) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER);
+        while (head.hasRemaining()) {
+            if (ch.read(head, head.position()) < 0) {
+                return null;
+            }
+        }
+        int channels = head.getInt(8);
+        long capacity = head.getLong(16);
+        if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION || channels <= 0
+                || head.getInt(12) != 8 + 4 * channels || capacity <= 0
+                || ch.size() < HEADER + capacity * (8 + 4 * channels)) {
+            return null;
+        }
+        return head;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * 追加一个样本；环形区已满（写入器落后超过容量）时返回 false，由调用方计入丢弃数
+     */
+    public synchronized boolean append(long ts, int... values) {
+        if (closed || writeSeq - readSeq >= capacity) {
+            return false;
+        }
+        int pos = slot(writeSeq);
+        map.putLong(pos, ts);
+        for (int i = 0; i < channels; i++) {
+            map.putInt(pos + 8 + 4 * i, i < values.length ? values[i] : 0);
+        }
+        // 记录写完后再推进写序号，崩溃时不会暴露半条记录
+        writeSeq++;
+        map.putLong(OFF_WRITE, writeSeq);
+        return true;
+    }
+
+    /**
+     * 读出最多 max 条未读样本（CSV 行格式：[时间戳, 通道值...]），调用 commit() 后才视为已消费
+     */
+    public synchronized List<String[]> read(int max) {
+        int n = closed ? 0 : (int) Math.min(max, writeSeq - pendingSeq);
+        List<String[]> rows = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            int pos = slot(pendingSeq++);
+            String[] row = new String[channels + 1];
+            row[0] = String.valueOf(map.getLong(pos));
+            for (int i = 0; i < channels; i++) {
+                row[i + 1] = String.valueOf(map.getInt(pos + 8 + 4 * i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * 提交已读出的样本（已写入 CSV），释放其环形区空间
+     */
+    public synchronized void commit() {
+        if (closed) {
+            return;
+        }
+        readSeq = pendingSeq;
+        map.putLong(OFF_READ, readSeq);
+    }
+
+    /**
+     * 放弃未提交的读出，下次从已提交位置重读
+     */
+    public synchronized void rollback() {
+        pendingSeq = readSeq;
+    }
+
+    /**
+     * 尚未读出的样本数
+     */
+    public synchronized long pending() {
+        return writeSeq - pendingSeq;
+    }
+
+    private int slot(long seq) {
+        return (int) (HEADER + (seq % capacity) * recordSize);
+    }
+
+    /**
+     * 关闭日志并放开映射引用；映射本身不随通道关闭而释放，由 GC 回收
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        map = null;
+        channel.close();
+    }
+
+    /**
+     * 关闭并删除日志文件；映射尚未回收时部分平台（Windows）删除会失败，此时保留文件，
+     * 重启恢复时发现已全部提交会直接删除
+     */
+    public void closeAndDelete() {
+        try {
+            close();
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // 已全部提交的日志在下次启动时清理
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cn.scut.raputa.utils;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 会话清单 manifest.json
+ * 记录每个逻辑数据流（imu.csv / gas.csv / audio.wav）由哪些分段文件组成、各分段的时间跨度，
+ * 以及录制过程中增量累计的统计信息（样本数、首末时间戳、丢弃数、音频帧数与时长），列表接口无需再打开数据文件
+ *
+ * @author RAPUTA Team
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SessionManifest {
+
+    public static final String FILE_NAME = "manifest.json";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    private int version = 1;
+    private long segmentSeconds;
+    private boolean finalized;
+    // key: 流名（imu / gas / audio）
+    private Map<String, Stream> streams = new LinkedHashMap<>();
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Stream {
+        private String logicalName;       // imu.csv
+        private long sampleCount;         // 已写入的样本（行）数
+        private long droppedSamples;      // 解析失败被丢弃的样本数
+        private Long firstTs;             // 首条数据时间戳（毫秒）
+        private Long lastTs;              // 末条数据时间戳（毫秒）
+        private Double durationSeconds;   // CSV 为 (lastTs - firstTs)，音频为 采样点数 / 采样率
+        private Long frameCount;          // 仅音频：录制的帧数
+        private Integer sampleRate;       // 仅音频
+        private String compressedFile;    // 会话结束后的 gzip 压缩文件（如 imu.csv.gz），压缩后分段文件被删除
+        private Long compressedBytes;
+        private Long compressedCrc32;     // 压缩文件自身的 CRC32，ZIP 以 STORED 方式打包时直接使用
+        private List<Segment> segments = new ArrayList<>();
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Segment {
+        private String file;              // imu_000.csv（相对会话目录）
+        private long openedAt;            // 分段创建时刻（毫秒，墙钟）
+        private Long firstTs;             // 分段内首条数据时间戳（毫秒）
+        private Long lastTs;              // 分段内末条数据时间戳（毫秒）
+        private long sampleCount;
+        private boolean closed;
+    }
+
+    /**
+     * 深拷贝（录制中的清单对外返回前先拷贝，避免序列化时被并发修改）
+     */
+    public SessionManifest copy() {
+        return objectMapper.convertValue(this, SessionManifest.class);
+    }
+
+    public static Path pathIn(Path sessionFolder) {
+        return sessionFolder.resolve(FILE_NAME);
+    }
+
+    public static SessionManifest read(Path sessionFolder) throws IOException {
+        Path file = pathIn(sessionFolder);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return objectMapper.readValue(file.toFile(), SessionManifest.class);
+    }
+
+    /**
+     * 先写临时文件再原子替换，避免读者看到半个 JSON
+     */
+    public void write(Path sessionFolder) throws IOException {
+        Path tmp = sessionFolder.resolve(FILE_NAME + ".tmp");
+        objectMapper.writeValue(tmp.toFile(), this);
+        Files.move(tmp, pathIn(sessionFolder), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,24 @@
+package cn.scut.raputa.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 会话数据流分段写入器（CSV 文本或二进制列式）
+ *
+ * @author RAPUTA Team
+ */
+public interface SessionStreamWriter extends Closeable {
+
+    /** 分段文件是否为空（新文件需先写表头） */
+    boolean isEmpty();
+
+    void writeHeader(String[] header) throws IOException;
+
+    /** 追加一批数据行，返回前数据已写入文件；无法写入的行被跳过，不计入结果 */
+    Written writeRows(List<String[]> rows) throws IOException;
+
+    /** 实际写入的行数，以及其中首行与末行的时间戳（没有写入任何行时为 null） */
+    record Written(int rows, Long firstTs, Long lastTs) {}
+}
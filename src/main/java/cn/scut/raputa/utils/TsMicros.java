@@ -0,0 +1,42 @@
+package cn.scut.raputa.utils;
+
+/**
+ * 传感器时间戳换算 - 统一为 epoch 微秒（ts_micros 列）
+ * IMU/GAS: timestamp 为秒，timestampus 为微秒部分；AUDIO: timestamp 为毫秒
+ *
+ * @author RAPUTA Team
+ */
+public final class TsMicros {
+
+    private TsMicros() {
+    }
+
+    public static long ofSeconds(long seconds, long micros) {
+        return seconds * 1_000_000L + micros;
+    }
+
+    public static long ofMillis(long millis) {
+        return millis * 1_000L;
+    }
+
+    /**
+     * 秒级时间戳区间起点（含）
+     */
+    public static long secondsRangeStart(long seconds) {
+        return seconds * 1_000_000L;
+    }
+
+    /**
+     * 秒级时间戳区间终点（含该秒内全部微秒）
+     */
+    public static long secondsRangeEnd(long seconds) {
+        return seconds * 1_000_000L + 999_999L;
+    }
+
+    /**
+     * 毫秒级时间戳区间终点（含该毫秒内全部微秒）
+     */
+    public static long millisRangeEnd(long millis) {
+        return millis * 1_000L + 999L;
+    }
+}
@@ -4,9 +4,13 @@ import java.time.LocalDate;
 import java.time.Period;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
 
 import cn.scut.raputa.entity.Appointment;
 import cn.scut.raputa.entity.CheckRecord;
+import cn.scut.raputa.entity.GasData;
+import cn.scut.raputa.entity.ImuData;
 import cn.scut.raputa.entity.Model;
 import cn.scut.raputa.entity.Patient;
 import cn.scut.raputa.entity.User;
@@ -14,6 +18,7 @@ import cn.scut.raputa.vo.AppointmentVO;
 import cn.scut.raputa.vo.CheckRecordVO;
 import cn.scut.raputa.vo.ModelVO;
 import cn.scut.raputa.vo.PatientVO;
+import cn.scut.raputa.vo.SensorColumnsVO;
 import cn.scut.raputa.vo.UserVO;
 
 public final class VoMappers {
@@ -94,4 +99,53 @@ public final class VoMappers {
                 .build();
     }
 
+
+    /**
+     * 查询结果通常按时间倒序返回，列式载荷要求升序差分；ts_micros 为空的历史行无法参与差分，直接跳过
+     */
+    public static SensorColumnsVO toImuColumns(String deviceId, List<ImuData> rows) {
+        List<ImuData> sorted = rows.stream()
+                .filter(d -> d.getTsMicros() != null)
+                .sorted(Comparator.comparingLong(ImuData::getTsMicros))
+                .toList();
+        int n = sorted.size();
+        long[] dt = new long[n];
+        int[] x = new int[n], y = new int[n], z = new int[n];
+        long prev = n > 0 ? sorted.get(0).getTsMicros() : 0L;
+        for (int i = 0; i < n; i++) {
+            ImuData d = sorted.get(i);
+            dt[i] = d.getTsMicros() - prev;
+            prev = d.getTsMicros();
+            x[i] = d.getX();
+            y[i] = d.getY();
+            z[i] = d.getZ();
+        }
+        return SensorColumnsVO.builder()
+                .deviceId(deviceId).stream("imu").count(n)
+                .t0(n > 0 ? sorted.get(0).getTsMicros() : null)
+                .dt(dt).x(x).y(y).z(z)
+                .build();
+    }
+
+    public static SensorColumnsVO toGasColumns(String deviceId, List<GasData> rows) {
+        List<GasData> sorted = rows.stream()
+                .filter(d -> d.getTsMicros() != null)
+                .sorted(Comparator.comparingLong(GasData::getTsMicros))
+                .toList();
+        int n = sorted.size();
+        long[] dt = new long[n];
+        Integer[] flow = new Integer[n];
+        long prev = n > 0 ? sorted.get(0).getTsMicros() : 0L;
+        for (int i = 0; i < n; i++) {
+            GasData d = sorted.get(i);
+            dt[i] = d.getTsMicros() - prev;
+            prev = d.getTsMicros();
+            flow[i] = d.getFlow();
+        }
+        return SensorColumnsVO.builder()
+                .deviceId(deviceId).stream("gas").count(n)
+                .t0(n > 0 ? sorted.get(0).getTsMicros() : null)
+                .dt(dt).flow(flow)
+                .build();
+    }
 }
@@ -0,0 +1,193 @@
+package cn.scut.raputa.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 顺序写出 ZIP 的最小实现：条目的 CRC 与压缩前后大小须事先算好（已预先 DEFLATE 的数据原样写入），
+ * 因而本地文件头即带完整信息、无需数据描述符；大小或偏移超过 4GB、条目超过 65535 个时自动写 ZIP64 扩展
+ *
+ * 与 java.util.zip.ZipOutputStream 的区别：后者只能在写入线程内串行压缩，这里压缩可以在任意线程提前完成
+ *
+ * @author RAPUTA Team
+ */
+public final class ZipStreamWriter {
+
+    private static final long MAX32 = 0xFFFFFFFFL;
+    private static final int MAX16 = 0xFFFF;
+    private static final int UTF8_FLAG = 0x0800;
+
+    private final OutputStream out;
+    private final List<Central> central = new ArrayList<>();
+    private long written;
+
+    public ZipStreamWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * 条目数据的写出方式（写入的字节数必须等于声明的压缩后大小）
+     */
+    @FunctionalInterface
+    public interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 写出一个条目
+     *
+     * @param method         ZipEntry.STORED 或 ZipEntry.DEFLATED（原始 DEFLATE 流，不带 zlib 头）
+     * @param crc            未压缩数据的 CRC32
+     * @param size           未压缩大小
+     * @param compressedSize 写入的数据大小（STORED 时与 size 相同）
+     */
+    public void putEntry(String name, int method, long crc, long size, long compressedSize,
+                         LocalDateTime time, Body body) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long offset = written;
+        boolean zip64Sizes = size >= MAX32 || compressedSize >= MAX32;
+        int dosTime = dosTime(time);
+
+        ByteBuffer h = le(30 + nameBytes.length + (zip64Sizes ? 20 : 0));
+        h.putInt(0x04034b50)
+                .putShort((short) (zip64Sizes ? 45 : 20))
+                .putShort((short) UTF8_FLAG)
+                .putShort((short) method)
+                .putInt(dosTime)
+                .putInt((int) crc)
+                .putInt((int) (zip64Sizes ? MAX32 : compressedSize))
+                .putInt((int) (zip64Sizes ? MAX32 : size))
+                .putShort((short) nameBytes.length)
+                .putShort((short) (zip64Sizes ? 20 : 0))
+                .put(nameBytes);
+        if (zip64Sizes) {
+            h.putShort((short) 0x0001).putShort((short) 16).putLong(size).putLong(compressedSize);
+        }
+        write(h);
+
+        CountingOutputStream counter = new CountingOutputStream(out);
+        body.writeTo(counter);
+        if (counter.count != compressedSize) {
+            throw new IOException("条目 " + name + " 实际写入 " + counter.count + " 字节，与预计的 " + compressedSize + " 不符");
+        }
+        written += counter.count;
+        central.add(new Central(nameBytes, method, dosTime, crc, size, compressedSize, offset));
+    }
+
+    /**
+     * 写出中央目录与结束记录（不关闭底层输出流）
+     */
+    public void finish() throws IOException {
+        long cdOffset = written;
+        for (Central c : central) {
+            boolean bigSize = c.size >= MAX32 || c.compressedSize >= MAX32;
+            boolean bigOffset = c.offset >= MAX32;
+            int extra = (bigSize ? 16 : 0) + (bigOffset ? 8 : 0);
+            ByteBuffer h = le(46 + c.name.length + (extra > 0 ? 4 + extra : 0));
+            h.putInt(0x02014b50)
+                    .putShort((short) 45)
+                    .putShort((short) (bigSize || bigOffset ? 45 : 20))
+                    .putShort((short) UTF8_FLAG)
+                    .putShort((short) c.method)
+                    .putInt(c.dosTime)
+                    .putInt((int) c.crc)
+                    .putInt((int) (bigSize ? MAX32 : c.compressedSize))
+                    .putInt((int) (bigSize ? MAX32 : c.size))
+                    .putShort((short) c.name.length)
+                    .putShort((short) (extra > 0 ? 4 + extra : 0))
+                    .putShort((short) 0)   // 注释
+                    .putShort((short) 0)   // 磁盘号
+                    .putShort((short) 0)   // 内部属性
+                    .putInt(0)             // 外部属性
+                    .putInt((int) (bigOffset ? MAX32 : c.offset))
+                    .put(c.name);
+            if (extra > 0) {
+                h.putShort((short) 0x0001).putShort((short) extra);
+                if (bigSize) {
+                    h.putLong(c.size).putLong(c.compressedSize);
+                }
+                if (bigOffset) {
+                    h.putLong(c.offset);
+                }
+            }
+            write(h);
+        }
+        long cdSize = written - cdOffset;
+        int count = central.size();
+
+        if (count >= MAX16 || cdOffset >= MAX32 || cdSize >= MAX32) {
+            long zip64End = written;
+            ByteBuffer z = le(56 + 20);
+            z.putInt(0x06064b50).putLong(44)
+                    .putShort((short) 45).putShort((short) 45)
+                    .putInt(0).putInt(0)
+                    .putLong(count).putLong(count)
+                    .putLong(cdSize).putLong(cdOffset);
+            z.putInt(0x07064b50).putInt(0).putLong(zip64End).putInt(1);
+            write(z);
+        }
+        ByteBuffer e = le(22);
+        e.putInt(0x06054b50)
+                .putShort((short) 0).putShort((short) 0)
+                .putShort((short) Math.min(count, MAX16)).putShort((short) Math.min(count, MAX16))
+                .putInt((int) Math.min(cdSize, MAX32))
+                .putInt((int) Math.min(cdOffset, MAX32))
+                .putShort((short) 0);
+        write(e);
+        out.flush();
+    }
+
+    /**
+     * 已写出的字节数
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        out.write(buf.array(), 0, buf.position());
+        written += buf.position();
+    }
+
+    private static ByteBuffer le(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int dosTime(LocalDateTime t) {
+        if (t == null || t.getYear() < 1980) {
+            t = LocalDateTime.of(1980, 1, 1, 0, 0);
+        }
+        int date = ((t.getYear() - 1980) << 9) | (t.getMonthValue() << 5) | t.getDayOfMonth();
+        int time = (t.getHour() << 11) | (t.getMinute() << 5) | (t.getSecond() / 2);
+        return (date << 16) | time;
+    }
+
+    private record Central(byte[] name, int method, int dosTime, long crc, long size, long compressedSize, long offset) {}
+
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
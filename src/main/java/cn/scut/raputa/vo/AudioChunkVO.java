@@ -0,0 +1,18 @@
+package cn.scut.raputa.vo;
+
+import lombok.*;
+
+/**
+ * 音频分段元数据（不含样本字节，样本通过 /api/data/audio/chunk/{id}/payload 单独获取）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AudioChunkVO {
+    private Long id;
+    private String deviceId;
+    private Long timestamp;        // 毫秒
+    private Integer sampleRate;
+    private Integer channels;
+    private Integer byteLength;    // 历史 Base64 行为 null
+}
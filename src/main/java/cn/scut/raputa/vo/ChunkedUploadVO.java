@@ -0,0 +1,22 @@
+package cn.scut.raputa.vo;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * 分块上传状态：客户端断线后据此只补传 missingChunks
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChunkedUploadVO {
+    private String uploadId;
+    private String fileName;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    private long receivedBytes;
+    private List<Integer> missingChunks;   // 尚未收到的块序号（offset = 序号 * chunkSize）
+}
@@ -0,0 +1,38 @@
+package cn.scut.raputa.vo;
+
+import cn.scut.raputa.dto.CsvMappingRequestDTO;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * 临时 CSV 的服务端探测结果：分隔符、表头、列类型、估算采样率与前 N 行预览，
+ * 供映射界面直接选择列，无需在前端解析整个文件
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CsvInspectVO {
+    private String tempId;
+    private String delimiter;          // , ; \t |
+    private String charset;            // UTF-8 / GBK
+    private boolean header;            // 首行是否为表头（否则列名为 col1、col2 …）
+    private List<ColumnInfo> columns;
+    private String timestampColumn;    // 推断的时间戳列，可空
+    private Double sampleRate;         // 按时间戳差值中位数估算（Hz），可空
+    private long scannedRows;          // 本次扫描的数据行数
+    private long estimatedRows;        // 估算的总数据行数
+    private boolean complete;          // 是否扫描了整个文件（此时 estimatedRows 精确）
+    private List<List<String>> preview;
+    private CsvMappingRequestDTO suggestedMapping; // 按列名猜测的映射，可直接回填
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ColumnInfo {
+        private String name;
+        private String type;           // empty / integer / decimal / datetime / text
+        private int blanks;            // 扫描范围内的空值个数
+    }
+}
@@ -0,0 +1,25 @@
+package cn.scut.raputa.vo;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 设备数据后台删除任务的进度快照
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeleteJobVO {
+    private String jobId;
+    private String deviceId;
+    private String dataType;       // IMU / GAS / AUDIO / ALL
+    private String status;         // PENDING / RUNNING / DONE / FAILED
+    private long estimatedTotal;   // 开始时统计的待删行数
+    private long deleted;          // 已删除行数
+    private int chunks;            // 已执行的删除批次
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+}
@@ -32,5 +32,18 @@ public class PatientFilesOverviewVO {
         private String name;              // 文件名（不含路径）
         private String type;              // csv/wav/pdf
         private String path;              // 绝对路径（下载用）
+        // 以下取自会话 manifest.json，旧会话或非采集文件为空
+        private Long sampleCount;
+        private Long firstTs;
+        private Long lastTs;
+        private Long droppedSamples;
+        private Long frameCount;          // 仅音频
+        private Double durationSeconds;
+
+        public FileItem(String name, String type, String path) {
+            this.name = name;
+            this.type = type;
+            this.path = path;
+        }
     }
 }
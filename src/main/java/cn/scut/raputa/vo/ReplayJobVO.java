@@ -0,0 +1,38 @@
+package cn.scut.raputa.vo;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 会话回放任务的进度与结果快照
+ * 延迟为单个样本经 processSensorData 处理的耗时（微秒），分位数基于蓄水池抽样
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayJobVO {
+    private String replayId;
+    private String deviceId;          // 回放使用的虚拟设备ID
+    private String source;            // 源会话目录名
+    private String targetFolder;      // 回放写出的会话目录
+    private String mode;              // REALTIME / ACCELERATED / MAX
+    private double speed;             // 倍速，MAX 模式为 0
+    private String status;            // PENDING / RUNNING / DONE / FAILED / CANCELLED
+    private boolean audio;            // 是否回放音频
+    private long imuSamples;
+    private long gasSamples;
+    private long recordedMs;          // 已注入部分在录制时间轴上的跨度
+    private long elapsedMs;           // 实际耗时
+    private double achievedSpeed;     // recordedMs / elapsedMs
+    private double samplesPerSecond;
+    private long latencyAvgUs;
+    private long latencyP50Us;
+    private long latencyP99Us;
+    private long latencyMaxUs;
+    private long maxLagMs;            // 落后于回放时间轴的最大值（限速模式）
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,28 @@
+package cn.scut.raputa.vo;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * 传感器分桶聚合结果：每个桶返回各通道的 min/max/mean 与样本数
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+public class SensorAggregateVO {
+    private String deviceId;
+    private String stream;            // imu / gas
+    private long bucketMs;            // 实际使用的桶宽（毫秒）
+    private List<String> channels;    // imu: x,y,z；gas: flow
+    private List<Bucket> buckets;     // 按时间升序
+
+    @Getter @Setter
+    @NoArgsConstructor @AllArgsConstructor
+    public static class Bucket {
+        private long start;           // 桶起点（epoch 毫秒）
+        private long count;
+        private double[] min;         // 与 channels 一一对应
+        private double[] max;
+        private double[] mean;
+    }
+}
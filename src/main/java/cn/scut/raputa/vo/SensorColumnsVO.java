@@ -0,0 +1,48 @@
+package cn.scut.raputa.vo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import org.springframework.http.MediaType;
+
+/**
+ * 传感器数据列式载荷：设备ID等每行相同的字段只出现一次，
+ * 时间戳为 t0 + 逐行差分（微秒），数值列为并行数组
+ * 通过 Accept: application/vnd.raputa.columnar+json 或 ?format=columnar 请求，
+ * 同时 Accept: application/cbor 时以 CBOR 二进制输出
+ */
+@Getter @Setter
+@NoArgsConstructor @AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SensorColumnsVO {
+
+    public static final String MEDIA_TYPE = "application/vnd.raputa.columnar+json";
+
+    private String deviceId;
+    private String stream;      // imu / gas
+    private int count;
+    private Long t0;            // 首行 ts_micros
+    private long[] dt;          // dt[i] = ts[i] - ts[i-1]，dt[0] = 0，按时间升序
+    private int[] x;
+    private int[] y;
+    private int[] z;
+    private Integer[] flow;
+
+    /**
+     * 请求是否要求列式格式
+     */
+    public static boolean requested(String format, String accept) {
+        return "columnar".equalsIgnoreCase(format)
+                || (accept != null && accept.contains(MEDIA_TYPE));
+    }
+
+    /**
+     * 列式载荷的响应类型：Accept 指定 CBOR 时输出二进制，否则输出列式 JSON
+     */
+    public static MediaType contentType(String accept) {
+        if (accept != null && accept.contains("application/cbor")) {
+            return MediaType.parseMediaType("application/cbor");
+        }
+        return MediaType.parseMediaType(MEDIA_TYPE);
+    }
+}
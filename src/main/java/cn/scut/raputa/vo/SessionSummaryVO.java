@@ -0,0 +1,16 @@
+package cn.scut.raputa.vo;
+
+import cn.scut.raputa.utils.SessionManifest;
+import lombok.*;
+
+/**
+ * 会话目录摘要：目录名 + 清单（样本数、时间跨度、时长等），清单缺失（旧会话）时为 null
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSummaryVO {
+    private String session;           // P0001_张三_20251109_094129
+    private String path;
+    private SessionManifest manifest;
+}
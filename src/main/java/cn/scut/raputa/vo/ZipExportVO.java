@@ -0,0 +1,25 @@
+package cn.scut.raputa.vo;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * ZIP 导出任务的进度快照
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZipExportVO {
+    private String exportId;
+    private String zipName;
+    private String status;         // PENDING / RUNNING / DONE / FAILED
+    private int totalEntries;      // 计划写入的条目数
+    private int writtenEntries;    // 已写入的条目数
+    private int skippedEntries;    // 文件缺失或读取失败而跳过的条目数
+    private long bytesWritten;     // 已输出的 ZIP 字节数
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+}
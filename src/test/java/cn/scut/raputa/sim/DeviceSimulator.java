@@ -0,0 +1,111 @@
+package cn.scut.raputa.sim;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 树莓派采集设备模拟器（测试工具，不随应用打包）
+ * 每个模拟设备在独立的回环地址上监听 6667 端口，应答服务端的 start/stop 控制帧，并以 2kHz IMU + 可配置频率 GAS
+ * 发送与真实设备相同帧格式的 JSON；可按概率注入分片、垃圾字节与 CRC 错误，用于单机对接收链路做数百设备的压测
+ *
+ * 运行（先 mvn test-compile，模拟器只依赖 JDK）：
+ * <pre>
+ * java -cp target/test-classes cn.scut.raputa.sim.DeviceSimulator --devices=200 --base-address=127.0.1.1 \
+ *      --gas-hz=100 --fragment-rate=0.05 --garbage-rate=0.001 --crc-error-rate=0.001
+ * </pre>
+ * 之后以 127.0.1.1 ~ 127.0.1.200 作为 deviceIp 调用 /api/realtime/connect。模拟器不提供 RTSP 音频，
+ * 服务端音频线程重试失败后退出，IMU/GAS 的接收、解析与采集日志照常工作
+ *
+ * @author RAPUTA Team
+ */
+public final class DeviceSimulator implements AutoCloseable {
+
+    private final SimulatorConfig config;
+    private final ScheduledExecutorService emitter;
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+
+    public DeviceSimulator(SimulatorConfig config) throws IOException {
+        this.config = config;
+        int threads = config.emitThreads() > 0 ? config.emitThreads() : Runtime.getRuntime().availableProcessors();
+        this.emitter = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sim-emit");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            int base = toInt(InetAddress.getByName(config.baseAddress()));
+            for (int i = 0; i < config.devices(); i++) {
+                devices.add(new SimulatedDevice(toAddress(base + i), config, emitter));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public List<String> addresses() {
+        return devices.stream().map(SimulatedDevice::address).toList();
+    }
+
+    /**
+     * 汇总统计一行
+     */
+    public String stats() {
+        long conns = 0, streaming = 0, imu = 0, gas = 0, bytes = 0, faults = 0;
+        for (SimulatedDevice d : devices) {
+            conns += d.connections.get();
+            streaming += d.streaming() ? 1 : 0;
+            imu += d.imuFrames.get();
+            gas += d.gasFrames.get();
+            bytes += d.bytes.get();
+            faults += d.faults.get();
+        }
+        return String.format("设备 %d, 发送中 %d, 累计连接 %d, IMU %d 帧, GAS %d 帧, %.1f MB, 注入故障 %d",
+                devices.size(), streaming, conns, imu, gas, bytes / 1048576.0, faults);
+    }
+
+    @Override
+    public void close() {
+        devices.forEach(SimulatedDevice::close);
+        emitter.shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimulatorConfig config = SimulatorConfig.parse(args);
+        DeviceSimulator sim = new DeviceSimulator(config);
+        List<String> addrs = sim.addresses();
+        System.out.printf("已启动 %d 个模拟设备 (%s ~ %s, 端口 %d), IMU %dHz, GAS %dHz%n",
+                addrs.size(), addrs.get(0), addrs.get(addrs.size() - 1), config.port(), config.imuHz(), config.gasHz());
+
+        CountDownLatch done = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            sim.close();
+            System.out.println(sim.stats());
+            done.countDown();
+        }));
+        if (config.statsSeconds() > 0) {
+            sim.emitter.scheduleAtFixedRate(() -> System.out.println(sim.stats()),
+                    config.statsSeconds(), config.statsSeconds(), TimeUnit.SECONDS);
+        }
+        done.await();
+    }
+
+    private static int toInt(InetAddress addr) throws UnknownHostException {
+        byte[] b = addr.getAddress();
+        if (b.length != 4) {
+            throw new UnknownHostException("仅支持 IPv4 地址: " + addr);
+        }
+        return (b[0] & 0xff) << 24 | (b[1] & 0xff) << 16 | (b[2] & 0xff) << 8 | (b[3] & 0xff);
+    }
+
+    private static String toAddress(int v) {
+        return (v >>> 24) + "." + (v >>> 16 & 0xff) + "." + (v >>> 8 & 0xff) + "." + (v & 0xff);
+    }
+}
@@ -0,0 +1,85 @@
+package cn.scut.raputa.sim;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * 设备 6667 端口的帧格式（与 SocketTools.anlyBufData / packSFream 一致）：
+ * <pre>
+ * 000055aa | fx(4) | 类型(4) | 长度(4) = 载荷字节数 + 8 | 载荷 | CRC32(4，覆盖帧头到载荷) | 0000aa55
+ * </pre>
+ * 类型 1 为控制帧（服务端下发 {"enable":true|false,...}，设备回同类型应答），类型 2 为 IMU/GAS 数据
+ *
+ * @author RAPUTA Team
+ */
+final class SimFrames {
+
+    static final int HEAD = 0x000055aa;
+    static final int TAIL = 0x0000aa55;
+    static final int TYPE_CONTROL = 1;
+    static final int TYPE_DATA = 2;
+    static final int OVERHEAD = 24;
+    static final int MAX_LENGTH = 4 * 1024;   // 服务端拒收长度字段大于该值的帧
+
+    private SimFrames() {
+    }
+
+    /**
+     * 编码一帧并追加到 out；corruptCrc 为 true 时写入错误的 CRC（故障注入）
+     */
+    static void encode(ByteArrayOutputStream out, int type, byte[] payload, boolean corruptCrc) {
+        ByteBuffer buf = ByteBuffer.allocate(payload.length + OVERHEAD);
+        buf.putInt(HEAD).putInt(0).putInt(type).putInt(payload.length + 8).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        int value = (int) crc.getValue();
+        buf.putInt(corruptCrc ? ~value : value).putInt(TAIL);
+        out.write(buf.array(), 0, buf.position());
+    }
+
+    static byte[] encode(int type, String json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length() + OVERHEAD);
+        encode(out, type, json.getBytes(StandardCharsets.UTF_8), false);
+        return out.toByteArray();
+    }
+
+    /**
+     * 从 buf（读模式）中取出下一帧的载荷；数据不足返回 null 并保持 position 不变，遇到无效字节时逐字节跳过
+     */
+    static Frame next(ByteBuffer buf) {
+        while (buf.remaining() >= 16) {
+            int start = buf.position();
+            if (buf.getInt(start) != HEAD) {
+                buf.position(start + 1);
+                continue;
+            }
+            int type = buf.getInt(start + 8);
+            int length = buf.getInt(start + 12);
+            if (length < 8 || length > MAX_LENGTH) {
+                buf.position(start + 1);
+                continue;
+            }
+            int total = length + 16;
+            if (buf.remaining() < total) {
+                return null;
+            }
+            int payloadLen = length - 8;
+            CRC32 crc = new CRC32();
+            crc.update(buf.array(), buf.arrayOffset() + start, 16 + payloadLen);
+            if (buf.getInt(start + 16 + payloadLen) != (int) crc.getValue()
+                    || buf.getInt(start + 20 + payloadLen) != TAIL) {
+                buf.position(start + 1);
+                continue;
+            }
+            byte[] payload = new byte[payloadLen];
+            buf.get(start + 16, payload);
+            buf.position(start + total);
+            return new Frame(type, new String(payload, StandardCharsets.UTF_8));
+        }
+        return null;
+    }
+
+    record Frame(int type, String payload) {}
+}
@@ -0,0 +1,264 @@
+package cn.scut.raputa.sim;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个模拟设备：在 address:port 上监听，收到 enable=true 的控制帧后按配置的频率发送 IMU/GAS 数据帧，
+ * enable=false 或连接断开时停止。同一时刻只服务一个连接（与真实设备一致），新连接会顶掉旧连接
+ *
+ * 发送由共享的调度线程按 tick 驱动：每个 tick 根据已过去的时间补齐应发的样本并一次写出，
+ * 因此 2kHz 的 IMU 不需要每个设备一个毫秒级定时器
+ *
+ * @author RAPUTA Team
+ */
+final class SimulatedDevice implements AutoCloseable {
+
+    private final String address;
+    private final SimulatorConfig config;
+    private final ScheduledExecutorService emitter;
+    private final ServerSocket server;
+    private final Thread acceptThread;
+    private volatile Session session;
+
+    // 统计
+    final AtomicLong connections = new AtomicLong();
+    final AtomicLong imuFrames = new AtomicLong();
+    final AtomicLong gasFrames = new AtomicLong();
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong faults = new AtomicLong();
+
+    SimulatedDevice(String address, SimulatorConfig config, ScheduledExecutorService emitter) throws IOException {
+        this.address = address;
+        this.config = config;
+        this.emitter = emitter;
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(address, config.port()));
+        this.acceptThread = new Thread(this::acceptLoop, "sim-accept-" + address);
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    String address() {
+        return address;
+    }
+
+    boolean streaming() {
+        Session s = session;
+        return s != null && s.task != null;
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        Session s = session;
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                connections.incrementAndGet();
+                Session old = session;
+                if (old != null) {
+                    old.close();
+                }
+                Session s = new Session(socket);
+                session = s;
+                Thread reader = new Thread(s::readLoop, "sim-read-" + address);
+                reader.setDaemon(true);
+                reader.start();
+            } catch (SocketException e) {
+                return; // 服务端已关闭
+            } catch (IOException e) {
+                System.err.println("[" + address + "] accept 失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 一个服务端连接：读控制帧、按 tick 发送数据帧
+     */
+    private final class Session {
+        private final Socket socket;
+        private final OutputStream out;
+        private volatile ScheduledFuture<?> task;
+        private long startNanos;
+        private long imuSent;
+        private long gasSent;
+        private long firstTsMicros;
+
+        Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+        }
+
+        void readLoop() {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            try (InputStream in = socket.getInputStream()) {
+                int n;
+                while ((n = in.read(buf.array(), buf.position(), buf.remaining())) > 0) {
+                    buf.position(buf.position() + n);
+                    buf.flip();
+                    SimFrames.Frame f;
+                    while ((f = SimFrames.next(buf)) != null) {
+                        if (f.type() == SimFrames.TYPE_CONTROL) {
+                            onControl(f.payload());
+                        }
+                    }
+                    buf.compact();
+                    if (!buf.hasRemaining()) {
+                        buf.clear(); // 只有垃圾数据，丢弃
+                    }
+                }
+            } catch (IOException ignored) {
+                // 连接断开
+            } finally {
+                close();
+            }
+        }
+
+        private synchronized void onControl(String json) throws IOException {
+            boolean enable = json.replace(" ", "").contains("\"enable\":true");
+            synchronized (out) {
+                out.write(SimFrames.encode(SimFrames.TYPE_CONTROL, "{\"result\":0,\"enable\":" + enable + "}"));
+                out.flush();
+            }
+            if (enable && task == null) {
+                startNanos = System.nanoTime();
+                firstTsMicros = System.currentTimeMillis() * 1000;
+                imuSent = 0;
+                gasSent = 0;
+                task = emitter.scheduleAtFixedRate(this::tick, 0, config.tickMs(), TimeUnit.MILLISECONDS);
+            } else if (!enable) {
+                stop();
+            }
+        }
+
+        private synchronized void stop() {
+            if (task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+
+        private void tick() {
+            try {
+                long elapsed = System.nanoTime() - startNanos;
+                long imuDue = elapsed / 1000 * config.imuHz() / 1_000_000;
+                long gasDue = elapsed / 1000 * config.gasHz() / 1_000_000;
+                ByteArrayOutputStream batch = new ByteArrayOutputStream(
+                        (int) Math.min(1 << 20, (imuDue - imuSent + gasDue - gasSent + 1) * 96));
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                // 按时间先后交替输出两路样本
+                while (imuSent < imuDue || gasSent < gasDue) {
+                    long imuAt = imuSent * 1_000_000 / Math.max(config.imuHz(), 1);
+                    long gasAt = gasSent * 1_000_000 / Math.max(config.gasHz(), 1);
+                    boolean imu = gasSent >= gasDue || (imuSent < imuDue && imuAt <= gasAt);
+                    long tsMicros = firstTsMicros + (imu ? imuAt : gasAt);
+                    String json = imu ? imuJson(tsMicros, imuSent) : gasJson(tsMicros, gasSent);
+                    injectGarbage(batch, rnd);
+                    boolean badCrc = rnd.nextDouble() < config.crcErrorRate();
+                    if (badCrc) {
+                        faults.incrementAndGet();
+                    }
+                    SimFrames.encode(batch, SimFrames.TYPE_DATA, json.getBytes(StandardCharsets.UTF_8), badCrc);
+                    if (imu) {
+                        imuSent++;
+                        imuFrames.incrementAndGet();
+                    } else {
+                        gasSent++;
+                        gasFrames.incrementAndGet();
+                    }
+                }
+                if (batch.size() > 0) {
+                    write(batch.toByteArray(), rnd);
+                }
+            } catch (IOException e) {
+                close();
+            } catch (RuntimeException e) {
+                System.err.println("[" + address + "] 发送失败: " + e);
+                close();
+            }
+        }
+
+        private void injectGarbage(ByteArrayOutputStream batch, ThreadLocalRandom rnd) {
+            if (rnd.nextDouble() < config.garbageRate()) {
+                byte[] junk = new byte[1 + rnd.nextInt(32)];
+                rnd.nextBytes(junk);
+                batch.write(junk, 0, junk.length);
+                faults.incrementAndGet();
+            }
+        }
+
+        // 分片故障：把一次写出拆成随机长度的小段逐段 flush（TCP_NODELAY 下尽量成为独立的 TCP 段）
+        private void write(byte[] data, ThreadLocalRandom rnd) throws IOException {
+            synchronized (out) {
+                if (rnd.nextDouble() < config.fragmentRate()) {
+                    faults.incrementAndGet();
+                    int pos = 0;
+                    while (pos < data.length) {
+                        int len = Math.min(data.length - pos, 1 + rnd.nextInt(64));
+                        out.write(data, pos, len);
+                        out.flush();
+                        pos += len;
+                    }
+                } else {
+                    out.write(data);
+                    out.flush();
+                }
+            }
+            bytes.addAndGet(data.length);
+        }
+
+        // 加速度：低频正弦（呼吸）叠加噪声，量纲与真实设备的整型原始值相近
+        private String imuJson(long tsMicros, long n) {
+            double t = n / (double) Math.max(config.imuHz(), 1);
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long x = Math.round(800 * Math.sin(2 * Math.PI * 0.25 * t) + rnd.nextGaussian() * 40);
+            long y = Math.round(300 * Math.cos(2 * Math.PI * 0.25 * t) + rnd.nextGaussian() * 40);
+            long z = Math.round(16384 + rnd.nextGaussian() * 40);
+            return "{\"timestamp\":" + tsMicros / 1_000_000 + ",\"timestampus\":" + tsMicros % 1_000_000
+                    + ",\"acc\":{\"x\":" + x + ",\"y\":" + y + ",\"z\":" + z + "}}";
+        }
+
+        private String gasJson(long tsMicros, long n) {
+            double t = n / (double) Math.max(config.gasHz(), 1);
+            long flow = Math.round(500 + 400 * Math.sin(2 * Math.PI * 0.25 * t) + ThreadLocalRandom.current().nextGaussian() * 10);
+            return "{\"timestamp\":" + tsMicros / 1_000_000 + ",\"timestampus\":" + tsMicros % 1_000_000
+                    + ",\"flow\":" + flow + "}";
+        }
+
+        void close() {
+            stop();
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            if (session == this) {
+                session = null;
+            }
+        }
+    }
+}
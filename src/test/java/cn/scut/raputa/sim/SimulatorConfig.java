@@ -0,0 +1,51 @@
+package cn.scut.raputa.sim;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 模拟器参数；命令行以 --key=value 传入，未给出的取默认值
+ *
+ * @param devices      模拟设备数
+ * @param baseAddress  第一个设备的监听地址，后续设备依次递增（Linux 上整个 127.0.0.0/8 都是回环地址）
+ * @param port         监听端口，服务端固定连接 6667
+ * @param imuHz        IMU 帧率
+ * @param gasHz        GAS 帧率
+ * @param tickMs       发送节拍，每个 tick 补齐应发的样本
+ * @param emitThreads  共享发送线程数，<= 0 时取 CPU 核数
+ * @param fragmentRate 一次写出被拆成随机小段的概率
+ * @param garbageRate  每帧前插入随机垃圾字节的概率
+ * @param crcErrorRate 每帧 CRC 写错的概率
+ * @param statsSeconds 统计输出间隔，<= 0 不输出
+ */
+record SimulatorConfig(int devices, String baseAddress, int port, int imuHz, int gasHz, int tickMs,
+                       int emitThreads, double fragmentRate, double garbageRate, double crcErrorRate,
+                       int statsSeconds) {
+
+    static SimulatorConfig parse(String... args) {
+        Map<String, String> m = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + a);
+            }
+            int eq = a.indexOf('=');
+            m.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        SimulatorConfig c = new SimulatorConfig(
+                Integer.parseInt(m.getOrDefault("devices", "1")),
+                m.getOrDefault("base-address", "127.0.0.1"),
+                Integer.parseInt(m.getOrDefault("port", "6667")),
+                Integer.parseInt(m.getOrDefault("imu-hz", "2000")),
+                Integer.parseInt(m.getOrDefault("gas-hz", "100")),
+                Integer.parseInt(m.getOrDefault("tick-ms", "5")),
+                Integer.parseInt(m.getOrDefault("emit-threads", "0")),
+                Double.parseDouble(m.getOrDefault("fragment-rate", "0")),
+                Double.parseDouble(m.getOrDefault("garbage-rate", "0")),
+                Double.parseDouble(m.getOrDefault("crc-error-rate", "0")),
+                Integer.parseInt(m.getOrDefault("stats-seconds", "5")));
+        if (c.devices() < 1 || c.tickMs() < 1 || c.imuHz() < 0 || c.gasHz() < 0) {
+            throw new IllegalArgumentException("devices/tick-ms 必须 >= 1，频率不能为负");
+        }
+        return c;
+    }
+}